@@ -2,6 +2,9 @@
 # based on http://stackoverflow.com/questions/80801/how-can-i-merge-many-sqlite-databases
 sqlite3 wikipedia.sqlite3 -cmd "ATTACH 'wikipedia-newer.sqlite3' as toMerge;
 BEGIN;
-INSERT OR IGNORE INTO links SELECT * FROM toMerge.links;
+INSERT OR IGNORE INTO pages (title) SELECT title FROM toMerge.pages;
+INSERT OR IGNORE INTO links (src, dst) SELECT s.id, d.id FROM toMerge.links m
+  JOIN toMerge.pages ms ON ms.id = m.src JOIN pages s ON s.title = ms.title
+  JOIN toMerge.pages md ON md.id = m.dst JOIN pages d ON d.title = md.title;
 COMMIT;
 DETACH toMerge;"
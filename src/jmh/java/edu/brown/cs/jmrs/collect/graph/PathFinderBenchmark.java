@@ -0,0 +1,141 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+import edu.brown.cs.jmrs.collect.graph.SyntheticGraph.Shape;
+
+/**
+ * Benchmarks each path finder on synthetic graphs, one shortest path query
+ * (between random nodes) per operation. Run with -prof gc to also get the
+ * allocation per query (gc.alloc.rate.norm).
+ *
+ * @author mcisler
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PathFinderBenchmark {
+  private static final long SEED        = 32;
+  private static final int  NUM_QUERIES = 1024;
+
+  @Param({"GRID", "SCALE_FREE", "KD_POINT"})
+  public Shape shape;
+
+  @Param({"10000"})
+  public int size;
+
+  private List<BasicNode<Localizable, Double>> nodes;
+  private CsrGraph                             graph;
+  private int[]                                starts;
+  private int[]                                ends;
+  private int                                  query;
+
+  private PathFinder<BasicNode<Localizable, Double>,
+      BasicEdge<Localizable, Double>> dijkstra;
+  private PathFinder<BasicNode<Localizable, Double>,
+      BasicEdge<Localizable, Double>> aStar;
+  private PathFinder<BasicNode<Localizable, Double>,
+      BasicEdge<Localizable, Double>> bidirectional;
+  private PathFinder<BasicNode<Localizable, Double>,
+      BasicEdge<Localizable, Double>> breadthFirst;
+
+  /**
+   * Generates the graph, the path finders over it, and the queries to run.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    SyntheticGraph synthetic = SyntheticGraph.generate(shape, size, SEED);
+    nodes = synthetic.nodes();
+    graph = synthetic.toCsrGraph();
+
+    BasicEdgeFinder<Localizable, Double> edgeFinder = new BasicEdgeFinder<>();
+    dijkstra = new DirectedDijkstraPathFinder<>(edgeFinder);
+    aStar = new AStarDirectedPathFinder<>(edgeFinder, synthetic.heuristic());
+    bidirectional =
+        new BidirectionalDijkstraPathFinder<>(edgeFinder,
+            new IncomingEdgeFinder<>(edgeFinder, nodes));
+    breadthFirst = new BreadthFirstPathFinder<>(edgeFinder);
+
+    // the same queries for every path finder
+    Random random = new Random(SEED);
+    starts = new int[NUM_QUERIES];
+    ends = new int[NUM_QUERIES];
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      starts[i] = random.nextInt(nodes.size());
+      ends[i] = random.nextInt(nodes.size());
+    }
+    query = 0;
+  }
+
+  private List<BasicEdge<Localizable, Double>> run(
+      PathFinder<BasicNode<Localizable, Double>,
+          BasicEdge<Localizable, Double>> pathFinder) {
+    int i = query++ & (NUM_QUERIES - 1);
+    return pathFinder.shortestPath(nodes.get(starts[i]), nodes.get(ends[i]));
+  }
+
+  /**
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public List<BasicEdge<Localizable, Double>> dijkstra() {
+    return run(dijkstra);
+  }
+
+  /**
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public List<BasicEdge<Localizable, Double>> aStar() {
+    return run(aStar);
+  }
+
+  /**
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public List<BasicEdge<Localizable, Double>> bidirectionalDijkstra() {
+    return run(bidirectional);
+  }
+
+  /**
+   * Note this ignores edge values, so gives a different path on KD_POINT.
+   *
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public List<BasicEdge<Localizable, Double>> breadthFirst() {
+    return run(breadthFirst);
+  }
+
+  /**
+   * Note this ignores edge values, so gives a different path on KD_POINT.
+   *
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public int[] breadthFirstCsr() {
+    int i = query++ & (NUM_QUERIES - 1);
+    return BreadthFirstPathFinder.shortestPath(graph, starts[i], ends[i]);
+  }
+}
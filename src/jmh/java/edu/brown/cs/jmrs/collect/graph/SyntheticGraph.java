@@ -0,0 +1,241 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * Reproducible generated graphs of BasicNodes, each at a KDPoint, for
+ * benchmarking path finders on graphs of known shape.
+ *
+ * @author mcisler
+ *
+ */
+public final class SyntheticGraph {
+  /**
+   * The shapes of graph that can be generated.
+   */
+  public enum Shape {
+    /**
+     * A square lattice with unit edges both ways between adjacent points.
+     */
+    GRID,
+    /**
+     * A directed preferential attachment graph with unit edges, whose degrees
+     * follow a power law like the links between Wikipedia pages.
+     */
+    SCALE_FREE,
+    /**
+     * Uniformly random points in the unit square, each with edges to its
+     * nearest neighbors weighted by euclidean distance.
+     */
+    KD_POINT
+  }
+
+  private static final int SCALE_FREE_LINKS = 6; // per new node
+  private static final int KD_NEIGHBORS     = 6;
+
+  private final Shape                               shape;
+  private final List<BasicNode<Localizable, Double>> nodes;
+
+  private SyntheticGraph(Shape shape,
+      List<BasicNode<Localizable, Double>> nodes) {
+    this.shape = shape;
+    this.nodes = nodes;
+  }
+
+  /**
+   * Generates a graph.
+   *
+   * @param shape
+   *          The shape of graph to generate.
+   * @param size
+   *          The approximate number of nodes (exact except for GRID, which is
+   *          rounded down to a square).
+   * @param seed
+   *          The seed of all randomness, so that graphs can be regenerated
+   *          exactly.
+   * @return The generated graph.
+   */
+  public static SyntheticGraph generate(Shape shape, int size, long seed) {
+    Random random = new Random(seed);
+    switch (shape) {
+      case GRID:
+        return new SyntheticGraph(shape, grid((int) Math.sqrt(size)));
+      case SCALE_FREE:
+        return new SyntheticGraph(shape, scaleFree(size, random));
+      case KD_POINT:
+        return new SyntheticGraph(shape, kdPoints(size, random));
+      default:
+        throw new AssertionError("Unknown shape " + shape);
+    }
+  }
+
+  private static List<BasicNode<Localizable, Double>> grid(int side) {
+    List<BasicNode<Localizable, Double>> nodes = new ArrayList<>(side * side);
+    for (int x = 0; x < side; x++) {
+      for (int y = 0; y < side; y++) {
+        nodes.add(new BasicNode<>(new KDPoint(x, y)));
+      }
+    }
+
+    for (int x = 0; x < side; x++) {
+      for (int y = 0; y < side; y++) {
+        BasicNode<Localizable, Double> node = nodes.get(x * side + y);
+        if (x + 1 < side) {
+          link(node, nodes.get((x + 1) * side + y), 1.0);
+        }
+        if (y + 1 < side) {
+          link(node, nodes.get(x * side + y + 1), 1.0);
+        }
+      }
+    }
+    return nodes;
+  }
+
+  private static List<BasicNode<Localizable, Double>> scaleFree(int size,
+      Random random) {
+    List<BasicNode<Localizable, Double>> nodes = new ArrayList<>(size);
+    // each node appears here once, plus once per incoming edge, so that
+    // sampling from it is proportional to in degree + 1
+    List<Integer> attachments = new ArrayList<>();
+
+    for (int i = 0; i < size; i++) {
+      BasicNode<Localizable, Double> node =
+          new BasicNode<>(new KDPoint(random.nextDouble(), random.nextDouble()));
+      nodes.add(node);
+
+      Set<Integer> targets = new LinkedHashSet<>();
+      int wanted = Math.min(SCALE_FREE_LINKS, i);
+      while (targets.size() < wanted) {
+        targets.add(attachments.get(random.nextInt(attachments.size())));
+      }
+      for (int target : targets) {
+        node.addNeighborAsDest(nodes.get(target), 1.0);
+        attachments.add(target);
+        // and link back half the time, so older nodes have outgoing links
+        if (random.nextBoolean()) {
+          nodes.get(target).addNeighborAsDest(node, 1.0);
+        }
+      }
+      attachments.add(i);
+    }
+    return nodes;
+  }
+
+  private static List<BasicNode<Localizable, Double>> kdPoints(int size,
+      Random random) {
+    List<BasicNode<Localizable, Double>> nodes = new ArrayList<>(size);
+    double[][] points = new double[size][];
+    for (int i = 0; i < size; i++) {
+      points[i] = new double[] {random.nextDouble(), random.nextDouble()};
+      nodes.add(new BasicNode<>(new KDPoint(points[i])));
+    }
+
+    // brute force nearest neighbors; only done once per benchmark trial
+    for (int i = 0; i < size; i++) {
+      int[] nearest = new int[KD_NEIGHBORS];
+      double[] nearestDist = new double[KD_NEIGHBORS];
+      Arrays.fill(nearest, -1);
+      Arrays.fill(nearestDist, Double.POSITIVE_INFINITY);
+
+      for (int j = 0; j < size; j++) {
+        if (i == j) {
+          continue;
+        }
+        double dx = points[i][0] - points[j][0];
+        double dy = points[i][1] - points[j][1];
+        double dist = dx * dx + dy * dy;
+
+        // insertion into the sorted nearest so far
+        int k = KD_NEIGHBORS - 1;
+        if (dist >= nearestDist[k]) {
+          continue;
+        }
+        while (k > 0 && nearestDist[k - 1] > dist) {
+          nearestDist[k] = nearestDist[k - 1];
+          nearest[k] = nearest[k - 1];
+          k--;
+        }
+        nearestDist[k] = dist;
+        nearest[k] = j;
+      }
+
+      for (int k = 0; k < KD_NEIGHBORS && nearest[k] != -1; k++) {
+        nodes.get(i).addNeighborAsDest(nodes.get(nearest[k]),
+            Math.sqrt(nearestDist[k]));
+      }
+    }
+    return nodes;
+  }
+
+  private static void link(BasicNode<Localizable, Double> a,
+      BasicNode<Localizable, Double> b, double value) {
+    a.addNeighborAsDest(b, value);
+    b.addNeighborAsDest(a, value);
+  }
+
+  /**
+   * @return The shape of this graph.
+   */
+  public Shape shape() {
+    return shape;
+  }
+
+  /**
+   * @return Every node of this graph, in generation order.
+   */
+  public List<BasicNode<Localizable, Double>> nodes() {
+    return nodes;
+  }
+
+  /**
+   * @return An admissible A* heuristic for this graph: manhattan distance on a
+   *         GRID, euclidean distance between KD_POINTs, and zero (no
+   *         information) for SCALE_FREE graphs.
+   */
+  public BiFunction<BasicNode<Localizable, Double>,
+      BasicNode<Localizable, Double>, Double> heuristic() {
+    switch (shape) {
+      case GRID:
+        return (a, b) -> {
+          Localizable p = a.getValue();
+          Localizable q = b.getValue();
+          return Math.abs(p.getCoordinate(0) - q.getCoordinate(0))
+              + Math.abs(p.getCoordinate(1) - q.getCoordinate(1));
+        };
+      case KD_POINT:
+        return (a, b) -> a.getValue().distance(b.getValue());
+      default:
+        return (a, b) -> 0.0;
+    }
+  }
+
+  /**
+   * @return The same graph as a CsrGraph (ignoring edge values), where node
+   *         ids are indices into nodes().
+   */
+  public CsrGraph toCsrGraph() {
+    Map<BasicNode<Localizable, Double>, Integer> ids =
+        new IdentityHashMap<>(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      ids.put(nodes.get(i), i);
+    }
+
+    CsrGraph.Builder builder = new CsrGraph.Builder().numNodes(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      for (BasicEdge<Localizable, Double> edge : nodes.get(i).getEdges()) {
+        if (edge.getSource() == nodes.get(i)) {
+          builder.addEdge(i, ids.get(edge.getDestination()));
+        }
+      }
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,191 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import edu.brown.cs.jmrs.collect.graph.BreadthFirstPathFinder;
+import edu.brown.cs.jmrs.collect.graph.CsrGraph;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+import edu.brown.cs.jmrs.collect.graph.SyntheticGraph;
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.Query;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.Page;
+import edu.brown.cs.jmrs.web.wikipedia.WikiBodyFormatter;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * Benchmarks looking up and searching cached links in a fixture SQLite links
+ * database, filled with a scale-free graph of made up pages (so nothing is
+ * fetched from Wikipedia). Run with -prof gc to also get the allocation per
+ * lookup or search (gc.alloc.rate.norm).
+ *
+ * @author mcisler
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkLookupBenchmark {
+  private static final long SEED        = 32;
+  private static final int  NUM_QUERIES = 1024;
+
+  @Param({"5000"})
+  public int size;
+
+  private File                   dbFile;
+  private DbConn                 conn;
+  private CachingWikiLinkFinder  cachingFinder;
+  private InMemoryWikiLinkFinder inMemoryFinder;
+  private Query<Link>            uncachedLookup;
+
+  private PathFinder<Page, Link> cachedPathFinder;
+  private PathFinder<Page, Link> inMemoryPathFinder;
+
+  private List<WikiPage> pages;
+  private int[]          starts;
+  private int[]          ends;
+  private int            query;
+
+  /**
+   * Writes the fixture database and loads the link finders over it.
+   *
+   * @throws Exception
+   *           If the database could not be created.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    dbFile = File.createTempFile("links", ".sqlite3");
+    conn = new DbConn(dbFile.getPath(), "PRAGMA synchronous = OFF");
+
+    // one page per node, each also linking to the next so that none are
+    // missing from the cache (which would mean going to Wikipedia)
+    CsrGraph graph =
+        SyntheticGraph.generate(SyntheticGraph.Shape.SCALE_FREE, size, SEED)
+            .toCsrGraph();
+    pages = new ArrayList<>(graph.numNodes());
+    for (int i = 0; i < graph.numNodes(); i++) {
+      pages.add(WikiPage.fromName("Page_" + i));
+    }
+
+    List<Link> links = new ArrayList<>();
+    for (int i = 0; i < graph.numNodes(); i++) {
+      links.add(new Link(pages.get(i), pages.get((i + 1) % pages.size())));
+      for (int dest : graph.neighbors(i)) {
+        links.add(new Link(pages.get(i), pages.get(dest)));
+      }
+    }
+    new LinkTables.Cacher(conn).insertAll(links);
+
+    // after caching, so that every page is known to be cached
+    cachingFinder = new CachingWikiLinkFinder(conn, new WikiBodyFormatter());
+    uncachedLookup =
+        conn.makeQuery(LinkTables.SELECT_LINKS_FROM, LinkTables.LINK_READER,
+            false);
+    inMemoryFinder = new InMemoryWikiLinkFinder(conn);
+    cachedPathFinder = new BreadthFirstPathFinder<>(cachingFinder);
+    inMemoryPathFinder = inMemoryFinder.pathFinder();
+
+    Random random = new Random(SEED);
+    starts = new int[NUM_QUERIES];
+    ends = new int[NUM_QUERIES];
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      starts[i] = random.nextInt(pages.size());
+      ends[i] = random.nextInt(pages.size());
+    }
+    query = 0;
+  }
+
+  /**
+   * Removes the fixture database.
+   *
+   * @throws Exception
+   *           If the database could not be closed.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    cachingFinder.close();
+    conn.close();
+    if (!dbFile.delete()) {
+      dbFile.deleteOnExit();
+    }
+  }
+
+  private WikiPage nextPage() {
+    return pages.get(starts[query++ & (NUM_QUERIES - 1)]);
+  }
+
+  /**
+   * Looks up the links of one page through CachingWikiLinkFinder, whose query
+   * results are kept in memory after the first lookup of each page.
+   *
+   * @return The links found, so they aren't optimized away.
+   * @throws IOException
+   *           Never, as every page is cached.
+   */
+  @Benchmark
+  public Set<String> cachingLinks() throws IOException {
+    return cachingFinder.links(nextPage());
+  }
+
+  /**
+   * Looks up the links of one page with the same query, but always going to
+   * the database.
+   *
+   * @return The links found, so they aren't optimized away.
+   */
+  @Benchmark
+  public List<Link> databaseLinks() {
+    return uncachedLookup.query(LinkTables.title(nextPage().url()));
+  }
+
+  /**
+   * @return The links found, so they aren't optimized away.
+   */
+  @Benchmark
+  public Set<String> inMemoryLinks() {
+    return inMemoryFinder.links(nextPage());
+  }
+
+  /**
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public List<Link> cachingBreadthFirst() {
+    int i = query++ & (NUM_QUERIES - 1);
+    return cachedPathFinder.shortestPath(pages.get(starts[i]),
+        pages.get(ends[i]));
+  }
+
+  /**
+   * @return The path found, so it isn't optimized away.
+   */
+  @Benchmark
+  public List<Link> inMemoryBreadthFirst() {
+    int i = query++ & (NUM_QUERIES - 1);
+    return inMemoryPathFinder.shortestPath(pages.get(starts[i]),
+        pages.get(ends[i]));
+  }
+}
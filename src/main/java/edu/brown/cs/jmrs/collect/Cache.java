@@ -1,16 +1,39 @@
 package edu.brown.cs.jmrs.collect;
 
+import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 /**
  * A class that memoizes input so that lookups only need to be run once, and
  * further calls are returned from memory (the cache). Uses a lookupMethod to
  * get the data from the actual source.
  *
- * Thread safe through use of a ConcurrentHashMap.
+ * Thread safe through use of a ConcurrentHashMap of per-key futures: when
+ * several threads miss on the same key at once, only the first runs
+ * lookupMethod, and the rest wait for and share its result. When bounded, an
+ * EvictionPolicy chooses which entries to evict to keep the total weight of
+ * entries (as given by a Weigher, e.g. estimated bytes) within a budget.
+ *
+ * Hits don't lock the policy: they are queued in a bounded buffer and
+ * replayed to the policy in batches, by whichever thread next holds its lock
+ * (before any insertion, or once enough hits are queued). When the buffer is
+ * full, further hits go unrecorded until it drains, as a hint lost under load
+ * costs less than making every reader wait.
  *
  * @author mcisler
  *
@@ -22,9 +45,27 @@ import com.google.common.base.Function;
  *
  */
 public class Cache<K, V> {
-  private final ConcurrentMap<K, V> cachedValues;
+  private final ConcurrentMap<K, FutureTask<V>> cachedValues;
   private final Function<K, V> lookupMethod;
-  private final int maxSize;
+
+  private static final int ACCESS_BUFFER_SIZE = 1024;
+  private static final int DRAIN_THRESHOLD    = 64;
+
+  // null when unbounded; only called with policyLock held
+  private final EvictionPolicy<K> policy;
+  private final Weigher<K, V> weigher;
+  private final ReentrantLock policyLock = new ReentrantLock();
+
+  // hits not yet recorded by the policy
+  private final Queue<K> accessBuffer = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger bufferedAccesses = new AtomicInteger();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loadSuccesses = new LongAdder();
+  private final LongAdder loadFailures = new LongAdder();
+  private final LongAdder loadTime = new LongAdder(); // ns
+  private final LongAdder evictions = new LongAdder();
 
   /**
    * Constructs a lookup method to cache outputs from the provided function for
@@ -35,50 +76,82 @@ public class Cache<K, V> {
    *          when get() is called.
    */
   public Cache(Function<K, V> lookupMethod) {
-    this.cachedValues = new ConcurrentHashMap<>();
-    this.lookupMethod = lookupMethod;
-    this.maxSize = Integer.MAX_VALUE;
+    this(lookupMethod, null, (k, v) -> 1);
   }
 
   /**
    * Constructs a lookup method to cache outputs from the provided function for
-   * potentially quicker access on subsequent calls. Also clears the cache after
-   * a particular number of entries are added.
+   * potentially quicker access on subsequent calls. Also evicts the least
+   * recently used entries once a particular number of entries are held.
    *
    * @param lookupMethod
    *          The function to be used to map keys to values. Essentally called
    *          when get() is called.
    * @param maxSize
-   *          The maximum number of elements to hold before emptying the cache.
+   *          The maximum number of elements to hold.
    */
   public Cache(Function<K, V> lookupMethod, int maxSize) {
+    this(lookupMethod, new LruPolicy<>(maxSize), (k, v) -> 1);
+  }
+
+  /**
+   * Constructs a lookup method to cache outputs from the provided function for
+   * potentially quicker access on subsequent calls, evicting entries as chosen
+   * by the given policy.
+   *
+   * @param lookupMethod
+   *          The function to be used to map keys to values. Essentally called
+   *          when get() is called.
+   * @param policy
+   *          The policy choosing which entries to evict, or null to never
+   *          evict.
+   * @param weigher
+   *          The weight of each entry, within the policy's maximum weight (for
+   *          instance, an estimate of its size in bytes).
+   */
+  public Cache(Function<K, V> lookupMethod, EvictionPolicy<K> policy,
+      Weigher<K, V> weigher) {
     this.cachedValues = new ConcurrentHashMap<>();
     this.lookupMethod = lookupMethod;
-    this.maxSize = maxSize;
+    this.policy = policy;
+    this.weigher = weigher;
   }
 
   /**
    * Gets the value corresponding to the given value according to the provided
    * lookupMethod. Looks up the value in the cache if it already exists, and
-   * only defers to lookupMethod when necessary.
+   * only defers to lookupMethod when necessary. If another thread is already
+   * looking up key, waits for its result instead.
+   *
+   * Exceptions thrown by lookupMethod are thrown to every thread waiting on
+   * that lookup (wrapped in an UncheckedExecutionException if checked), and
+   * are not cached.
    *
    * @param key
    *          Argument to the lookupMethod.
    * @return The value lookupMethod returns when given key.
    */
   public V get(K key) {
-    if (cachedValues.containsKey(key)) {
-      return cachedValues.get(key);
+    FutureTask<V> future = cachedValues.get(key);
+    if (future == null) {
+      FutureTask<V> lookup = new FutureTask<>(() -> lookupMethod.apply(key));
+      future = cachedValues.putIfAbsent(key, lookup);
+      if (future == null) {
+        // we won the race to look it up
+        misses.increment();
+        return load(key, lookup);
+      }
     }
-    V val = lookupMethod.apply(key);
-    put(key, val);
-    return val;
+
+    hits.increment();
+    used(key);
+    return valueOf(key, future);
   }
 
   /**
-   * Manually puts a value into this cache, overwriting any previous value. This
-   * value may be cleared if the cache exceeds maximum size.
-   *
+   * Manually puts a value into this cache, unless a value (or a lookup of one)
+   * for key is already present. This value may be evicted if the cache exceeds
+   * maximum size.
    *
    * @param key
    *          Argument to the lookupMethod, the key to correspond with value.
@@ -87,9 +160,133 @@ public class Cache<K, V> {
    * @return The value previously stored under key, or null if none was.
    */
   public V put(K key, V value) {
-    if (cachedValues.size() > maxSize) {
-      cachedValues.clear();
+    FutureTask<V> stored = new FutureTask<>(() -> value);
+    stored.run();
+
+    FutureTask<V> previous = cachedValues.putIfAbsent(key, stored);
+    if (previous == null) {
+      added(key, value);
+      return null;
+    }
+    return valueOf(key, previous);
+  }
+
+  /**
+   * @return The number of values held (including those being looked up).
+   */
+  public int size() {
+    return cachedValues.size();
+  }
+
+  /**
+   * @return The total weight of values held (not including those being looked
+   *         up), or the number of them if this cache is unbounded.
+   */
+  public long weight() {
+    if (policy == null) {
+      return cachedValues.size();
+    }
+    policyLock.lock();
+    try {
+      drainAccesses();
+      return policy.weight();
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  /**
+   * @return The hits, misses, lookups and evictions of this cache so far.
+   *         Waiting on another thread's lookup counts as a hit.
+   */
+  public CacheStats stats() {
+    return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(),
+        loadFailures.sum(), loadTime.sum(), evictions.sum());
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Cache (%d entries, weight %d): %s", size(),
+        weight(), stats());
+  }
+
+  private V load(K key, FutureTask<V> lookup) {
+    long start = System.nanoTime();
+    lookup.run();
+    loadTime.add(System.nanoTime() - start);
+
+    V value;
+    try {
+      value = valueOf(key, lookup);
+    } catch (RuntimeException | Error e) {
+      loadFailures.increment();
+      throw e;
+    }
+    loadSuccesses.increment();
+    added(key, value);
+    return value;
+  }
+
+  private V valueOf(K key, FutureTask<V> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      // don't keep failures, so the next get tries again
+      cachedValues.remove(key, future);
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  private void added(K key, V value) {
+    if (policy == null) {
+      return;
+    }
+    int weight = weigher.weigh(key, value);
+    policyLock.lock();
+    try {
+      // earlier hits first, so the policy sees them in order
+      drainAccesses();
+      List<K> evicted = policy.recordInsertion(key, weight);
+      for (K old : evicted) {
+        cachedValues.remove(old);
+      }
+      evictions.add(evicted.size());
+    } finally {
+      policyLock.unlock();
+    }
+  }
+
+  private void used(K key) {
+    if (policy == null) {
+      return;
+    }
+    int buffered = bufferedAccesses.incrementAndGet();
+    if (buffered > ACCESS_BUFFER_SIZE) {
+      // full; drop this hit rather than wait
+      bufferedAccesses.decrementAndGet();
+    } else {
+      accessBuffer.add(key);
+    }
+
+    // drain only if no one else holds the lock (they'll drain it anyway)
+    if (buffered >= DRAIN_THRESHOLD && policyLock.tryLock()) {
+      try {
+        drainAccesses();
+      } finally {
+        policyLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Replays the buffered hits to the policy. Must hold policyLock.
+   */
+  private void drainAccesses() {
+    K key;
+    while ((key = accessBuffer.poll()) != null) {
+      bufferedAccesses.decrementAndGet();
+      policy.recordAccess(key);
     }
-    return cachedValues.putIfAbsent(key, value);
   }
 }
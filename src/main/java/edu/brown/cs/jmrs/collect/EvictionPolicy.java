@@ -0,0 +1,61 @@
+package edu.brown.cs.jmrs.collect;
+
+import java.util.List;
+
+/**
+ * A policy for which entries a bounded Cache should evict, within a maximum
+ * total weight of entries. Policies only track keys and weights; the Cache
+ * removes the values.
+ *
+ * Implementations need not be thread safe; Cache makes all calls with one lock
+ * held. Accesses are recorded in batches some time after they happen (though
+ * always before the next insertion), so may be for keys since removed, and
+ * some may not be recorded at all under heavy load.
+ *
+ * @author mcisler
+ *
+ * @param <K>
+ *          The key type of the cache.
+ */
+public interface EvictionPolicy<K> {
+
+  /**
+   * Records that a key held by the cache was read.
+   *
+   * @param key
+   *          The key read.
+   */
+  void recordAccess(K key);
+
+  /**
+   * Records that a key was added to the cache, and chooses which keys to evict
+   * to stay within the maximum weight.
+   *
+   * @param key
+   *          The key added.
+   * @param weight
+   *          The weight of the entry for key.
+   * @return The keys to evict, which may include key itself if the policy
+   *         declines to keep it.
+   */
+  List<K> recordInsertion(K key, int weight);
+
+  /**
+   * Records that a key was removed from the cache by other means than
+   * eviction.
+   *
+   * @param key
+   *          The key removed.
+   */
+  void recordRemoval(K key);
+
+  /**
+   * @return The total weight of the keys currently held.
+   */
+  long weight();
+
+  /**
+   * @return The maximum total weight of keys this policy will hold.
+   */
+  long maxWeight();
+}
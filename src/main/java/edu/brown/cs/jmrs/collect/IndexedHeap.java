@@ -0,0 +1,241 @@
+package edu.brown.cs.jmrs.collect;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of unique elements with primitive double priorities, which
+ * keeps track of the position of each element so that an element's priority
+ * can be looked up or changed in O(log n) (i.e. a real decrease-key), rather
+ * than by removing and re-adding it.
+ *
+ * Not thread safe.
+ *
+ * @author mcisler
+ *
+ * @param <T>
+ *          The type of element in the heap. Must have a suitable hashCode() and
+ *          equals().
+ */
+public class IndexedHeap<T> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private Object[]              elements;
+  private double[]              priorities;
+  private final Map<T, Integer> positions;
+  private int                   size;
+
+  /**
+   * Constructs an empty IndexedHeap.
+   */
+  public IndexedHeap() {
+    elements = new Object[INITIAL_CAPACITY];
+    priorities = new double[INITIAL_CAPACITY];
+    positions = new HashMap<>();
+    size = 0;
+  }
+
+  /**
+   * @return The number of elements in the heap.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return Whether the heap is empty.
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param element
+   *          The element to look for.
+   * @return Whether element is in the heap.
+   */
+  public boolean contains(T element) {
+    return positions.containsKey(element);
+  }
+
+  /**
+   * @param element
+   *          The element to get the priority of.
+   * @return The priority of element.
+   * @throws NoSuchElementException
+   *           If element is not in the heap.
+   */
+  public double priority(T element) {
+    return priorities[position(element)];
+  }
+
+  /**
+   * Adds element with the given priority if it is not already in the heap, or
+   * lowers its priority if it is and priority is lower.
+   *
+   * @param element
+   *          The element to add.
+   * @param priority
+   *          The priority of the element; lower priorities are polled first.
+   * @return Whether the heap was changed.
+   */
+  public boolean offer(T element, double priority) {
+    Integer pos = positions.get(element);
+    if (pos == null) {
+      add(element, priority);
+      return true;
+    } else if (Double.compare(priority, priorities[pos]) < 0) {
+      priorities[pos] = priority;
+      siftUp(pos);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Lowers the priority of an element already in the heap.
+   *
+   * @param element
+   *          The element to change.
+   * @param priority
+   *          The new priority, which must not be greater than the old one.
+   * @throws NoSuchElementException
+   *           If element is not in the heap.
+   * @throws IllegalArgumentException
+   *           If priority is greater than the current priority.
+   */
+  public void decreaseKey(T element, double priority) {
+    int pos = position(element);
+    if (Double.compare(priority, priorities[pos]) > 0) {
+      throw new IllegalArgumentException(
+          "Cannot increase priority in decreaseKey");
+    }
+    priorities[pos] = priority;
+    siftUp(pos);
+  }
+
+  /**
+   * @return The element with the lowest priority, without removing it.
+   * @throws NoSuchElementException
+   *           If the heap is empty.
+   */
+  public T peek() {
+    if (size == 0) {
+      throw new NoSuchElementException("Heap is empty");
+    }
+    return elementAt(0);
+  }
+
+  /**
+   * @return The lowest priority in the heap.
+   * @throws NoSuchElementException
+   *           If the heap is empty.
+   */
+  public double peekPriority() {
+    if (size == 0) {
+      throw new NoSuchElementException("Heap is empty");
+    }
+    return priorities[0];
+  }
+
+  /**
+   * Removes and returns the element with the lowest priority.
+   *
+   * @return The element with the lowest priority, or null if the heap is
+   *         empty.
+   */
+  public T poll() {
+    if (size == 0) {
+      return null;
+    }
+    T top = elementAt(0);
+    positions.remove(top);
+
+    size--;
+    if (size > 0) {
+      move(size, 0);
+      siftDown(0);
+    }
+    elements[size] = null;
+    return top;
+  }
+
+  /**
+   * Removes all elements from the heap.
+   */
+  public void clear() {
+    Arrays.fill(elements, 0, size, null);
+    positions.clear();
+    size = 0;
+  }
+
+  private void add(T element, double priority) {
+    if (size == elements.length) {
+      elements = Arrays.copyOf(elements, size * 2);
+      priorities = Arrays.copyOf(priorities, size * 2);
+    }
+    elements[size] = element;
+    priorities[size] = priority;
+    positions.put(element, size);
+    siftUp(size++);
+  }
+
+  private int position(T element) {
+    Integer pos = positions.get(element);
+    if (pos == null) {
+      throw new NoSuchElementException(element + " is not in the heap");
+    }
+    return pos;
+  }
+
+  @SuppressWarnings("unchecked")
+  private T elementAt(int pos) {
+    return (T) elements[pos];
+  }
+
+  private void siftUp(int pos) {
+    Object element = elements[pos];
+    double priority = priorities[pos];
+    while (pos > 0) {
+      int parent = (pos - 1) / 2;
+      if (Double.compare(priority, priorities[parent]) >= 0) {
+        break;
+      }
+      move(parent, pos);
+      pos = parent;
+    }
+    place(element, priority, pos);
+  }
+
+  private void siftDown(int pos) {
+    Object element = elements[pos];
+    double priority = priorities[pos];
+    int half = size / 2; // nodes past this are leaves
+    while (pos < half) {
+      int child = 2 * pos + 1;
+      if (child + 1 < size
+          && Double.compare(priorities[child + 1], priorities[child]) < 0) {
+        child++;
+      }
+      if (Double.compare(priority, priorities[child]) <= 0) {
+        break;
+      }
+      move(child, pos);
+      pos = child;
+    }
+    place(element, priority, pos);
+  }
+
+  private void move(int from, int to) {
+    place(elements[from], priorities[from], to);
+  }
+
+  @SuppressWarnings("unchecked")
+  private void place(Object element, double priority, int pos) {
+    elements[pos] = element;
+    priorities[pos] = priority;
+    positions.put((T) element, pos);
+  }
+}
@@ -0,0 +1,77 @@
+package edu.brown.cs.jmrs.collect;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An EvictionPolicy evicting the least recently used keys, until the total
+ * weight of the rest fits.
+ *
+ * @author mcisler
+ *
+ * @param <K>
+ *          The key type of the cache.
+ */
+public class LruPolicy<K> implements EvictionPolicy<K> {
+  private final long maxWeight;
+
+  // least recently used first
+  private final LinkedHashMap<K, Integer> weights;
+  private long                          weight;
+
+  /**
+   * @param maxWeight
+   *          The maximum total weight of keys to hold.
+   */
+  public LruPolicy(long maxWeight) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive");
+    }
+    this.maxWeight = maxWeight;
+    this.weights = new LinkedHashMap<>(16, 0.75f, true);
+    this.weight = 0;
+  }
+
+  @Override
+  public void recordAccess(K key) {
+    weights.get(key); // moves it to the back
+  }
+
+  @Override
+  public List<K> recordInsertion(K key, int keyWeight) {
+    recordRemoval(key);
+    weights.put(key, keyWeight);
+    weight += keyWeight;
+
+    List<K> evicted = new ArrayList<>(1);
+    Iterator<Map.Entry<K, Integer>> eldest = weights.entrySet().iterator();
+    while (weight > maxWeight) {
+      Map.Entry<K, Integer> entry = eldest.next();
+      evicted.add(entry.getKey());
+      weight -= entry.getValue();
+      eldest.remove();
+    }
+    return evicted;
+  }
+
+  @Override
+  public void recordRemoval(K key) {
+    Integer keyWeight = weights.remove(key);
+    if (keyWeight != null) {
+      weight -= keyWeight;
+    }
+  }
+
+  @Override
+  public long weight() {
+    return weight;
+  }
+
+  @Override
+  public long maxWeight() {
+    return maxWeight;
+  }
+}
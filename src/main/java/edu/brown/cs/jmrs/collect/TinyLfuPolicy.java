@@ -0,0 +1,200 @@
+package edu.brown.cs.jmrs.collect;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An EvictionPolicy using W-TinyLFU: new keys enter a small LRU window, and
+ * keys pushed out of it only displace keys of the main LRU region if they have
+ * been used more often recently, as estimated by a count-min sketch of access
+ * frequencies. This keeps popular keys through bursts of keys used only once
+ * (e.g. one scrape, or a long search), which would flush a plain LRU.
+ *
+ * @author mcisler
+ *
+ * @param <K>
+ *          The key type of the cache.
+ */
+public class TinyLfuPolicy<K> implements EvictionPolicy<K> {
+  private static final double WINDOW_FRACTION = 0.01;
+
+  private final long maxWeight;
+  private final long maxWindowWeight;
+  private final long maxMainWeight;
+
+  // each least recently used first
+  private final LinkedHashMap<K, Integer> window;
+  private final LinkedHashMap<K, Integer> main;
+  private long                          windowWeight;
+  private long                          mainWeight;
+
+  private final FrequencySketch sketch;
+
+  /**
+   * @param maxWeight
+   *          The maximum total weight of keys to hold.
+   * @param expectedSize
+   *          About how many keys will be held at once, to size the frequency
+   *          sketch.
+   */
+  public TinyLfuPolicy(long maxWeight, int expectedSize) {
+    if (maxWeight <= 0) {
+      throw new IllegalArgumentException("Maximum weight must be positive");
+    }
+    this.maxWeight = maxWeight;
+    this.maxWindowWeight = (long) (maxWeight * WINDOW_FRACTION);
+    this.maxMainWeight = maxWeight - maxWindowWeight;
+    this.window = new LinkedHashMap<>(16, 0.75f, true);
+    this.main = new LinkedHashMap<>(16, 0.75f, true);
+    this.sketch = new FrequencySketch(expectedSize);
+  }
+
+  @Override
+  public void recordAccess(K key) {
+    // (called as Cache drains its buffered hits, not on each hit)
+    sketch.increment(key);
+    if (window.get(key) == null) { // moves it to the back of either
+      main.get(key);
+    }
+  }
+
+  @Override
+  public List<K> recordInsertion(K key, int weight) {
+    recordRemoval(key);
+    sketch.increment(key);
+
+    List<K> evicted = new ArrayList<>(1);
+    window.put(key, weight);
+    windowWeight += weight;
+
+    while (windowWeight > maxWindowWeight && !window.isEmpty()) {
+      Map.Entry<K, Integer> candidate = window.entrySet().iterator().next();
+      window.remove(candidate.getKey());
+      windowWeight -= candidate.getValue();
+      admit(candidate.getKey(), candidate.getValue(), evicted);
+    }
+    return evicted;
+  }
+
+  /**
+   * Moves a key pushed out of the window into main, if it is more popular than
+   * everything it would push out of main in turn; otherwise main is left as it
+   * was and the key is evicted instead.
+   */
+  private void admit(K candidate, int weight, List<K> evicted) {
+    if (weight > maxMainWeight) {
+      evicted.add(candidate);
+      return;
+    }
+
+    // find the victims before evicting any, so none go for a rejected key
+    int candidateFrequency = sketch.frequency(candidate);
+    List<K> victims = new ArrayList<>(1);
+    long freed = 0;
+    Iterator<Map.Entry<K, Integer>> oldest = main.entrySet().iterator();
+    while (mainWeight - freed + weight > maxMainWeight) {
+      Map.Entry<K, Integer> victim = oldest.next();
+      if (candidateFrequency <= sketch.frequency(victim.getKey())) {
+        evicted.add(candidate);
+        return;
+      }
+      victims.add(victim.getKey());
+      freed += victim.getValue();
+    }
+
+    for (K victim : victims) {
+      mainWeight -= main.remove(victim);
+    }
+    evicted.addAll(victims);
+    main.put(candidate, weight);
+    mainWeight += weight;
+  }
+
+  @Override
+  public void recordRemoval(K key) {
+    Integer weight = window.remove(key);
+    if (weight != null) {
+      windowWeight -= weight;
+    }
+    weight = main.remove(key);
+    if (weight != null) {
+      mainWeight -= weight;
+    }
+  }
+
+  @Override
+  public long weight() {
+    return windowWeight + mainWeight;
+  }
+
+  @Override
+  public long maxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * A count-min sketch of 4 bit counters (saturating at 15), which are all
+   * halved once enough increments have been made, so that the estimates favor
+   * recent popularity.
+   */
+  private static final class FrequencySketch {
+    private static final int ROWS        = 4;
+    private static final int MAX_COUNT   = 15;
+    private static final int SAMPLE_SIZE = 10; // per expected key
+    private static final int WIDTH_RATIO = 4;  // counters per expected key
+    private static final int MIN_SIZE    = 16;
+    private static final int MAX_SIZE    = 1 << 22;
+    private static final int[] SEEDS     =
+        {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+    private final byte[][] counters;
+    private final int      mask;
+    private final int      resetAt;
+    private int            increments;
+
+    FrequencySketch(int expectedSize) {
+      int size = Math.min(Math.max(MIN_SIZE, expectedSize), MAX_SIZE);
+      int width = (Integer.highestOneBit(size - 1) << 1) * WIDTH_RATIO;
+      counters = new byte[ROWS][width];
+      mask = width - 1;
+      resetAt = SAMPLE_SIZE * size;
+      increments = 0;
+    }
+
+    private int index(Object key, int row) {
+      int hash = key.hashCode() * SEEDS[row];
+      return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    void increment(Object key) {
+      boolean added = false;
+      for (int row = 0; row < ROWS; row++) {
+        int i = index(key, row);
+        if (counters[row][i] < MAX_COUNT) {
+          counters[row][i]++;
+          added = true;
+        }
+      }
+
+      if (added && ++increments >= resetAt) {
+        for (byte[] row : counters) {
+          for (int i = 0; i < row.length; i++) {
+            row[i] >>= 1;
+          }
+        }
+        increments /= 2;
+      }
+    }
+
+    int frequency(Object key) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < ROWS; row++) {
+        frequency = Math.min(frequency, counters[row][index(key, row)]);
+      }
+      return frequency;
+    }
+  }
+}
@@ -1,16 +1,15 @@
 package edu.brown.cs.jmrs.collect.graph;
 
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.function.BiFunction;
 
 import com.google.common.collect.ImmutableList;
 
+import edu.brown.cs.jmrs.collect.IndexedHeap;
 import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
 import edu.brown.cs.jmrs.collect.graph.Graph.Node;
 import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
@@ -53,11 +52,10 @@ public class AStarDirectedPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
     assert !start.equals(end);
 
     Map<N, Double> shortestDists = new HashMap<>();
-    Map<E, Double> distEstimates = new HashMap<>();
-    // make sure nodes are sorted by the lowest distance FROM START, NOT the
-    // lowest edge value
-    PriorityQueue<E> nonFounds =
-        new PriorityQueue<>(new DistsComparator(distEstimates));
+    // make sure nodes are sorted by the lowest estimated distance FROM START TO
+    // END through them, NOT the lowest edge value (the heap stores that
+    // estimate as its priority)
+    IndexedHeap<N> nonFounds = new IndexedHeap<>();
 
     Map<N, E> prevs = new HashMap<>();
     N curStart = start;
@@ -68,7 +66,8 @@ public class AStarDirectedPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
     // emptied, because it is polled every time but only added if a non-found or
     // closer node is found.
     while (true) {
-      // add all the neighbors of start to nonFounds / distEstimates
+      // add all the neighbors of start to nonFounds
+      double curDist = shortestDists.get(curStart);
       Collection<? extends E> startEdges = edgeFinder.edges(curStart);
       for (E edge : startEdges) {
         // this will serve as an assertion that the edges given are directed
@@ -78,16 +77,14 @@ public class AStarDirectedPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
         // distEstimates path to if necessary (if it doesn't exist or is closer
         // to the root) (use doubles because it will offer the most precision
         // and range of values)
-        double edgeDist =
-            shortestDists.get(curStart)
-                + edgeFinder.edgeValue(edge).doubleValue();
-        if (!shortestDists.containsKey(destNode)
-            || Double.compare(edgeDist, shortestDists.get(destNode)) < 0) {
+        double edgeDist = curDist + edgeFinder.edgeValue(edge).doubleValue();
+        Double destDist = shortestDists.get(destNode);
+        if (destDist == null || Double.compare(edgeDist, destDist) < 0) {
           shortestDists.put(destNode, edgeDist);
-          distEstimates.put(edge,
-              edgeDist + heuristicDistanceFunc.apply(destNode, end));
           prevs.put(destNode, edge);
-          nonFounds.add(edge);
+          // adds, or decreases the key of an already-queued node
+          nonFounds.offer(destNode,
+              edgeDist + heuristicDistanceFunc.apply(destNode, end));
         }
       }
 
@@ -95,16 +92,16 @@ public class AStarDirectedPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
         // no path to end was found if we've tried everything
         return ImmutableList.of();
       }
-      E nextShortest = nonFounds.poll();
-      if (nextShortest.getDestination().equals(end)) {
+      N nextShortest = nonFounds.poll();
+      if (nextShortest.equals(end)) {
         // stop searching one we hit the end node (it's guaranteed to be
         // the distEstimates path to that node by Dikstra's algorithm.).
         return buildPathBetween(start, end, prevs);
       } else {
-        // find all neighbors off the distEstimates edge from the known list
-        // (note that that edge is now considered 'found', i.e. completely
+        // find all neighbors off the closest estimated node from the known
+        // list (note that that node is now considered 'found', i.e. completely
         // searched)
-        curStart = nextShortest.getDestination();
+        curStart = nextShortest;
       }
     }
   }
@@ -129,27 +126,4 @@ public class AStarDirectedPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
     path.add(0, prev); // add last one going to start
     return path;
   }
-
-  /**
-   * A comparator to compare two edges by their NET distance from a root node.
-   *
-   * @author mcisler
-   */
-  private class DistsComparator implements Comparator<E> {
-    private Map<E, Double> distEstimates;
-
-    /**
-     * @param distEstimates
-     *          A map from node to it's estimated distance to the end, using the
-     *          heuristic function.
-     */
-    DistsComparator(Map<E, Double> distEstimates) {
-      this.distEstimates = distEstimates;
-    }
-
-    @Override
-    public int compare(E o1, E o2) {
-      return distEstimates.get(o1).compareTo(distEstimates.get(o2));
-    }
-  }
 }
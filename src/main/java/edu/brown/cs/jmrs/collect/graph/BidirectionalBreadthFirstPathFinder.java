@@ -0,0 +1,189 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
+import edu.brown.cs.jmrs.collect.graph.Graph.Node;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * A PathFinder implementation using a bidirectional breadth first search, which
+ * finds the path with the fewest edges. One search expands forward from the
+ * start over a normal EdgeFinder, while the other expands backward from the end
+ * over an EdgeFinder of incoming edges, a whole level at a time; the search
+ * stops at the end of the first level in which the two meet.
+ *
+ * Like {@link BreadthFirstPathFinder}, this is only the shortest path when
+ * every edge has the same value, and like
+ * {@link BidirectionalDijkstraPathFinder}, it may not be the shortest if the
+ * reverse EdgeFinder does not know of every incoming edge.
+ *
+ * @author mcisler
+ *
+ * @param <N>
+ *          The particular node implementation.
+ * @param <E>
+ *          The particular edge implementation.
+ */
+public class BidirectionalBreadthFirstPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
+    implements PathFinder<N, E> {
+  private final EdgeFinder<N, E> forwardEdgeFinder;
+  private final EdgeFinder<N, E> reverseEdgeFinder;
+
+  /**
+   * Constructs a {@link BidirectionalBreadthFirstPathFinder} using the given
+   * methods to find edges in each direction.
+   *
+   * @param forwardEdgeFinder
+   *          The edge finding method to find edges going out of a node.
+   * @param reverseEdgeFinder
+   *          The edge finding method to find edges going into a node, i.e. for
+   *          which that node is the destination.
+   */
+  public BidirectionalBreadthFirstPathFinder(
+      EdgeFinder<N, E> forwardEdgeFinder, EdgeFinder<N, E> reverseEdgeFinder) {
+    this.forwardEdgeFinder = forwardEdgeFinder;
+    this.reverseEdgeFinder = reverseEdgeFinder;
+  }
+
+  /**
+   * @see Graph.PathFinder#shortestPath(Node, Node) Note that this
+   *      implementation returns a list implemented as a LinkedList.
+   */
+  @Override
+  public List<E> shortestPath(N start, N end) {
+    assert !start.equals(end);
+
+    Search forward = new Search(forwardEdgeFinder, start, true);
+    Search backward = new Search(reverseEdgeFinder, end, false);
+
+    while (!forward.exhausted() && !backward.exhausted()) {
+      // expand the smaller frontier, to keep the two balls even
+      Search cur = forward.frontierSize() <= backward.frontierSize() ? forward
+          : backward;
+      Search other = cur == forward ? backward : forward;
+
+      // every meeting in this level is found before picking the best, as the
+      // first one found may be further from the other root
+      int best = Integer.MAX_VALUE;
+      N meeting = null;
+      for (N reached : cur.expandLevel()) {
+        Integer otherDist = other.dists.get(reached);
+        if (otherDist != null) {
+          int dist = cur.dists.get(reached) + otherDist;
+          if (dist < best) {
+            best = dist;
+            meeting = reached;
+          }
+        }
+      }
+
+      if (meeting != null) {
+        return buildPathThrough(start, end, meeting, forward.prevs,
+            backward.prevs);
+      }
+    }
+
+    // the frontiers never met
+    return ImmutableList.of();
+  }
+
+  /**
+   * Using maps between nodes and their predecessors (in the forward search)
+   * and successors (in the backward search), builds a list of edges from start
+   * to end through meeting.
+   */
+  private List<E> buildPathThrough(N start, N end, N meeting,
+      Map<N, E> forwardPrevs, Map<N, E> backwardNexts) {
+    List<E> path = new LinkedList<>();
+
+    N cur = meeting;
+    while (!cur.equals(start)) {
+      E prev = forwardPrevs.get(cur);
+      path.add(0, prev);
+      cur = prev.getSource();
+    }
+
+    cur = meeting;
+    while (!cur.equals(end)) {
+      E next = backwardNexts.get(cur);
+      path.add(next);
+      cur = next.getDestination();
+    }
+    return path;
+  }
+
+  /**
+   * The state of one direction of the search.
+   *
+   * @author mcisler
+   */
+  private class Search {
+    private final EdgeFinder<N, E> edgeFinder;
+    private final boolean          isForward;
+
+    // the edge each node was first reached by, and its distance from the root
+    private final Map<N, E>       prevs = new HashMap<>();
+    private final Map<N, Integer> dists = new HashMap<>();
+    private List<N>               frontier = new ArrayList<>();
+
+    /**
+     * @param edgeFinder
+     *          The method to find edges to expand in this direction.
+     * @param root
+     *          The node this direction starts from.
+     * @param isForward
+     *          Whether edges are followed from source to destination, or the
+     *          reverse.
+     */
+    Search(EdgeFinder<N, E> edgeFinder, N root, boolean isForward) {
+      this.edgeFinder = edgeFinder;
+      this.isForward = isForward;
+      dists.put(root, 0);
+      frontier.add(root);
+    }
+
+    /**
+     * @return Whether there are no more nodes to expand.
+     */
+    boolean exhausted() {
+      return frontier.isEmpty();
+    }
+
+    /**
+     * @return The number of nodes in the next level to expand.
+     */
+    int frontierSize() {
+      return frontier.size();
+    }
+
+    /**
+     * Expands every node of the current level.
+     *
+     * @return The nodes first reached, which make up the next level.
+     */
+    List<N> expandLevel() {
+      List<N> next = new ArrayList<>();
+      for (N node : frontier) {
+        int dist = dists.get(node) + 1;
+        for (E edge : edgeFinder.edges(node)) {
+          // this will serve as an assertion that the edges given are directed
+          N reached = isForward ? edge.getDestination() : edge.getSource();
+          if (!dists.containsKey(reached)) {
+            dists.put(reached, dist);
+            prevs.put(reached, edge);
+            next.add(reached);
+          }
+        }
+      }
+      frontier = next;
+      return next;
+    }
+  }
+}
@@ -0,0 +1,211 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.IndexedHeap;
+import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
+import edu.brown.cs.jmrs.collect.graph.Graph.Node;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * A PathFinder implementation using a bidirectional version of Dijkstra's
+ * algorithm. One search expands forward from the start over a normal
+ * EdgeFinder, while the other expands backward from the end over an EdgeFinder
+ * of incoming edges; the search stops once the two frontiers meet and no
+ * shorter meeting point is possible.
+ *
+ * Note that if the reverse EdgeFinder does not know of every incoming edge
+ * (i.e. it is a partial cache), any returned path is still a real path, but it
+ * may not be the shortest one.
+ *
+ * @author mcisler
+ *
+ * @param <N>
+ *          The particular node implementation.
+ * @param <E>
+ *          The particular edge implementation.
+ */
+public class BidirectionalDijkstraPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
+    implements PathFinder<N, E> {
+  private final EdgeFinder<N, E> forwardEdgeFinder;
+  private final EdgeFinder<N, E> reverseEdgeFinder;
+
+  /**
+   * Constructs a {@link BidirectionalDijkstraPathFinder} using the given
+   * methods to find edges in each direction.
+   *
+   * @param forwardEdgeFinder
+   *          The edge finding method to find edges going out of a node.
+   * @param reverseEdgeFinder
+   *          The edge finding method to find edges going into a node, i.e. for
+   *          which that node is the destination.
+   */
+  public BidirectionalDijkstraPathFinder(EdgeFinder<N, E> forwardEdgeFinder,
+      EdgeFinder<N, E> reverseEdgeFinder) {
+    this.forwardEdgeFinder = forwardEdgeFinder;
+    this.reverseEdgeFinder = reverseEdgeFinder;
+  }
+
+  /**
+   * @see Graph.PathFinder#shortestPath(Node, Node) Note that this
+   *      implementation returns a list implemented as a LinkedList.
+   */
+  @Override
+  public List<E> shortestPath(N start, N end) {
+    assert !start.equals(end);
+
+    Search forward = new Search(forwardEdgeFinder, start, true);
+    Search backward = new Search(reverseEdgeFinder, end, false);
+
+    // the best known start -> end distance, through meeting
+    double best = Double.POSITIVE_INFINITY;
+    N meeting = null;
+
+    while (!forward.exhausted() && !backward.exhausted()) {
+      // no path through an unsettled node can beat the best found so far
+      if (Double.compare(forward.frontierDist() + backward.frontierDist(),
+          best) >= 0) {
+        break;
+      }
+
+      // expand the smaller frontier, to keep the two balls even
+      Search cur = forward.frontierSize() <= backward.frontierSize() ? forward
+          : backward;
+      Search other = cur == forward ? backward : forward;
+
+      for (N reached : cur.settleNext()) {
+        if (other.shortest.containsKey(reached)) {
+          double dist =
+              cur.shortest.get(reached) + other.shortest.get(reached);
+          if (Double.compare(dist, best) < 0) {
+            best = dist;
+            meeting = reached;
+          }
+        }
+      }
+    }
+
+    if (meeting == null) {
+      // the frontiers never met
+      return ImmutableList.of();
+    }
+    return buildPathThrough(start, end, meeting, forward.prevs,
+        backward.prevs);
+  }
+
+  /**
+   * Using maps between nodes and their predecessors (in the forward search)
+   * and successors (in the backward search), builds a list of edges from start
+   * to end through meeting.
+   */
+  private List<E> buildPathThrough(N start, N end, N meeting,
+      Map<N, E> forwardPrevs, Map<N, E> backwardNexts) {
+    List<E> path = new LinkedList<>();
+
+    N cur = meeting;
+    while (!cur.equals(start)) {
+      E prev = forwardPrevs.get(cur);
+      path.add(0, prev);
+      cur = prev.getSource();
+    }
+
+    cur = meeting;
+    while (!cur.equals(end)) {
+      E next = backwardNexts.get(cur);
+      path.add(next);
+      cur = next.getDestination();
+    }
+    return path;
+  }
+
+  /**
+   * The state of one direction of the search.
+   *
+   * @author mcisler
+   */
+  private class Search {
+    private final EdgeFinder<N, E> edgeFinder;
+    private final boolean          isForward;
+
+    private final Map<N, Double> shortest = new HashMap<>();
+    private final Map<N, E>      prevs    = new HashMap<>();
+    private final Set<N>         settled  = new HashSet<>();
+    private final IndexedHeap<N> frontier = new IndexedHeap<>();
+
+    /**
+     * @param edgeFinder
+     *          The method to find edges to expand in this direction.
+     * @param root
+     *          The node this direction starts from.
+     * @param isForward
+     *          Whether edges are followed from source to destination, or the
+     *          reverse.
+     */
+    Search(EdgeFinder<N, E> edgeFinder, N root, boolean isForward) {
+      this.edgeFinder = edgeFinder;
+      this.isForward = isForward;
+      shortest.put(root, 0.0);
+      frontier.offer(root, 0.0);
+    }
+
+    /**
+     * @return Whether there are no more nodes to settle.
+     */
+    boolean exhausted() {
+      return frontier.isEmpty();
+    }
+
+    /**
+     * @return The distance of the next node to be settled.
+     */
+    double frontierDist() {
+      return frontier.peekPriority();
+    }
+
+    /**
+     * @return The number of nodes waiting to be settled.
+     */
+    int frontierSize() {
+      return frontier.size();
+    }
+
+    /**
+     * Settles the closest unsettled node and relaxes the edges off it.
+     *
+     * @return The nodes whose distance was changed, including the settled one.
+     */
+    List<N> settleNext() {
+      N node = frontier.poll();
+      settled.add(node);
+
+      List<N> reached = new LinkedList<>();
+      reached.add(node);
+
+      double nodeDist = shortest.get(node);
+      for (E edge : edgeFinder.edges(node)) {
+        // this will serve as an assertion that the edges given are directed
+        N next = isForward ? edge.getDestination() : edge.getSource();
+        if (settled.contains(next)) {
+          continue;
+        }
+
+        double dist = nodeDist + edgeFinder.edgeValue(edge).doubleValue();
+        if (!shortest.containsKey(next)
+            || Double.compare(dist, shortest.get(next)) < 0) {
+          shortest.put(next, dist);
+          prevs.put(next, edge);
+          frontier.offer(next, dist);
+          reached.add(next);
+        }
+      }
+      return reached;
+    }
+  }
+}
@@ -0,0 +1,192 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
+import edu.brown.cs.jmrs.collect.graph.Graph.Node;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * A PathFinder implementation using a breadth first search, which finds the
+ * path with the fewest edges. This is only the shortest path when every edge
+ * has the same value (see {@link EdgeFinder#hasUniformEdgeValues()}); edge
+ * values are otherwise ignored.
+ *
+ * Avoids the priority queue and distance bookkeeping of Dijkstra's algorithm,
+ * and can stop as soon as the end node is first seen.
+ *
+ * @author mcisler
+ *
+ * @param <N>
+ *          The particular node implementation.
+ * @param <E>
+ *          The particular edge implementation.
+ */
+public class BreadthFirstPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
+    implements PathFinder<N, E> {
+  private final EdgeFinder<N, E> edgeFinder;
+
+  /**
+   * Constructs a {@link BreadthFirstPathFinder} using the given method to find
+   * edges.
+   *
+   * @param edgeFinder
+   *          The edge finding method to using in finding shortest paths.
+   */
+  public BreadthFirstPathFinder(EdgeFinder<N, E> edgeFinder) {
+    this.edgeFinder = edgeFinder;
+  }
+
+  /**
+   * @see Graph.PathFinder#shortestPath(Node, Node) Note that this
+   *      implementation returns a list implemented as a LinkedList.
+   */
+  @Override
+  public List<E> shortestPath(N start, N end) {
+    assert !start.equals(end);
+
+    // the edge each node was first reached by; doubles as the visited set
+    Map<N, E> prevs = new HashMap<>();
+    Deque<N> frontier = new ArrayDeque<>();
+    frontier.add(start);
+
+    while (!frontier.isEmpty()) {
+      N cur = frontier.poll();
+      for (E edge : edgeFinder.edges(cur)) {
+        // this will serve as an assertion that the edges given are directed
+        N destNode = edge.getDestination();
+        if (destNode.equals(start) || prevs.containsKey(destNode)) {
+          continue;
+        }
+
+        prevs.put(destNode, edge);
+        if (destNode.equals(end)) {
+          // the first time we see end is by a shortest path
+          return buildPathBetween(start, end, prevs);
+        }
+        frontier.add(destNode);
+      }
+    }
+
+    // no path to end was found if we've tried everything
+    return ImmutableList.of();
+  }
+
+  /**
+   * Using a map between nodes and their predecessors, builds a list of edges
+   * from start to end.
+   */
+  private List<E> buildPathBetween(N start, N end, Map<N, E> prevs) {
+    List<E> path = new LinkedList<>();
+    N cur = end;
+    while (!cur.equals(start)) {
+      E prev = prevs.get(cur);
+      path.add(0, prev);
+      cur = prev.getSource();
+    }
+    return path;
+  }
+
+  /**
+   * Finds the path with the fewest edges between two nodes of a CsrGraph,
+   * using only primitive arrays.
+   *
+   * @param graph
+   *          The graph to search.
+   * @param start
+   *          The id of the node to search from.
+   * @param end
+   *          The id of the node to search for.
+   * @return The ids of the nodes along the path, from start to end inclusive,
+   *         or an empty array if there is no path.
+   */
+  public static int[] shortestPath(CsrGraph graph, int start, int end) {
+    if (start == end) {
+      return new int[] {start};
+    }
+
+    // the node each node was first reached from; doubles as the visited set
+    int[] prevs = new int[graph.numNodes()];
+    Arrays.fill(prevs, -1);
+    prevs[start] = start;
+
+    int[] frontier = new int[graph.numNodes()];
+    int head = 0;
+    int tail = 0;
+    frontier[tail++] = start;
+
+    while (head < tail) {
+      int cur = frontier[head++];
+      for (int e = graph.edgesStart(cur); e < graph.edgesEnd(cur); e++) {
+        int dest = graph.target(e);
+        if (prevs[dest] != -1) {
+          continue;
+        }
+
+        prevs[dest] = cur;
+        if (dest == end) {
+          return buildPathBetween(start, end, prevs);
+        }
+        frontier[tail++] = dest;
+      }
+    }
+    return new int[0];
+  }
+
+  /**
+   * Finds the number of edges on the shortest path from source to every node of
+   * a CsrGraph.
+   *
+   * @param graph
+   *          The graph to search.
+   * @param source
+   *          The id of the node to search from.
+   * @return The distance to each node by id, or -1 for nodes not reachable from
+   *         source.
+   */
+  public static int[] distances(CsrGraph graph, int source) {
+    int[] dists = new int[graph.numNodes()];
+    Arrays.fill(dists, -1);
+    dists[source] = 0;
+
+    int[] frontier = new int[graph.numNodes()];
+    int head = 0;
+    int tail = 0;
+    frontier[tail++] = source;
+
+    while (head < tail) {
+      int cur = frontier[head++];
+      for (int e = graph.edgesStart(cur); e < graph.edgesEnd(cur); e++) {
+        int dest = graph.target(e);
+        if (dists[dest] == -1) {
+          dists[dest] = dists[cur] + 1;
+          frontier[tail++] = dest;
+        }
+      }
+    }
+    return dists;
+  }
+
+  private static int[] buildPathBetween(int start, int end, int[] prevs) {
+    int length = 1;
+    for (int cur = end; cur != start; cur = prevs[cur]) {
+      length++;
+    }
+
+    int[] path = new int[length];
+    int cur = end;
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = cur;
+      cur = prevs[cur];
+    }
+    return path;
+  }
+}
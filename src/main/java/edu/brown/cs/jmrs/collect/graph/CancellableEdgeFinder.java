@@ -0,0 +1,69 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
+import edu.brown.cs.jmrs.collect.graph.Graph.Node;
+
+/**
+ * A decorator pattern for edge finders that stops any search using it once the
+ * searching thread is interrupted or a deadline passes, by throwing a
+ * CancellationException from edges(). This makes any PathFinder cancellable
+ * (through Future.cancel(true)) and time-bounded, at the granularity of one
+ * call to edges().
+ *
+ * @author mcisler
+ *
+ * @param <N>
+ *          The particular node implementation.
+ * @param <E>
+ *          The particular edge implementation.
+ */
+public class CancellableEdgeFinder<N extends Node<N, E>, E extends Edge<N, E>>
+    implements EdgeFinder<N, E> {
+  private final EdgeFinder<N, E> edgeFinder;
+  private final long             deadline; // in System.nanoTime()
+
+  /**
+   * @param edgeFinder
+   *          The edge finder to wrap.
+   * @param timeout
+   *          The time from now after which to stop finding edges (so this
+   *          should be created when the search starts, not before).
+   * @param unit
+   *          The unit of timeout.
+   */
+  public CancellableEdgeFinder(EdgeFinder<N, E> edgeFinder, long timeout,
+      TimeUnit unit) {
+    this.edgeFinder = edgeFinder;
+    this.deadline = System.nanoTime() + unit.toNanos(timeout);
+  }
+
+  /**
+   * @throws CancellationException
+   *           If the current thread has been interrupted or the deadline has
+   *           passed.
+   */
+  @Override
+  public Set<E> edges(N node) {
+    if (Thread.currentThread().isInterrupted()) {
+      throw new CancellationException("Interrupted while finding edges");
+    }
+    if (System.nanoTime() - deadline > 0) {
+      throw new CancellationException("Timed out while finding edges");
+    }
+    return edgeFinder.edges(node);
+  }
+
+  @Override
+  public Number edgeValue(E edge) {
+    return edgeFinder.edgeValue(edge);
+  }
+
+  @Override
+  public boolean hasUniformEdgeValues() {
+    return edgeFinder.hasUniformEdgeValues();
+  }
+}
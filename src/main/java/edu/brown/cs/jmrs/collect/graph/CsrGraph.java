@@ -0,0 +1,193 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.Arrays;
+
+/**
+ * A compact, immutable, directed graph over nodes identified by the integers 0
+ * to numNodes() - 1, stored in compressed sparse row (CSR) form: the
+ * destinations of all edges are stored in one int array, sorted by source,
+ * with a second array giving the offset of each node's edges in the first.
+ *
+ * Because no per-node or per-edge objects are kept, this is suited to holding
+ * very large graphs (such as all cached Wikipedia links) in memory. Iterate
+ * over the edges of a node with:
+ *
+ * <pre>
+ * for (int e = graph.edgesStart(node); e &lt; graph.edgesEnd(node); e++) {
+ *   int dest = graph.target(e);
+ * }
+ * </pre>
+ *
+ * @author mcisler
+ *
+ */
+public final class CsrGraph {
+  private final int[] offsets; // of length numNodes() + 1
+  private final int[] targets; // of length numEdges()
+
+  /**
+   * @param offsets
+   *          The index in targets of the first edge of each node, with a final
+   *          entry equal to targets.length.
+   * @param targets
+   *          The destinations of all edges, sorted by source.
+   */
+  private CsrGraph(int[] offsets, int[] targets) {
+    this.offsets = offsets;
+    this.targets = targets;
+  }
+
+  /**
+   * @return The number of nodes in this graph.
+   */
+  public int numNodes() {
+    return offsets.length - 1;
+  }
+
+  /**
+   * @return The number of (directed) edges in this graph.
+   */
+  public int numEdges() {
+    return targets.length;
+  }
+
+  /**
+   * @param node
+   *          The id of a node in this graph.
+   * @return The number of edges going out of node.
+   */
+  public int outDegree(int node) {
+    return offsets[node + 1] - offsets[node];
+  }
+
+  /**
+   * @param node
+   *          The id of a node in this graph.
+   * @return The index of the first edge going out of node.
+   */
+  public int edgesStart(int node) {
+    return offsets[node];
+  }
+
+  /**
+   * @param node
+   *          The id of a node in this graph.
+   * @return One past the index of the last edge going out of node.
+   */
+  public int edgesEnd(int node) {
+    return offsets[node + 1];
+  }
+
+  /**
+   * @param edge
+   *          The index of an edge in this graph.
+   * @return The id of the destination of edge.
+   */
+  public int target(int edge) {
+    return targets[edge];
+  }
+
+  /**
+   * @param node
+   *          The id of a node in this graph.
+   * @return A new array of the destinations of the edges going out of node.
+   */
+  public int[] neighbors(int node) {
+    return Arrays.copyOfRange(targets, offsets[node], offsets[node + 1]);
+  }
+
+  /**
+   * @return A new graph with the same nodes, but with every edge reversed.
+   */
+  public CsrGraph reverse() {
+    int n = numNodes();
+    int[] revOffsets = new int[n + 1];
+    for (int t : targets) {
+      revOffsets[t + 1]++;
+    }
+    for (int i = 0; i < n; i++) {
+      revOffsets[i + 1] += revOffsets[i];
+    }
+
+    int[] fill = Arrays.copyOf(revOffsets, n);
+    int[] revTargets = new int[targets.length];
+    for (int src = 0; src < n; src++) {
+      for (int e = offsets[src]; e < offsets[src + 1]; e++) {
+        revTargets[fill[targets[e]]++] = src;
+      }
+    }
+    return new CsrGraph(revOffsets, revTargets);
+  }
+
+  /**
+   * A Builder to accumulate edges in any order and then build a CsrGraph.
+   *
+   * @author mcisler
+   *
+   */
+  public static class Builder {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] sources = new int[INITIAL_CAPACITY];
+    private int[] dests   = new int[INITIAL_CAPACITY];
+    private int   numEdges;
+    private int   numNodes;
+
+    /**
+     * Adds a directed edge between two nodes, implicitly adding the nodes.
+     *
+     * @param src
+     *          The (non-negative) id of the source node.
+     * @param dest
+     *          The (non-negative) id of the destination node.
+     * @return This Builder, for further additions.
+     */
+    public Builder addEdge(int src, int dest) {
+      assert src >= 0 && dest >= 0;
+      if (numEdges == sources.length) {
+        sources = Arrays.copyOf(sources, numEdges * 2);
+        dests = Arrays.copyOf(dests, numEdges * 2);
+      }
+      sources[numEdges] = src;
+      dests[numEdges] = dest;
+      numEdges++;
+
+      numNodes = Math.max(numNodes, Math.max(src, dest) + 1);
+      return this;
+    }
+
+    /**
+     * Ensures the built graph has at least the given number of nodes, even if
+     * some of them have no edges.
+     *
+     * @param n
+     *          The minimum number of nodes.
+     * @return This Builder, for further additions.
+     */
+    public Builder numNodes(int n) {
+      numNodes = Math.max(numNodes, n);
+      return this;
+    }
+
+    /**
+     * @return A CsrGraph of all edges added so far.
+     */
+    public CsrGraph build() {
+      // counting sort by source
+      int[] offsets = new int[numNodes + 1];
+      for (int i = 0; i < numEdges; i++) {
+        offsets[sources[i] + 1]++;
+      }
+      for (int i = 0; i < numNodes; i++) {
+        offsets[i + 1] += offsets[i];
+      }
+
+      int[] fill = Arrays.copyOf(offsets, numNodes);
+      int[] targets = new int[numEdges];
+      for (int i = 0; i < numEdges; i++) {
+        targets[fill[sources[i]]++] = dests[i];
+      }
+      return new CsrGraph(offsets, targets);
+    }
+  }
+}
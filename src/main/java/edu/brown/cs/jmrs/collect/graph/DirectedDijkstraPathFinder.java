@@ -1,15 +1,14 @@
 package edu.brown.cs.jmrs.collect.graph;
 
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 
 import com.google.common.collect.ImmutableList;
 
+import edu.brown.cs.jmrs.collect.IndexedHeap;
 import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
 import edu.brown.cs.jmrs.collect.graph.Graph.Node;
 import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
@@ -49,9 +48,8 @@ public class DirectedDijkstraPathFinder<N extends Node<N, E>, E extends Edge<N,
 
     Map<N, Double> shortest = new HashMap<>();
     // make sure nodes are sorted by the lowest distance FROM START, NOT the
-    // lowest edge value
-    PriorityQueue<E> nonFounds =
-        new PriorityQueue<>(new ShortestComparator(shortest));
+    // lowest edge value (the heap stores that distance as its priority)
+    IndexedHeap<N> nonFounds = new IndexedHeap<>();
 
     Map<N, E> prevs = new HashMap<>();
     N curStart = start;
@@ -62,6 +60,7 @@ public class DirectedDijkstraPathFinder<N extends Node<N, E>, E extends Edge<N,
     // closer node is found.
     while (true) {
       // add all the neighbors of start to nonFounds / shortest
+      double curDist = shortest.get(curStart);
       Collection<? extends E> startEdges = edgeFinder.edges(curStart);
       for (E edge : startEdges) {
         // this will serve as an assertion that the edges given are directed
@@ -71,21 +70,17 @@ public class DirectedDijkstraPathFinder<N extends Node<N, E>, E extends Edge<N,
         // shortest path to if necessary (if it doesn't exist or is closer to
         // the root) (use doubles because it will offer the most precision and
         // range of values)
-        double edgeDist =
-            edgeFinder.edgeValue(edge).doubleValue() + shortest.get(curStart);
-        if (!shortest.containsKey(destNode)) {
+        double edgeDist = edgeFinder.edgeValue(edge).doubleValue() + curDist;
+        Double destDist = shortest.get(destNode);
+        if (destDist == null || Double.compare(edgeDist, destDist) < 0) {
           shortest.put(destNode, edgeDist);
           prevs.put(destNode, edge);
-          nonFounds.add(edge);
-        } else if (Double.compare(edgeDist, shortest.get(destNode)) < 0) {
-          shortest.put(destNode, edgeDist);
-          prevs.put(destNode, edge);
-          nonFounds.removeIf(e -> e.getDestination().equals(destNode));
-          nonFounds.add(edge);
+          // adds, or decreases the key of an already-queued node
+          nonFounds.offer(destNode, edgeDist);
         }
       }
 
-      E nextShortest = nonFounds.poll();
+      N nextShortest = nonFounds.poll();
 
       // just for wikispeedia's shortest path function
       // Main.debugLog(nextShortest);
@@ -94,15 +89,15 @@ public class DirectedDijkstraPathFinder<N extends Node<N, E>, E extends Edge<N,
         // no path to end was found if we've tried everything
         return ImmutableList.of();
       }
-      if (nextShortest.getDestination().equals(end)) {
+      if (nextShortest.equals(end)) {
         // stop searching one we hit the end node (it's guaranteed to be
         // the shortest path to that node by Dikstra's algorithm.).
         return buildPathBetween(start, end, prevs);
       } else {
-        // find all neighbors off the shortest edge from the known list
-        // (note that that edge is now considered 'found', i.e. completely
+        // find all neighbors off the shortest node from the known list
+        // (note that that node is now considered 'found', i.e. completely
         // searched)
-        curStart = nextShortest.getDestination();
+        curStart = nextShortest;
       }
     }
   }
@@ -127,27 +122,4 @@ public class DirectedDijkstraPathFinder<N extends Node<N, E>, E extends Edge<N,
     path.add(0, prev); // add last one going to start
     return path;
   }
-
-  /**
-   * A comparator to compare two edges by their NET distance from a root node.
-   *
-   * @author mcisler
-   */
-  private class ShortestComparator implements Comparator<E> {
-    private Map<N, Double> shortest;
-
-    /**
-     * @param shortest
-     *          A map from node to the shortest known distance to it.
-     */
-    ShortestComparator(Map<N, Double> shortest) {
-      this.shortest = shortest;
-    }
-
-    @Override
-    public int compare(E o1, E o2) {
-      return shortest.get(o1.getDestination())
-          .compareTo(shortest.get(o2.getDestination()));
-    }
-  }
 }
@@ -0,0 +1,308 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.Arrays;
+
+/**
+ * A precomputed index over a CsrGraph that answers exact shortest path
+ * distances (and paths) between any two nodes without searching, using a
+ * 2-hop labeling built by pruned landmark labeling (Akiba et al., 2013).
+ *
+ * Every node v is given an out-label of (hub, d(v, hub)) pairs and an in-label
+ * of (hub, d(hub, v)) pairs, such that for any s and t some hub on a shortest
+ * path from s to t is in both out(s) and in(t). d(s, t) is then the minimum of
+ * d(s, hub) + d(hub, t) over common hubs, found by merging the two labels.
+ * Labels are built by a breadth first search from every node in order of
+ * decreasing degree, pruned wherever the labels so far already give a
+ * distance, which keeps labels small on graphs with hubs (like Wikipedia).
+ *
+ * Each label entry also stores the next node towards (or from) its hub, so
+ * that paths can be read off the labels as well.
+ *
+ * @author mcisler
+ *
+ */
+public final class DistanceOracle {
+  private static final int INF = Integer.MAX_VALUE;
+
+  private final int[]   byRank; // node id of each hub rank
+  private final Label[] outLabels;
+  private final Label[] inLabels;
+
+  /**
+   * Builds labels for every node of graph.
+   *
+   * @param graph
+   *          The graph to answer distances over.
+   * @param reverse
+   *          The same graph with every edge reversed (see
+   *          {@link CsrGraph#reverse()}).
+   */
+  public DistanceOracle(CsrGraph graph, CsrGraph reverse) {
+    assert graph.numNodes() == reverse.numNodes();
+    int n = graph.numNodes();
+
+    byRank = byDegree(graph, reverse);
+    outLabels = new Label[n];
+    inLabels = new Label[n];
+    for (int v = 0; v < n; v++) {
+      outLabels[v] = new Label();
+      inLabels[v] = new Label();
+    }
+
+    // scratch space shared between searches
+    int[] dists = new int[n];
+    Arrays.fill(dists, INF);
+    int[] links = new int[n];
+    int[] queue = new int[n];
+    int[] rootDists = new int[n]; // by hub rank
+    Arrays.fill(rootDists, INF);
+
+    for (int rank = 0; rank < n; rank++) {
+      int root = byRank[rank];
+      // forward, finding d(root, v) for in-labels, pruned by out(root)
+      prunedSearch(graph, root, rank, outLabels[root], inLabels, dists, links,
+          queue, rootDists);
+      // backward, finding d(v, root) for out-labels, pruned by in(root)
+      prunedSearch(reverse, root, rank, inLabels[root], outLabels, dists,
+          links, queue, rootDists);
+    }
+
+    for (int v = 0; v < n; v++) {
+      outLabels[v].trim();
+      inLabels[v].trim();
+    }
+  }
+
+  /**
+   * @return Node ids sorted by decreasing total degree.
+   */
+  private static int[] byDegree(CsrGraph graph, CsrGraph reverse) {
+    int n = graph.numNodes();
+    long[] keyed = new long[n];
+    for (int v = 0; v < n; v++) {
+      // sort by degree descending, then by id
+      long degree = graph.outDegree(v) + reverse.outDegree(v);
+      keyed[v] = (-degree << 32) | v;
+    }
+    Arrays.sort(keyed);
+
+    int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = (int) keyed[i];
+    }
+    return order;
+  }
+
+  /**
+   * Runs a breadth first search from root over graph, adding root (as hub
+   * rank) to the labels of every node it reaches unless the distance to that
+   * node is already covered by rootLabel and the node's existing label.
+   */
+  private static void prunedSearch(CsrGraph graph, int root, int rank,
+      Label rootLabel, Label[] labels, int[] dists, int[] links, int[] queue,
+      int[] rootDists) {
+    for (int i = 0; i < rootLabel.size; i++) {
+      rootDists[rootLabel.hubs[i]] = rootLabel.dists[i];
+    }
+
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = root;
+    dists[root] = 0;
+    links[root] = root;
+
+    while (head < tail) {
+      int cur = queue[head++];
+      int curDist = dists[cur];
+
+      // prune if the labels so far already give a path this short
+      Label label = labels[cur];
+      boolean covered = false;
+      for (int i = 0; i < label.size && !covered; i++) {
+        int rootDist = rootDists[label.hubs[i]];
+        covered = rootDist != INF && rootDist + label.dists[i] <= curDist;
+      }
+      if (covered) {
+        continue;
+      }
+
+      label.add(rank, curDist, links[cur]);
+      for (int e = graph.edgesStart(cur); e < graph.edgesEnd(cur); e++) {
+        int dest = graph.target(e);
+        if (dists[dest] == INF) {
+          dists[dest] = curDist + 1;
+          links[dest] = cur;
+          queue[tail++] = dest;
+        }
+      }
+    }
+
+    // reset scratch space for the next search
+    for (int i = 0; i < tail; i++) {
+      dists[queue[i]] = INF;
+    }
+    for (int i = 0; i < rootLabel.size; i++) {
+      rootDists[rootLabel.hubs[i]] = INF;
+    }
+  }
+
+  /**
+   * @return The number of nodes in the indexed graph.
+   */
+  public int numNodes() {
+    return byRank.length;
+  }
+
+  /**
+   * @return The total number of entries across all labels.
+   */
+  public long numLabelEntries() {
+    long entries = 0;
+    for (int v = 0; v < byRank.length; v++) {
+      entries += outLabels[v].size + inLabels[v].size;
+    }
+    return entries;
+  }
+
+  /**
+   * @return The approximate number of bytes used by the labels.
+   */
+  public long sizeInBytes() {
+    return numLabelEntries() * 3 * Integer.BYTES + 4L * byRank.length;
+  }
+
+  /**
+   * @param start
+   *          The id of the node a path would start at.
+   * @param end
+   *          The id of the node a path would end at.
+   * @return The number of edges on the shortest path from start to end, or -1
+   *         if there is no such path.
+   */
+  public int distance(int start, int end) {
+    if (start == end) {
+      return 0;
+    }
+    int hub = bestHub(start, end);
+    if (hub == -1) {
+      return -1;
+    }
+    return outLabels[start].dist(hub) + inLabels[end].dist(hub);
+  }
+
+  /**
+   * @param start
+   *          The id of the node the path starts at.
+   * @param end
+   *          The id of the node the path ends at.
+   * @return The ids of the nodes along a shortest path, from start to end
+   *         inclusive, or an empty array if there is no path.
+   */
+  public int[] path(int start, int end) {
+    if (start == end) {
+      return new int[] {start};
+    }
+    int hub = bestHub(start, end);
+    if (hub == -1) {
+      return new int[0];
+    }
+
+    int hubNode = byRank[hub];
+    int toHub = outLabels[start].dist(hub);
+    int[] path = new int[toHub + inLabels[end].dist(hub) + 1];
+
+    // forward from start to the hub...
+    int cur = start;
+    for (int i = 0; i < toHub; i++) {
+      path[i] = cur;
+      cur = outLabels[cur].link(hub);
+    }
+    assert cur == hubNode;
+
+    // ...and backward from end to the hub
+    cur = end;
+    for (int i = path.length - 1; i > toHub; i--) {
+      path[i] = cur;
+      cur = inLabels[cur].link(hub);
+    }
+    assert cur == hubNode;
+    path[toHub] = hubNode;
+    return path;
+  }
+
+  /**
+   * @return The rank of the hub in out(start) and in(end) minimizing the
+   *         distance through it, or -1 if they share none.
+   */
+  private int bestHub(int start, int end) {
+    Label out = outLabels[start];
+    Label in = inLabels[end];
+
+    int best = -1;
+    int bestDist = INF;
+    int i = 0;
+    int j = 0;
+    // both labels are sorted by hub rank
+    while (i < out.size && j < in.size) {
+      if (out.hubs[i] < in.hubs[j]) {
+        i++;
+      } else if (out.hubs[i] > in.hubs[j]) {
+        j++;
+      } else {
+        int dist = out.dists[i] + in.dists[j];
+        if (dist < bestDist) {
+          best = out.hubs[i];
+          bestDist = dist;
+        }
+        i++;
+        j++;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * The hubs of one node with, for each, the distance to (or from) it and the
+   * next node on the path to (or previous node on the path from) it. Hubs are
+   * added in increasing rank order, so each label is sorted by hub.
+   */
+  private static final class Label {
+    private int[] hubs  = new int[1];
+    private int[] dists = new int[1];
+    private int[] links = new int[1];
+    private int   size;
+
+    void add(int hub, int dist, int link) {
+      assert size == 0 || hubs[size - 1] < hub;
+      if (size == hubs.length) {
+        hubs = Arrays.copyOf(hubs, size * 2);
+        dists = Arrays.copyOf(dists, size * 2);
+        links = Arrays.copyOf(links, size * 2);
+      }
+      hubs[size] = hub;
+      dists[size] = dist;
+      links[size] = link;
+      size++;
+    }
+
+    void trim() {
+      hubs = Arrays.copyOf(hubs, size);
+      dists = Arrays.copyOf(dists, size);
+      links = Arrays.copyOf(links, size);
+    }
+
+    int dist(int hub) {
+      return dists[indexOf(hub)];
+    }
+
+    int link(int hub) {
+      return links[indexOf(hub)];
+    }
+
+    private int indexOf(int hub) {
+      int i = Arrays.binarySearch(hubs, 0, size, hub);
+      assert i >= 0;
+      return i;
+    }
+  }
+}
@@ -46,6 +46,18 @@ public interface EdgeFinder<N extends Node<N, E>, E extends Edge<N, E>> {
    */
   Number edgeValue(E edge);
 
+  /**
+   * Whether edgeValue() gives the same value for every edge, so that the
+   * shortest path is simply the one with the fewest edges and can be found by
+   * a breadth first search (see {@link Graph.PathFinder#forEdgeFinder(EdgeFinder)}).
+   *
+   * @return Whether all edge values are equal. False by default, which is
+   *         always safe.
+   */
+  default boolean hasUniformEdgeValues() {
+    return false;
+  }
+
   /**
    * A default implementation of the required neighbors() method that uses
    * edges() to find non-self neighbors (unless one neighbor is
@@ -178,6 +178,23 @@ public class Graph<N extends Node<N, E>, E extends Edge<N, E>> {
      *         shortest path between them.
      */
     List<E> shortestPath(N start, N end);
+
+    /**
+     * Chooses the fastest PathFinder suitable for the given EdgeFinder: a
+     * {@link BreadthFirstPathFinder} if it has uniform edge values, or a
+     * {@link DirectedDijkstraPathFinder} otherwise.
+     *
+     * @param edgeFinder
+     *          The edge finding method to use in finding shortest paths.
+     * @return A PathFinder over edgeFinder.
+     */
+    static <N extends Node<N, E>, E extends Edge<N, E>> PathFinder<N, E> forEdgeFinder(
+        EdgeFinder<N, E> edgeFinder) {
+      if (edgeFinder.hasUniformEdgeValues()) {
+        return new BreadthFirstPathFinder<>(edgeFinder);
+      }
+      return new DirectedDijkstraPathFinder<>(edgeFinder);
+    }
   }
 
 }
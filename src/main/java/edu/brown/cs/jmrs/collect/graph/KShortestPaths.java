@@ -0,0 +1,205 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds the k shortest simple paths (by number of edges) from any node to a
+ * fixed end node of a CsrGraph, using Yen's algorithm: each path after the
+ * first is found by branching off ("spurring" from) some node of a previous
+ * path, with the edges already taken from that same prefix removed.
+ *
+ * All searches for one instance share the distances to the end node, which are
+ * used to skip nodes that cannot reach it at all, and the same scratch arrays,
+ * which are cleared by bumping a stamp rather than refilling them. Not thread
+ * safe.
+ *
+ * @author mcisler
+ *
+ */
+public final class KShortestPaths {
+  private static final Comparator<int[]> BY_LENGTH =
+      (a, b) -> Integer.compare(a.length, b.length);
+
+  private final CsrGraph graph;
+  private final int      end;
+  private final int[]    toEnd;
+
+  // scratch space for spur searches; an entry is set iff it equals stamp
+  private final int[] visited;
+  private final int[] blocked;
+  private final int[] prevs;
+  private final int[] queue;
+  private int         stamp;
+
+  /**
+   * Precomputes distances to end.
+   *
+   * @param graph
+   *          The graph to search.
+   * @param reverse
+   *          The same graph with every edge reversed (see
+   *          {@link CsrGraph#reverse()}).
+   * @param end
+   *          The id of the node all paths end at.
+   */
+  public KShortestPaths(CsrGraph graph, CsrGraph reverse, int end) {
+    this.graph = graph;
+    this.end = end;
+    this.toEnd = BreadthFirstPathFinder.distances(reverse, end);
+
+    int n = graph.numNodes();
+    visited = new int[n];
+    blocked = new int[n];
+    prevs = new int[n];
+    queue = new int[n];
+    stamp = 0;
+  }
+
+  /**
+   * @param start
+   *          The id of the node paths start at.
+   * @param k
+   *          The maximum number of paths to find.
+   * @return Up to k distinct simple paths from start to end, each as the ids of
+   *         the nodes along it, in order of increasing length.
+   */
+  public List<int[]> find(int start, int k) {
+    List<int[]> found = new ArrayList<>(k);
+    if (k <= 0 || toEnd[start] == -1) {
+      return found;
+    }
+    if (start == end) {
+      found.add(new int[] {start});
+      return found;
+    }
+
+    found.add(spurPath(start, new int[0], 0, new HashSet<>(0)));
+
+    PriorityQueue<int[]> candidates = new PriorityQueue<>(BY_LENGTH);
+    Set<Path> seen = new HashSet<>();
+    seen.add(new Path(found.get(0)));
+
+    while (found.size() < k) {
+      int[] last = found.get(found.size() - 1);
+
+      for (int i = 0; i < last.length - 1; i++) {
+        int spur = last[i];
+
+        // don't retake the next edge of any found path sharing this root
+        Set<Integer> taken = new HashSet<>();
+        for (int[] path : found) {
+          if (path.length > i + 1 && sharesRoot(path, last, i)) {
+            taken.add(path[i + 1]);
+          }
+        }
+
+        int[] spurPath = spurPath(spur, last, i, taken);
+        if (spurPath != null) {
+          int[] candidate = new int[i + spurPath.length];
+          System.arraycopy(last, 0, candidate, 0, i);
+          System.arraycopy(spurPath, 0, candidate, i, spurPath.length);
+          if (seen.add(new Path(candidate))) {
+            candidates.add(candidate);
+          }
+        }
+      }
+
+      if (candidates.isEmpty()) {
+        break;
+      }
+      found.add(candidates.poll());
+    }
+    return found;
+  }
+
+  private static boolean sharesRoot(int[] path, int[] other, int spurIndex) {
+    for (int j = 0; j <= spurIndex; j++) {
+      if (path[j] != other[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Breadth first search from spur to end, avoiding the first spurIndex nodes
+   * of root, and not stepping from spur to any of the taken nodes.
+   *
+   * @return The path from the spur node to end, or null if there is none.
+   */
+  private int[] spurPath(int spur, int[] root, int spurIndex,
+      Set<Integer> taken) {
+    stamp++;
+    for (int j = 0; j < spurIndex; j++) {
+      blocked[root[j]] = stamp;
+    }
+
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = spur;
+    visited[spur] = stamp;
+
+    while (head < tail) {
+      int cur = queue[head++];
+      for (int e = graph.edgesStart(cur); e < graph.edgesEnd(cur); e++) {
+        int dest = graph.target(e);
+        if (visited[dest] == stamp || blocked[dest] == stamp
+            || toEnd[dest] == -1 || (cur == spur && taken.contains(dest))) {
+          continue;
+        }
+
+        visited[dest] = stamp;
+        prevs[dest] = cur;
+        if (dest == end) {
+          return buildPathBetween(spur);
+        }
+        queue[tail++] = dest;
+      }
+    }
+    return null;
+  }
+
+  private int[] buildPathBetween(int spur) {
+    int length = 1;
+    for (int cur = end; cur != spur; cur = prevs[cur]) {
+      length++;
+    }
+
+    int[] path = new int[length];
+    int cur = end;
+    for (int i = length - 1; i >= 0; i--) {
+      path[i] = cur;
+      if (i > 0) {
+        cur = prevs[cur];
+      }
+    }
+    return path;
+  }
+
+  /**
+   * A path with value equality, for deduplicating candidates.
+   */
+  private static final class Path {
+    private final int[] nodes;
+
+    Path(int[] nodes) {
+      this.nodes = nodes;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Path && Arrays.equals(nodes, ((Path) obj).nodes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(nodes);
+    }
+  }
+}
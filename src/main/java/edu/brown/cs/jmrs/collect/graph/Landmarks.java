@@ -0,0 +1,165 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A set of landmark nodes in a CsrGraph with precomputed (breadth first)
+ * distances to and from every other node, used to give admissible lower bounds
+ * on the distance between any two nodes by the triangle inequality (the ALT
+ * heuristic for A*):
+ *
+ * <pre>
+ * d(v, t) &gt;= d(L, t) - d(L, v)
+ * d(v, t) &gt;= d(v, L) - d(t, L)
+ * </pre>
+ *
+ * Distances are stored as shorts, one array per landmark and direction, so K
+ * landmarks over n nodes take 4Kn bytes.
+ *
+ * @author mcisler
+ *
+ */
+public final class Landmarks {
+  /**
+   * A reasonable default number of landmarks; more give tighter bounds at the
+   * cost of memory and time per lookup.
+   */
+  public static final int DEFAULT_NUM_LANDMARKS = 16;
+
+  // unreachable, or too far to store (either way, unusable in a bound)
+  private static final short UNKNOWN = -1;
+
+  private final int[]     landmarks;
+  private final short[][] fromLandmark; // [i][v] = d(landmark i, v)
+  private final short[][] toLandmark;   // [i][v] = d(v, landmark i)
+
+  /**
+   * Precomputes distances to and from the given landmarks.
+   *
+   * @param graph
+   *          The graph to compute distances over.
+   * @param reverse
+   *          The same graph with every edge reversed (see
+   *          {@link CsrGraph#reverse()}).
+   * @param landmarks
+   *          The ids of the landmark nodes.
+   */
+  public Landmarks(CsrGraph graph, CsrGraph reverse, int[] landmarks) {
+    assert graph.numNodes() == reverse.numNodes();
+    this.landmarks = landmarks.clone();
+    fromLandmark = new short[landmarks.length][];
+    toLandmark = new short[landmarks.length][];
+    for (int i = 0; i < landmarks.length; i++) {
+      fromLandmark[i] =
+          compact(BreadthFirstPathFinder.distances(graph, landmarks[i]));
+      toLandmark[i] =
+          compact(BreadthFirstPathFinder.distances(reverse, landmarks[i]));
+    }
+  }
+
+  /**
+   * Chooses the k hub nodes with the most edges to or from them as landmarks,
+   * and precomputes distances to and from them.
+   *
+   * @param graph
+   *          The graph to compute distances over.
+   * @param reverse
+   *          The same graph with every edge reversed (see
+   *          {@link CsrGraph#reverse()}).
+   * @param k
+   *          The number of landmarks to choose. If there are fewer nodes, all
+   *          are chosen.
+   * @return The computed Landmarks.
+   */
+  public static Landmarks ofHubs(CsrGraph graph, CsrGraph reverse, int k) {
+    k = Math.min(k, graph.numNodes());
+    if (k <= 0) {
+      return new Landmarks(graph, reverse, new int[0]);
+    }
+
+    // keep the k highest degree nodes seen so far, lowest degree at the head
+    PriorityQueue<Integer> hubs =
+        new PriorityQueue<>(k, (a, b) -> Integer.compare(
+            degree(graph, reverse, a), degree(graph, reverse, b)));
+    for (int node = 0; node < graph.numNodes(); node++) {
+      if (hubs.size() < k) {
+        hubs.add(node);
+      } else if (degree(graph, reverse, node) > degree(graph, reverse,
+          hubs.peek())) {
+        hubs.poll();
+        hubs.add(node);
+      }
+    }
+
+    int[] landmarks = new int[hubs.size()];
+    for (int i = landmarks.length - 1; i >= 0; i--) {
+      landmarks[i] = hubs.poll(); // highest degree first
+    }
+    return new Landmarks(graph, reverse, landmarks);
+  }
+
+  private static int degree(CsrGraph graph, CsrGraph reverse, int node) {
+    return graph.outDegree(node) + reverse.outDegree(node);
+  }
+
+  private static short[] compact(int[] dists) {
+    short[] compacted = new short[dists.length];
+    for (int v = 0; v < dists.length; v++) {
+      compacted[v] =
+          dists[v] < 0 || dists[v] > Short.MAX_VALUE ? UNKNOWN
+              : (short) dists[v];
+    }
+    return compacted;
+  }
+
+  /**
+   * @return The ids of the landmark nodes, highest degree first when chosen by
+   *         ofHubs().
+   */
+  public int[] landmarks() {
+    return landmarks.clone();
+  }
+
+  /**
+   * @return The number of bytes used by the distance tables.
+   */
+  public long sizeInBytes() {
+    long size = 0;
+    for (int i = 0; i < landmarks.length; i++) {
+      size += 2L * (fromLandmark[i].length + toLandmark[i].length);
+    }
+    return size;
+  }
+
+  /**
+   * Gives a lower bound on the number of edges on any path between two nodes.
+   *
+   * @param node
+   *          The id of the node the path starts at.
+   * @param end
+   *          The id of the node the path ends at.
+   * @return A lower bound on d(node, end), which is 0 if nothing is known.
+   */
+  public int lowerBound(int node, int end) {
+    int bound = 0;
+    for (int i = 0; i < landmarks.length; i++) {
+      short[] from = fromLandmark[i];
+      if (from[node] != UNKNOWN && from[end] != UNKNOWN) {
+        bound = Math.max(bound, from[end] - from[node]);
+      }
+
+      short[] to = toLandmark[i];
+      if (to[node] != UNKNOWN && to[end] != UNKNOWN) {
+        bound = Math.max(bound, to[node] - to[end]);
+      }
+    }
+    return bound;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Landmarks %s (%d bytes)", Arrays.toString(landmarks),
+        sizeInBytes());
+  }
+}
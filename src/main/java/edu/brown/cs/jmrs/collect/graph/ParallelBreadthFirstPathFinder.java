@@ -0,0 +1,177 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
+import edu.brown.cs.jmrs.collect.graph.Graph.Node;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * A PathFinder implementation using a level-synchronous breadth first search,
+ * where every node of a level of the search is expanded concurrently on an
+ * executor before moving on to the next level. The search stops after the
+ * first level in which the end node is found.
+ *
+ * This is worthwhile when edges() is slow and can be called concurrently, as
+ * when it fetches pages from the web or database. Like
+ * {@link BreadthFirstPathFinder}, the path found has the fewest edges, and is
+ * only the shortest path when edge values are uniform.
+ *
+ * Closing the path finder shuts down the pool it made for itself, if any;
+ * executors given to it are left to their owner.
+ *
+ * @author mcisler
+ *
+ * @param <N>
+ *          The particular node implementation.
+ * @param <E>
+ *          The particular edge implementation.
+ */
+public class ParallelBreadthFirstPathFinder<N extends Node<N, E>, E extends Edge<N, E>>
+    implements PathFinder<N, E>, AutoCloseable {
+  private final EdgeFinder<N, E> edgeFinder;
+  private final ExecutorService  executor;
+  private final boolean          ownsExecutor;
+
+  /**
+   * Constructs a {@link ParallelBreadthFirstPathFinder} expanding nodes on its
+   * own ForkJoinPool (of daemon threads), shut down on close().
+   *
+   * @param edgeFinder
+   *          The edge finding method to using in finding shortest paths. Must
+   *          be safe to call from multiple threads.
+   * @param parallelism
+   *          The number of nodes to expand at once.
+   */
+  public ParallelBreadthFirstPathFinder(EdgeFinder<N, E> edgeFinder,
+      int parallelism) {
+    this(edgeFinder, new ForkJoinPool(parallelism), true);
+  }
+
+  /**
+   * Constructs a {@link ParallelBreadthFirstPathFinder} expanding nodes on the
+   * given executor, which should be bounded, and is left running on close().
+   *
+   * @param edgeFinder
+   *          The edge finding method to using in finding shortest paths. Must
+   *          be safe to call from multiple threads.
+   * @param executor
+   *          The executor to expand nodes on.
+   */
+  public ParallelBreadthFirstPathFinder(EdgeFinder<N, E> edgeFinder,
+      ExecutorService executor) {
+    this(edgeFinder, executor, false);
+  }
+
+  private ParallelBreadthFirstPathFinder(EdgeFinder<N, E> edgeFinder,
+      ExecutorService executor, boolean ownsExecutor) {
+    this.edgeFinder = edgeFinder;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+  }
+
+  /**
+   * Shuts down the pool this made for itself, if any, after which it can no
+   * longer find paths.
+   */
+  @Override
+  public void close() {
+    if (ownsExecutor) {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * @see Graph.PathFinder#shortestPath(Node, Node) Note that this
+   *      implementation returns a list implemented as a LinkedList, and returns
+   *      an empty list (with the interrupt flag set) if interrupted.
+   * @throws UncheckedExecutionException
+   *           If edges() threw a checked exception for some node.
+   */
+  @Override
+  public List<E> shortestPath(N start, N end) {
+    assert !start.equals(end);
+
+    // the edge each node was first reached by; doubles as the visited set
+    Map<N, E> prevs = new ConcurrentHashMap<>();
+    List<N> level = ImmutableList.of(start);
+
+    while (!level.isEmpty()) {
+      List<Callable<List<N>>> expansions = new ArrayList<>(level.size());
+      for (N node : level) {
+        expansions.add(() -> expand(node, start, end, prevs));
+      }
+
+      List<N> nextLevel = new ArrayList<>();
+      try {
+        for (Future<List<N>> expansion : executor.invokeAll(expansions)) {
+          nextLevel.addAll(expansion.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return ImmutableList.of();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new UncheckedExecutionException(e.getCause());
+      }
+
+      if (prevs.containsKey(end)) {
+        return buildPathBetween(start, end, prevs);
+      }
+      level = nextLevel;
+    }
+
+    // no path to end was found if we've tried everything
+    return ImmutableList.of();
+  }
+
+  /**
+   * Finds the nodes first reached from node, recording the edges they were
+   * reached by in prevs.
+   */
+  private List<N> expand(N node, N start, N end, Map<N, E> prevs) {
+    if (prevs.containsKey(end)) {
+      // another expansion on this level already found it
+      return ImmutableList.of();
+    }
+
+    List<N> found = new ArrayList<>();
+    for (E edge : edgeFinder.edges(node)) {
+      // this will serve as an assertion that the edges given are directed
+      N destNode = edge.getDestination();
+      if (!destNode.equals(start) && prevs.putIfAbsent(destNode, edge) == null) {
+        found.add(destNode);
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Using a map between nodes and their predecessors, builds a list of edges
+   * from start to end.
+   */
+  private List<E> buildPathBetween(N start, N end, Map<N, E> prevs) {
+    List<E> path = new LinkedList<>();
+    N cur = end;
+    while (!cur.equals(start)) {
+      E prev = prevs.get(cur);
+      path.add(0, prev);
+      cur = prev.getSource();
+    }
+    return path;
+  }
+}
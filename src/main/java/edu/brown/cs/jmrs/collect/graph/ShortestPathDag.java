@@ -0,0 +1,196 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The directed acyclic graph of ALL shortest paths (by number of edges) between
+ * two nodes of a CsrGraph: the nodes and edges lying on at least one of them.
+ *
+ * Built from one breadth first search from the start and one (over the
+ * reversed graph) from the end; an edge (u, v) is on a shortest path exactly
+ * when d(start, u) + 1 + d(v, end) = d(start, end).
+ *
+ * @author mcisler
+ *
+ */
+public final class ShortestPathDag {
+  private final CsrGraph graph;
+  private final int      start;
+  private final int      end;
+  private final int      distance;
+  private final int[]    fromStart;
+  private final int[]    toEnd;
+
+  private ShortestPathDag(CsrGraph graph, int start, int end, int[] fromStart,
+      int[] toEnd) {
+    this.graph = graph;
+    this.start = start;
+    this.end = end;
+    this.distance = fromStart[end];
+    this.fromStart = fromStart;
+    this.toEnd = toEnd;
+  }
+
+  /**
+   * Finds all shortest paths between two nodes.
+   *
+   * @param graph
+   *          The graph to search.
+   * @param reverse
+   *          The same graph with every edge reversed (see
+   *          {@link CsrGraph#reverse()}).
+   * @param start
+   *          The id of the node paths start at.
+   * @param end
+   *          The id of the node paths end at.
+   * @return The ShortestPathDag between start and end.
+   */
+  public static ShortestPathDag between(CsrGraph graph, CsrGraph reverse,
+      int start, int end) {
+    return new ShortestPathDag(graph, start, end,
+        BreadthFirstPathFinder.distances(graph, start),
+        BreadthFirstPathFinder.distances(reverse, end));
+  }
+
+  /**
+   * @return The number of edges on each shortest path, or -1 if there is no
+   *         path.
+   */
+  public int distance() {
+    return distance;
+  }
+
+  /**
+   * @param node
+   *          The id of a node.
+   * @return Whether node is on some shortest path from start to end.
+   */
+  public boolean contains(int node) {
+    return distance != -1 && fromStart[node] != -1 && toEnd[node] != -1
+        && fromStart[node] + toEnd[node] == distance;
+  }
+
+  /**
+   * @param src
+   *          The id of the source of an edge.
+   * @param dest
+   *          The id of the destination of an edge.
+   * @return Whether the edge from src to dest is on some shortest path from
+   *         start to end (assuming the edge exists).
+   */
+  public boolean contains(int src, int dest) {
+    return distance != -1 && fromStart[src] != -1 && toEnd[dest] != -1
+        && fromStart[src] + 1 + toEnd[dest] == distance;
+  }
+
+  /**
+   * @return The ids of all nodes on some shortest path, in order of distance
+   *         from start.
+   */
+  public int[] nodes() {
+    if (distance == -1) {
+      return new int[0];
+    }
+
+    // bucket by distance from start
+    List<List<Integer>> layers = new ArrayList<>(distance + 1);
+    for (int d = 0; d <= distance; d++) {
+      layers.add(new ArrayList<>());
+    }
+    for (int node = 0; node < fromStart.length; node++) {
+      if (contains(node)) {
+        layers.get(fromStart[node]).add(node);
+      }
+    }
+
+    List<Integer> nodes = new ArrayList<>();
+    for (List<Integer> layer : layers) {
+      nodes.addAll(layer);
+    }
+    int[] ids = new int[nodes.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = nodes.get(i);
+    }
+    return ids;
+  }
+
+  /**
+   * @return The number of distinct shortest paths from start to end, or
+   *         Long.MAX_VALUE if there are at least that many.
+   */
+  public long countPaths() {
+    if (distance == -1) {
+      return 0;
+    }
+
+    int[] nodes = nodes();
+    // position of each node in nodes, by node id
+    int[] indices = new int[fromStart.length];
+    for (int i = 0; i < nodes.length; i++) {
+      indices[nodes[i]] = i;
+    }
+
+    // paths from start to each node, in order of distance from start
+    long[] counts = new long[nodes.length];
+    counts[indices[start]] = 1;
+    for (int i = 0; i < nodes.length; i++) {
+      int node = nodes[i];
+      for (int e = graph.edgesStart(node); e < graph.edgesEnd(node); e++) {
+        int dest = graph.target(e);
+        if (contains(node, dest)) {
+          int j = indices[dest];
+          counts[j] =
+              Long.MAX_VALUE - counts[j] < counts[i] ? Long.MAX_VALUE
+                  : counts[j] + counts[i];
+        }
+      }
+    }
+    return counts[indices[end]];
+  }
+
+  /**
+   * @param limit
+   *          The maximum number of paths to give.
+   * @return Up to limit shortest paths from start to end, each as the ids of
+   *         the nodes along it.
+   */
+  public List<int[]> paths(int limit) {
+    List<int[]> paths = new ArrayList<>();
+    if (distance == -1 || limit <= 0) {
+      return paths;
+    }
+
+    // depth first along DAG edges; every one leads on to end
+    int[] path = new int[distance + 1];
+    int[] nextEdge = new int[distance + 1];
+    path[0] = start;
+    nextEdge[0] = graph.edgesStart(start);
+    int depth = 0;
+
+    while (depth >= 0 && paths.size() < limit) {
+      if (depth == distance) {
+        paths.add(Arrays.copyOf(path, path.length));
+        depth--;
+        continue;
+      }
+
+      int node = path[depth];
+      int e = nextEdge[depth];
+      while (e < graph.edgesEnd(node) && !contains(node, graph.target(e))) {
+        e++;
+      }
+
+      if (e == graph.edgesEnd(node)) {
+        depth--;
+      } else {
+        nextEdge[depth] = e + 1;
+        depth++;
+        path[depth] = graph.target(e);
+        nextEdge[depth] = graph.edgesStart(path[depth]);
+      }
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,271 @@
+package edu.brown.cs.jmrs.io.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A non-blocking facade over a DbConn, running queries and inserts on a
+ * dedicated, bounded pool of database threads and returning
+ * CompletableFutures of their results, so that callers (ex. threads handling
+ * commands) never wait on the disk.
+ *
+ * Work beyond what the pool can queue is rejected (the future fails with a
+ * RejectedExecutionException) rather than queued without bound, and futures
+ * not done within a timeout fail with a TimeoutException (though the work
+ * itself still runs to completion).
+ *
+ * @author mcisler
+ *
+ */
+public class AsyncDbConn implements AutoCloseable {
+  private final DbConn                   conn;
+  private final ThreadPoolExecutor       executor;
+  private final ScheduledExecutorService timer;
+  private final long                     timeoutMillis;
+
+  /**
+   * @param conn
+   *          The DbConn to run queries and inserts on.
+   * @param numThreads
+   *          The number of database threads; more than the number of reader
+   *          connections of conn (plus one for writing) gains nothing.
+   * @param maxQueued
+   *          The maximum amount of work to queue for the threads.
+   * @param timeoutMillis
+   *          The time after which to give up waiting on each query or insert.
+   */
+  public AsyncDbConn(DbConn conn, int numThreads, int maxQueued,
+      long timeoutMillis) {
+    this.conn = conn;
+    this.executor =
+        new ThreadPoolExecutor(numThreads, numThreads, 0,
+            TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued),
+            new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("db-%d").build());
+    this.timer =
+        Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("db-timeout").build());
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * @return The DbConn queries and inserts are run on, for making them.
+   */
+  public DbConn conn() {
+    return conn;
+  }
+
+  /**
+   * Runs query on a database thread.
+   *
+   * @param query
+   *          The query to run.
+   * @param inputs
+   *          The inputs to substitute in order into the parameters of the
+   *          query.
+   * @return The future list of returned objects from the query.
+   * @param <T>
+   *          The type the query returns.
+   */
+  public <T> CompletableFuture<List<T>> query(Query<T> query,
+      Object... inputs) {
+    return submit(() -> query.query(inputs));
+  }
+
+  /**
+   * Runs insert on a database thread.
+   *
+   * @param insert
+   *          The insert to run.
+   * @param objs
+   *          The objects to insert in a batch.
+   * @return A future done once they are inserted.
+   * @param <T>
+   *          The type the insert takes.
+   */
+  public <T> CompletableFuture<Void> insertAll(Insert<T> insert,
+      Collection<T> objs) {
+    return submit(() -> {
+      insert.insertAll(objs);
+      return null;
+    });
+  }
+
+  /**
+   * Creates a lookup of rows by key that runs concurrent lookups as one
+   * query, for queries selecting the rows matching any of a fixed number of
+   * keys (ex. "... WHERE key IN (?, ?, ?)").
+   *
+   * @param query
+   *          The query to run, with maxKeys parameters; unused ones are null.
+   * @param maxKeys
+   *          The number of keys the query takes.
+   * @param keyOf
+   *          The key of each object returned by the query.
+   * @return The lookup.
+   * @param <K>
+   *          The key type.
+   * @param <T>
+   *          The type the query returns.
+   */
+  public <K, T> BatchedLookup<K, T> batchedLookup(Query<T> query, int maxKeys,
+      Function<T, K> keyOf) {
+    return new BatchedLookup<>(query, maxKeys, keyOf);
+  }
+
+  @Override
+  public void close() {
+    executor.shutdown();
+    timer.shutdownNow();
+  }
+
+  private <V> CompletableFuture<V> submit(Supplier<V> work) {
+    CompletableFuture<V> future;
+    try {
+      future = CompletableFuture.supplyAsync(work, executor);
+    } catch (RejectedExecutionException e) {
+      future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+    return withTimeout(future);
+  }
+
+  private <V> CompletableFuture<V> withTimeout(CompletableFuture<V> future) {
+    ScheduledFuture<?> timeout = timer.schedule(() -> {
+      future.completeExceptionally(new TimeoutException(
+          "Database work took over " + timeoutMillis + "ms"));
+    }, timeoutMillis, TimeUnit.MILLISECONDS);
+    future.whenComplete((v, e) -> timeout.cancel(false));
+    return future;
+  }
+
+  /**
+   * A lookup of rows by key that gathers up the keys looked up while a query
+   * is running, and looks them up together in the next query.
+   *
+   * @author mcisler
+   *
+   * @param <K>
+   *          The key type.
+   * @param <T>
+   *          The type the query returns.
+   */
+  public final class BatchedLookup<K, T> {
+    private final Query<T>       query;
+    private final int            maxKeys;
+    private final Function<T, K> keyOf;
+
+    // waiting for a query, oldest first; guarded by this
+    private final LinkedHashMap<K, CompletableFuture<List<T>>> pending;
+    private boolean                                            scheduled;
+
+    private BatchedLookup(Query<T> query, int maxKeys, Function<T, K> keyOf) {
+      this.query = query;
+      this.maxKeys = maxKeys;
+      this.keyOf = keyOf;
+      this.pending = new LinkedHashMap<>();
+      this.scheduled = false;
+    }
+
+    /**
+     * Looks up the rows matching key, along with any other keys looked up
+     * meanwhile.
+     *
+     * @param key
+     *          The key to look up.
+     * @return The future list of rows with key.
+     */
+    public CompletableFuture<List<T>> get(K key) {
+      CompletableFuture<List<T>> future;
+      synchronized (this) {
+        future = pending.get(key);
+        if (future != null) {
+          // already waiting on the same key
+          return future;
+        }
+        future = new CompletableFuture<>();
+        pending.put(key, future);
+        if (!scheduled) {
+          scheduled = true;
+          try {
+            executor.execute(this::flush);
+          } catch (RejectedExecutionException e) {
+            scheduled = false;
+            pending.remove(key);
+            future.completeExceptionally(e);
+            return future;
+          }
+        }
+      }
+      return withTimeout(future);
+    }
+
+    /**
+     * @return The number of keys waiting to be looked up.
+     */
+    public synchronized int pendingKeys() {
+      return pending.size();
+    }
+
+    private void flush() {
+      Map<K, CompletableFuture<List<T>>> batch = new HashMap<>(maxKeys);
+      synchronized (this) {
+        Iterator<Map.Entry<K, CompletableFuture<List<T>>>> oldest =
+            pending.entrySet().iterator();
+        while (batch.size() < maxKeys && oldest.hasNext()) {
+          Map.Entry<K, CompletableFuture<List<T>>> entry = oldest.next();
+          batch.put(entry.getKey(), entry.getValue());
+          oldest.remove();
+        }
+        // left for the next query, which will also pick up further keys
+        scheduled = !pending.isEmpty();
+        if (scheduled) {
+          try {
+            executor.execute(this::flush);
+          } catch (RejectedExecutionException e) {
+            scheduled = false;
+            pending.values().forEach(f -> f.completeExceptionally(e));
+            pending.clear();
+          }
+        }
+      }
+
+      try {
+        Object[] inputs = batch.keySet().toArray(new Object[maxKeys]);
+        Map<K, List<T>> rows = new HashMap<>(batch.size());
+        for (K key : batch.keySet()) {
+          rows.put(key, new ArrayList<>());
+        }
+        query.forEach(row -> {
+          List<T> rowsOfKey = rows.get(keyOf.apply(row));
+          if (rowsOfKey != null) {
+            rowsOfKey.add(row);
+          }
+        }, inputs);
+
+        batch.forEach((key, future) -> future.complete(rows.get(key)));
+      } catch (RuntimeException | Error e) {
+        batch.values().forEach(future -> future.completeExceptionally(e));
+      }
+    }
+  }
+}
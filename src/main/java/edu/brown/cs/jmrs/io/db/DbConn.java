@@ -7,18 +7,36 @@ import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Provides a simpler interface to normal SQL database calls, as well as
  * built-in level 1 caching based on queries.
  *
+ * Optionally keeps a pool of reader connections beside the one (writer)
+ * connection, with the database in WAL mode, so that queries never wait on
+ * inserts and vice versa. Each thread reads through one of the readers
+ * (assigned in turn on first use), matching the per-thread prepared
+ * statements.
+ *
+ * Every write (execute(), Inserts, and transaction()) holds the writing
+ * connection's lock while it runs, so that writes from other threads wait for
+ * an open transaction to finish rather than joining it.
+ *
  * @author mcisler
  */
 public class DbConn implements AutoCloseable {
-  // there can only be one connection to the database:
+  // there can only be one writing connection to the database:
   // http://stackoverflow.com/a/10707791
   private final Connection conn;
 
+  // empty when not pooled, in which case conn does the reading too
+  private final List<Connection>        readers;
+  private final AtomicInteger           nextReader;
+  private final ThreadLocal<Connection> localReader;
+
   /**
    * Constructs a DbConn out of the provided Sqlite3 database, to be ready for
    * querying.
@@ -54,6 +72,32 @@ public class DbConn implements AutoCloseable {
    */
   public DbConn(String path, final String setup)
       throws ClassNotFoundException, FileNotFoundException {
+    this(path, setup, 0);
+  }
+
+  /**
+   * Constructs a DbConn out of the provided Sqlite3 database, to be ready for
+   * querying, optionally with a pool of connections for reading.
+   *
+   * @param path
+   *          The path to the .sqlite3 database to load.
+   * @param setup
+   *          pre-commands (ex. PRAGMA commands) to execute on first connection
+   *          (of each connection, if pooled)
+   * @param numReaders
+   *          The number of connections to use for queries, separate from the
+   *          one used for inserts; if positive, the database is put in WAL
+   *          mode so that they can run at once. If 0, one connection is used
+   *          for everything.
+   * @throws ClassNotFoundException
+   *           If the driver for Sqlite3 could not be loaded.
+   * @throws UnsupportedOperationException
+   *           If the database was not a .sqlite3 database.
+   * @throws FileNotFoundException
+   *           If database could not be found.
+   */
+  public DbConn(String path, final String setup, int numReaders)
+      throws ClassNotFoundException, FileNotFoundException {
     Class.forName("org.sqlite.JDBC");
 
     // try to open the database (don't use ones that aren't there yet)
@@ -65,16 +109,42 @@ public class DbConn implements AutoCloseable {
       throw new FileNotFoundException("Database not found at " + path);
     }
 
+    readers = new ArrayList<>(numReaders);
+    nextReader = new AtomicInteger();
+    localReader = ThreadLocal.withInitial(() -> readers
+        .get(Math.floorMod(nextReader.getAndIncrement(), readers.size())));
+
     try {
       conn = DriverManager.getConnection("jdbc:sqlite:" + path);
       try (Statement stat = conn.createStatement()) {
+        if (numReaders > 0) {
+          // persistent, so only needs setting on one connection
+          stat.execute("PRAGMA journal_mode = WAL");
+        }
         stat.executeUpdate(setup);
       }
+
+      for (int i = 0; i < numReaders; i++) {
+        Connection reader = DriverManager.getConnection("jdbc:sqlite:" + path);
+        try (Statement stat = reader.createStatement()) {
+          stat.execute("PRAGMA query_only = ON");
+          stat.executeUpdate(setup);
+        }
+        readers.add(reader);
+      }
     } catch (SQLException e) {
       throw new UncheckedSqlException(e);
     }
   }
 
+  /**
+   * @return The number of connections used only for queries, or 0 if queries
+   *         use the same connection as inserts.
+   */
+  public int numReaders() {
+    return readers.size();
+  }
+
   /**
    * Makes a query out of string and an DbReader to read objects.
    *
@@ -89,7 +159,7 @@ public class DbConn implements AutoCloseable {
   public <T> Query<T> makeQuery(final String query, DbReader<T> reader) {
     ThreadLocal<PreparedStatement> p = ThreadLocal.withInitial(() -> {
       try {
-        return conn.prepareStatement(query);
+        return reader().prepareStatement(query);
       } catch (SQLException e) {
         throw new UncheckedSqlException(e);
       }
@@ -116,7 +186,7 @@ public class DbConn implements AutoCloseable {
       boolean save) {
     ThreadLocal<PreparedStatement> p = ThreadLocal.withInitial(() -> {
       try {
-        return conn.prepareStatement(query);
+        return reader().prepareStatement(query);
       } catch (SQLException e) {
         throw new UncheckedSqlException(e);
       }
@@ -124,6 +194,19 @@ public class DbConn implements AutoCloseable {
     return new Query<T>(p, reader, save);
   }
 
+  /**
+   * Makes a query whose rows are only read through forEachRow(), so need no
+   * DbReader, and whose results are not cached. (Other ways of running it
+   * return no objects.)
+   *
+   * @param query
+   *          The query to create from.
+   * @return The new Query.
+   */
+  public Query<Void> makeQuery(final String query) {
+    return makeQuery(query, new DbReader<Void>(rs -> null), false);
+  }
+
   /**
    * @param insertStatement
    *          The query to insert using.
@@ -144,12 +227,67 @@ public class DbConn implements AutoCloseable {
         throw new UncheckedSqlException(e);
       }
     });
-    writer.setup(conn);
-    return new Insert<T>(p, writer);
+    synchronized (conn) {
+      writer.setup(conn);
+    }
+    return new Insert<T>(p, writer, conn);
+  }
+
+  /**
+   * Executes statements that return nothing (ex. schema changes) directly, on
+   * the writing connection.
+   *
+   * @param statements
+   *          One or more SQL statements, separated by semicolons.
+   * @throws UncheckedSqlException
+   *           If any statement fails.
+   */
+  public void execute(String statements) {
+    synchronized (conn) {
+      try (Statement stat = conn.createStatement()) {
+        stat.executeUpdate(statements);
+      } catch (SQLException e) {
+        throw new UncheckedSqlException(e);
+      }
+    }
+  }
+
+  /**
+   * Runs work (ex. several inserts) in a single transaction on the writing
+   * connection, committing it if work completes and rolling it back if it
+   * throws. Transactions from different threads run one at a time, and other
+   * threads' writes wait until it is done.
+   *
+   * @param work
+   *          The inserts to make.
+   * @throws UncheckedSqlException
+   *           If the transaction could not be started or committed.
+   */
+  public void transaction(Runnable work) {
+    synchronized (conn) {
+      execute("BEGIN;");
+      try {
+        work.run();
+      } catch (RuntimeException | Error e) {
+        execute("ROLLBACK;");
+        throw e;
+      }
+      execute("COMMIT;");
+    }
   }
 
   @Override
   public void close() throws Exception {
+    for (Connection reader : readers) {
+      reader.close();
+    }
     conn.close();
   }
+
+  /**
+   * @return The connection for this thread to read from.
+   */
+  private Connection reader() {
+    return readers.isEmpty() ? conn : localReader.get();
+  }
 }
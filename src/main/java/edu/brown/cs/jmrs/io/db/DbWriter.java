@@ -3,6 +3,7 @@ package edu.brown.cs.jmrs.io.db;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 
 /**
  * An abstraction representing how to identify uniquely and construct an object
@@ -44,8 +45,9 @@ public class DbWriter<T> {
   }
 
   /**
-   * Executes the setup prepared statement defined on this object, if it was
-   * included.
+   * Executes the setup statement defined on this object, if it was included.
+   * Uses a plain Statement so that setup may contain several SQL statements (a
+   * PreparedStatement only executes the first).
    *
    * @param conn
    *          The database Connection to execute the setupStatement on.
@@ -54,8 +56,8 @@ public class DbWriter<T> {
    */
   public void setup(Connection conn) throws SQLException {
     if (setupStatement != null) {
-      try (PreparedStatement ps = conn.prepareStatement(setupStatement)) {
-        ps.executeUpdate();
+      try (Statement stat = conn.createStatement()) {
+        stat.executeUpdate(setupStatement);
       }
     }
   }
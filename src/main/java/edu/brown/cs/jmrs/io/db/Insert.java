@@ -15,6 +15,7 @@ import java.util.Collection;
  */
 public class Insert<T> extends DbStatement<T> {
   private final DbWriter<T> objectWriter;
+  private final Object      writeLock;
 
   /**
    * Constructs an Insert to write objects to the database.
@@ -23,10 +24,15 @@ public class Insert<T> extends DbStatement<T> {
    *          The PrepareStatement representing the insert/update.
    * @param objectWriter
    *          The DbWriter to write objecst to the PreparedStatement
+   * @param writeLock
+   *          The lock held by every write to the same connection, held while
+   *          inserting so as not to join another thread's transaction.
    */
-  public Insert(ThreadLocal<PreparedStatement> p, DbWriter<T> objectWriter) {
+  public Insert(ThreadLocal<PreparedStatement> p, DbWriter<T> objectWriter,
+      Object writeLock) {
     super(p);
     this.objectWriter = objectWriter;
+    this.writeLock = writeLock;
   }
 
   /**
@@ -37,11 +43,13 @@ public class Insert<T> extends DbStatement<T> {
    */
   public void insert(T object) {
     PreparedStatement ps = getLocalPreparedStatement();
-    objectWriter.fill(ps, object);
-    try {
-      ps.executeUpdate();
-    } catch (SQLException e) {
-      throw new UncheckedSqlException(e);
+    synchronized (writeLock) {
+      objectWriter.fill(ps, object);
+      try {
+        ps.executeUpdate();
+      } catch (SQLException e) {
+        throw new UncheckedSqlException(e);
+      }
     }
   }
 
@@ -54,15 +62,17 @@ public class Insert<T> extends DbStatement<T> {
    */
   public void insertAll(Collection<T> objs) {
     PreparedStatement ps = getLocalPreparedStatement();
-    try {
-      for (T object : objs) {
-        objectWriter.fill(ps, object);
-        ps.addBatch();
-      }
+    synchronized (writeLock) {
+      try {
+        for (T object : objs) {
+          objectWriter.fill(ps, object);
+          ps.addBatch();
+        }
 
-      ps.executeBatch();
-    } catch (SQLException e) {
-      throw new UncheckedSqlException(e);
+        ps.executeBatch();
+      } catch (SQLException e) {
+        throw new UncheckedSqlException(e);
+      }
     }
   }
 }
@@ -3,30 +3,49 @@ package edu.brown.cs.jmrs.io.db;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.google.common.cache.CacheStats;
 
 import edu.brown.cs.jmrs.collect.Cache;
+import edu.brown.cs.jmrs.collect.TinyLfuPolicy;
 
 /**
  * A class wrapping a SQL Query, including caching returned results as
  * appropriate objects.
  *
+ * Large results (ex. whole tables) can instead be streamed a row at a time,
+ * without caching, through forEach(), forEachRow() or stream().
+ *
  * Created by henry on 3/23/2017.
  *
  * @param <T>
  *          The type this Query returns.
  */
 public class Query<T> extends DbStatement<T> {
-  // Avoid running out of memory due to cache size
-  private static final int MAX_SAVED_QUERIES = 100000;
+  // Avoid running out of memory due to cache size; the bound is per caching
+  // Query, each of which has its own cache, so it is kept small
+  private static final long MAX_SAVED_BYTES   = 16L * 1024 * 1024;
+  private static final int  MAX_SAVED_QUERIES = 25000; // expected, not exact
+  // rough sizes for weighing saved responses; rows are typically Links of two
+  // WikiPages, each holding a url
+  private static final int  BYTES_PER_QUERY   = 128;
+  private static final int  BYTES_PER_ROW     = 256;
 
   private DbReader<T> objectReader;
   private Cache<ObjArray, List<T>> fullyQueryResponse;
   private boolean save;
+  private int fetchSize; // 0 for the driver's default
 
   /**
-   * Constructs a query to read objects using p and cache them.
+   * Constructs a query to read objects using p and cache them, in a cache of
+   * its own holding up to roughly MAX_SAVED_BYTES of them.
    *
    * @param p
    *          The PrepareStatement representing the query.
@@ -47,7 +66,8 @@ public class Query<T> extends DbStatement<T> {
    *          The DbReader to be used to construct and prehash objects returned
    *          from the query.
    * @param save
-   *          Whether to cache the objects returned by the query.
+   *          Whether to cache the objects returned by the query, in a cache of
+   *          its own holding up to roughly MAX_SAVED_BYTES of them.
    */
   public Query(ThreadLocal<PreparedStatement> p, DbReader<T> objectReader,
       boolean save) {
@@ -55,7 +75,10 @@ public class Query<T> extends DbStatement<T> {
     this.objectReader = objectReader;
     if (save) {
       this.fullyQueryResponse =
-          new Cache<>((objArr) -> queryDb(objArr), MAX_SAVED_QUERIES);
+          new Cache<>((objArr) -> queryDb(objArr),
+              new TinyLfuPolicy<>(MAX_SAVED_BYTES, MAX_SAVED_QUERIES),
+              (objArr, response) -> (int) Math.min(Integer.MAX_VALUE,
+                  BYTES_PER_QUERY + (long) BYTES_PER_ROW * response.size()));
     }
     this.save = save;
   }
@@ -77,37 +100,132 @@ public class Query<T> extends DbStatement<T> {
     }
   }
 
-  private List<T> queryDb(ObjArray inputs) {
-    ResultSet rs = null;
-    PreparedStatement p = super.getLocalPreparedStatement();
-    try {
-      for (int i = 0; i < inputs.get().length; i++) {
-        p.setObject(i + 1, inputs.get()[i]);
-      }
+  /**
+   * Sets the number of rows to fetch from the database at once while reading
+   * results.
+   *
+   * @param rows
+   *          The number of rows, or 0 to leave it up to the driver.
+   * @return This Query.
+   */
+  public Query<T> fetchSize(int rows) {
+    if (rows < 0) {
+      throw new IllegalArgumentException("Fetch size must not be negative");
+    }
+    this.fetchSize = rows;
+    return this;
+  }
 
-      List<T> response = new LinkedList<>();
-      rs = p.executeQuery();
+  /**
+   * Queries using this Query's prepared statement filled with inputs, passing
+   * each returned object to action as it is read rather than returning them
+   * all at once. Results are not cached.
+   *
+   * @param action
+   *          The action to run on each returned object.
+   * @param inputs
+   *          The inputs to substitute in order into the parameters of the
+   *          prepared statement.
+   */
+  public void forEach(Consumer<? super T> action, Object... inputs) {
+    forEachRow(rs -> {
+      T d = objectReader.construct(rs);
+      if (d != null) {
+        action.accept(d);
+      }
+    }, inputs);
+  }
 
+  /**
+   * Queries using this Query's prepared statement filled with inputs, passing
+   * each returned row straight to callback without reading it into an object.
+   * Results are not cached.
+   *
+   * @param callback
+   *          The callback to read each row with.
+   * @param inputs
+   *          The inputs to substitute in order into the parameters of the
+   *          prepared statement.
+   */
+  public void forEachRow(RowCallback callback, Object... inputs) {
+    try (ResultSet rs = execute(inputs)) {
       while (rs.next()) {
-        T d = objectReader.construct(rs);
-        if (d != null) {
-          response.add(d);
-        }
+        callback.read(rs);
       }
+    } catch (SQLException e) {
+      throw new UncheckedSqlException(e);
+    }
+  }
 
-      rs.close();
-      return response;
+  /**
+   * Queries using this Query's prepared statement filled with inputs, reading
+   * returned objects lazily as the stream is consumed. Results are not
+   * cached.
+   *
+   * The stream holds the query open, so must be closed (ex. in a
+   * try-with-resources block) before this Query is used again on the same
+   * thread.
+   *
+   * @param inputs
+   *          The inputs to substitute in order into the parameters of the
+   *          prepared statement.
+   * @return A sequential stream of the returned objects.
+   */
+  public Stream<T> stream(Object... inputs) {
+    ResultSet rs = execute(inputs);
+    Spliterator<T> rows =
+        new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+            Spliterator.ORDERED | Spliterator.NONNULL) {
+          @Override
+          public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+              while (rs.next()) {
+                T d = objectReader.construct(rs);
+                if (d != null) {
+                  action.accept(d);
+                  return true;
+                }
+              }
+              return false;
+            } catch (SQLException e) {
+              throw new UncheckedSqlException(e);
+            }
+          }
+        };
 
+    return StreamSupport.stream(rows, false).onClose(() -> {
+      try {
+        rs.close();
+      } catch (SQLException e) {
+        throw new UncheckedSqlException(e);
+      }
+    });
+  }
+
+  /**
+   * @return The hits, misses and evictions of saved responses to this query,
+   *         or null if responses aren't saved.
+   */
+  public CacheStats cacheStats() {
+    return save ? fullyQueryResponse.stats() : null;
+  }
+
+  private List<T> queryDb(ObjArray inputs) {
+    List<T> response = new ArrayList<>();
+    forEach(response::add, inputs.get());
+    return response;
+  }
+
+  private ResultSet execute(Object[] inputs) {
+    PreparedStatement p = super.getLocalPreparedStatement();
+    try {
+      for (int i = 0; i < inputs.length; i++) {
+        p.setObject(i + 1, inputs[i]);
+      }
+      p.setFetchSize(fetchSize);
+      return p.executeQuery();
     } catch (SQLException e) {
       throw new UncheckedSqlException(e);
-    } finally {
-      if (rs != null) {
-        try {
-          rs.close();
-        } catch (SQLException e) {
-          System.out.println("ERROR: closing result set failed");
-        }
-      }
     }
   }
 }
@@ -0,0 +1,24 @@
+package edu.brown.cs.jmrs.io.db;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A callback reading the columns of each row of a query straight from the
+ * result set (ex. as primitives), without constructing an object for it.
+ *
+ * @author mcisler
+ *
+ */
+@FunctionalInterface
+public interface RowCallback {
+
+  /**
+   * @param rs
+   *          The result set, at the row to read. Must not be advanced or
+   *          closed.
+   * @throws SQLException
+   *           If a column could not be read.
+   */
+  void read(ResultSet rs) throws SQLException;
+}
@@ -9,21 +9,34 @@ import java.util.concurrent.TimeUnit;
 
 import org.jsoup.nodes.Document;
 
-import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.LoadingCache;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
-import edu.brown.cs.jmrs.collect.graph.DirectedDijkstraPathFinder;
+import edu.brown.cs.jmrs.collect.graph.AStarDirectedPathFinder;
+import edu.brown.cs.jmrs.collect.graph.BidirectionalBreadthFirstPathFinder;
+import edu.brown.cs.jmrs.collect.graph.BidirectionalDijkstraPathFinder;
 import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+import edu.brown.cs.jmrs.collect.graph.Landmarks;
+import edu.brown.cs.jmrs.collect.graph.ParallelBreadthFirstPathFinder;
+import edu.brown.cs.jmrs.io.db.AsyncDbConn;
 import edu.brown.cs.jmrs.io.db.DbConn;
 import edu.brown.cs.jmrs.server.Server;
+import edu.brown.cs.jmrs.web.DocumentCache;
 import edu.brown.cs.jmrs.web.FailSafeLinkFInder;
 import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.LinkFinder;
 import edu.brown.cs.jmrs.web.Page;
+import edu.brown.cs.jmrs.web.PageSnapshotStore;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder.Filter;
+import edu.brown.cs.jmrs.wikispeedia.CachingWikiBacklinkFinder;
+import edu.brown.cs.jmrs.wikispeedia.CachingWikiLinkFinder;
+import edu.brown.cs.jmrs.wikispeedia.GameGenerator;
+import edu.brown.cs.jmrs.wikispeedia.InMemoryWikiLinkFinder;
 import edu.brown.cs.jmrs.wikispeedia.Scraper;
+import edu.brown.cs.jmrs.wikispeedia.StoredWikiLinkFinder;
+import edu.brown.cs.jmrs.wikispeedia.WikiDistanceOracle;
 import edu.brown.cs.jmrs.wikispeedia.WikiLobby;
 import edu.brown.cs.jmrs.wikispeedia.WikiPath;
 import edu.brown.cs.jmrs.wikispeedia.WikiPath.Visit;
@@ -72,22 +85,45 @@ public final class Main {
   }
 
   /**
-   * Cache for the internals of WikiPages.
+   * Cache for the internals of WikiPages, bounded by their estimated size in
+   * memory (a share of the heap unless set in MB by -Dwiki.docCacheMb).
    */
-  static final int MAX_WIKI_CACHE_SIZE       = 40;
-  static final int WIKIPAGE_EVICTION_TIMEOUT = 12; // hours
+  static final int  WIKI_CACHE_HEAP_SHARE     = 4;
+  static final long MAX_WIKI_CACHE_BYTES      =
+      Long.getLong("wiki.docCacheMb", Runtime.getRuntime().maxMemory()
+          / WIKI_CACHE_HEAP_SHARE / (1024 * 1024)) * 1024 * 1024;
+  static final int  WIKIPAGE_EVICTION_TIMEOUT = 12; // hours
+
+  /**
+   * Snapshots of pages on disk (in the Link database), behind the cache.
+   */
+  static final int SNAPSHOT_MAX_AGE   = 1;  // days
+  static final int SNAPSHOT_EVICT_AGE = 30; // days
+
+  private static final Page.Loader WIKI_PAGE_LOADER = new Page.Loader();
+
+  public static final DocumentCache WIKI_PAGE_DOCS =
+      new DocumentCache(MAX_WIKI_CACHE_BYTES, WIKIPAGE_EVICTION_TIMEOUT, true,
+          WIKI_PAGE_LOADER);
 
   public static final LoadingCache<String, Document> WIKI_PAGE_DOC_CACHE =
-      CacheBuilder.newBuilder().maximumSize(MAX_WIKI_CACHE_SIZE)
-          .expireAfterWrite(WIKIPAGE_EVICTION_TIMEOUT, TimeUnit.HOURS)
-          .build(new Page.Loader());
+      WIKI_PAGE_DOCS.cache();
 
   /**
    * DbConn and constants for database Link cache and associated LinkFinder.
    */
-  static final String WIKI_DATABASE_LOC = "data/wikipedia.sqlite3";
-
-  private static DbConn wikiDbConn;
+  static final String WIKI_DATABASE_LOC     = "data/wikipedia.sqlite3";
+  // connections for reading links during games, beside the one caching them
+  static final int    WIKI_DATABASE_READERS = 4;
+  // lookups of links waiting for those connections, and how long to wait
+  static final int    WIKI_DATABASE_QUEUE   = 1000;
+  static final long   WIKI_DATABASE_TIMEOUT = 2000; // ms
+
+  private static DbConn      wikiDbConn;
+  private static AsyncDbConn wikiDb;
+  private static WikiDistanceOracle distanceOracle;
+  // links already cached, for searches that shouldn't fetch pages
+  private static LinkFinder<WikiPage> storedLinkFinder;
 
   private Main() {
     // override default constructor
@@ -106,6 +142,7 @@ public final class Main {
     parser.accepts("gui");
     parser.accepts("spark-port").withRequiredArg().ofType(Integer.class)
         .defaultsTo(DEFAULT_SPARK_PORT);
+    parser.accepts("distance-oracle");
     parser.accepts("chat-test");
     parser.accepts("scrape");
     parser.accepts("scrape-start").withRequiredArg().ofType(String.class)
@@ -120,6 +157,11 @@ public final class Main {
         .ofType(String.class);
     parser.accepts("end").requiredIf("shortest-path").withRequiredArg()
         .ofType(String.class);
+    parser.accepts("in-memory");
+    parser.accepts("landmarks").withOptionalArg().ofType(Integer.class)
+        .defaultsTo(Landmarks.DEFAULT_NUM_LANDMARKS);
+    parser.accepts("parallel").withOptionalArg().ofType(Integer.class)
+        .defaultsTo(Runtime.getRuntime().availableProcessors());
 
     OptionSet options;
     try {
@@ -133,9 +175,27 @@ public final class Main {
     if (options.has("gui")) {
       try {
         // Open database
-        wikiDbConn = new DbConn(WIKI_DATABASE_LOC);
+        wikiDbConn = new DbConn(WIKI_DATABASE_LOC, "", WIKI_DATABASE_READERS);
+        wikiDb =
+            new AsyncDbConn(wikiDbConn, WIKI_DATABASE_READERS,
+                WIKI_DATABASE_QUEUE, WIKI_DATABASE_TIMEOUT);
+        GameGenerator.useStoredNumsOfLinks(wikiDbConn);
+        WIKI_PAGE_LOADER.useSnapshots(new PageSnapshotStore(wikiDbConn,
+            TimeUnit.DAYS.toMillis(SNAPSHOT_MAX_AGE),
+            TimeUnit.DAYS.toMillis(SNAPSHOT_EVICT_AGE),
+            WikiPage::storedTitle));
         System.out.println("[ Opened Database ]");
 
+        storedLinkFinder = new StoredWikiLinkFinder(wikiDb);
+        if (options.has("distance-oracle")) {
+          InMemoryWikiLinkFinder inMemory =
+              new InMemoryWikiLinkFinder(wikiDbConn);
+          distanceOracle = new WikiDistanceOracle(inMemory);
+          // the same links, without the database
+          storedLinkFinder = inMemory;
+          System.out.println("[ Built Distance Oracle ]");
+        }
+
         // Setup websocket lobby server (which will use Spark)
         Server server = new Server((serv, str) -> {
           return new WikiLobby(serv, str);
@@ -169,11 +229,14 @@ public final class Main {
         System.out.println("Could not open database: " + e.getMessage());
       } finally {
         SparkServer.stop();
+        if (wikiDb != null) {
+          wikiDb.close();
+        }
         wikiDbConn.close();
       }
     } else if (options.has("scrape")) {
       try {
-        wikiDbConn = new DbConn(WIKI_DATABASE_LOC);
+        wikiDbConn = new DbConn(WIKI_DATABASE_LOC, "", WIKI_DATABASE_READERS);
         System.out.println("[ Opened Database ]");
 
         // set optional filters for links
@@ -182,24 +245,24 @@ public final class Main {
           filters.add(Filter.NON_ENGLISH_WIKIPEDIA);
         }
 
-        Scraper scraper =
+        try (Scraper scraper =
             new Scraper(wikiDbConn,
                 WikiPage.fromAny((String) options.valueOf("scrape-start")),
-                filters.toArray(new Filter[0]));
-
-        scraper.setDepth((int) options.valueOf("scrape-depth"));
-
-        switch ((String) options.valueOf("scrape-method")) {
-          case "breadth":
-            scraper.startBreadthFirstScrape();
-            break;
-          case "random-descent":
-            scraper.startRandomDescentScrape();
-            break;
-          default:
-            System.out.println("Invalid scrape option specified");
-            parser.printHelpOn(System.out);
+                filters.toArray(new Filter[0]))) {
+          scraper.setDepth((int) options.valueOf("scrape-depth"));
+
+          switch ((String) options.valueOf("scrape-method")) {
+            case "breadth":
+              scraper.startBreadthFirstScrape();
+              break;
+            case "random-descent":
+              scraper.startRandomDescentScrape();
+              break;
+            default:
+              System.out.println("Invalid scrape option specified");
+              parser.printHelpOn(System.out);
 
+          }
         }
       } finally {
         if (wikiDbConn != null) {
@@ -207,23 +270,104 @@ public final class Main {
         }
       }
     } else if (options.has("shortest-path")) {
+      // closed with the database, as it looks links up on threads of its own
+      CachingWikiLinkFinder cachingFinder = null;
+      try {
+        PathFinder<Page, Link> pathFinder;
+        // whether the path found may not be the shortest
+        boolean heuristic = false;
+        try {
+          wikiDbConn = new DbConn(WIKI_DATABASE_LOC);
+          System.out.println("[ Opened Database ]");
+
+          if (options.has("in-memory")) {
+            // search only over the cached links, loaded into memory, with a
+            // primitive breadth first search or A* over landmarks
+            InMemoryWikiLinkFinder linkFinder =
+                new InMemoryWikiLinkFinder(wikiDbConn);
+            if (options.has("landmarks")) {
+              pathFinder =
+                  new AStarDirectedPathFinder<>(linkFinder,
+                      linkFinder.heuristic(linkFinder.landmarks(
+                          (int) options.valueOf("landmarks"))));
+            } else {
+              pathFinder = linkFinder.pathFinder();
+            }
+          } else {
+            // search forward over live (and cached) links, and backward over
+            // the links cached so far
+            cachingFinder =
+                new CachingWikiLinkFinder(wikiDbConn,
+                    WikiLobby.DEFAULT_CONTENT_FORMATTER, Filter.DISAMBIGUATION,
+                    Filter.NON_ENGLISH_WIKIPEDIA);
+            LinkFinder<WikiPage> linkFinder =
+                new FailSafeLinkFInder<>(cachingFinder);
+            if (options.has("parallel")) {
+              pathFinder =
+                  new ParallelBreadthFirstPathFinder<>(linkFinder,
+                      (int) options.valueOf("parallel"));
+            } else if (options.has("landmarks")) {
+              // A* over live links, guided by landmarks of the cached links;
+              // live pages may have links the cache lacks, for which the
+              // landmark distances can overestimate, so this is only a
+              // heuristic search
+              heuristic = true;
+              InMemoryWikiLinkFinder cached =
+                  new InMemoryWikiLinkFinder(wikiDbConn);
+              pathFinder =
+                  new AStarDirectedPathFinder<>(linkFinder,
+                      cached.heuristic(cached.landmarks(
+                          (int) options.valueOf("landmarks"))));
+            } else if (linkFinder.hasUniformEdgeValues()) {
+              // every link counts the same, so the fewest links is shortest
+              pathFinder =
+                  new BidirectionalBreadthFirstPathFinder<>(linkFinder,
+                      new CachingWikiBacklinkFinder(wikiDbConn));
+            } else {
+              pathFinder =
+                  new BidirectionalDijkstraPathFinder<>(linkFinder,
+                      new CachingWikiBacklinkFinder(wikiDbConn));
+            }
+          }
+        } catch (ClassNotFoundException | FileNotFoundException e) {
+          System.out.println("Could not open database, searching only forward: "
+              + e.getMessage());
+          LinkFinder<WikiPage> linkFinder =
+              new FailSafeLinkFInder<>(WikiLobby.DEFAULT_LINK_FINDER);
+          if (options.has("parallel")) {
+            pathFinder =
+                new ParallelBreadthFirstPathFinder<>(linkFinder,
+                    (int) options.valueOf("parallel"));
+          } else {
+            pathFinder = PathFinder.forEdgeFinder(linkFinder);
+          }
+        }
 
-      PathFinder<Page, Link> edgeFinder =
-          new DirectedDijkstraPathFinder<>(
-              new FailSafeLinkFInder<WikiPage>(WikiLobby.DEFAULT_LINK_FINDER));
-
-      // must have these two under shortest-path
-      WikiPage start = WikiPage.fromAny((String) options.valueOf("start"));
-      WikiPage end = WikiPage.fromAny((String) options.valueOf("end"));
-      System.out.printf("Finding path between '%s' and '%s'%n", start, end);
+        // must have these two under shortest-path
+        WikiPage start = WikiPage.fromAny((String) options.valueOf("start"));
+        WikiPage end = WikiPage.fromAny((String) options.valueOf("end"));
+        System.out.printf("Finding path between '%s' and '%s'%n", start, end);
 
-      long startTime = System.currentTimeMillis();
-      List<Link> links = edgeFinder.shortestPath(start, end);
+        long startTime = System.currentTimeMillis();
+        List<Link> links = pathFinder.shortestPath(start, end);
 
-      System.out.printf("Founds path in %d seconds: %n",
-          (System.currentTimeMillis() - startTime) / 1000);
-      for (Link link : links) {
-        System.out.println(link);
+        System.out.printf("Founds path in %d seconds%s: %n",
+            (System.currentTimeMillis() - startTime) / 1000,
+            heuristic ? " (heuristic, so maybe not the shortest)" : "");
+        for (Link link : links) {
+          System.out.println(link);
+        }
+        if (pathFinder instanceof AutoCloseable) {
+          // ex. a parallel search's own pool
+          ((AutoCloseable) pathFinder).close();
+        }
+      } finally {
+        if (cachingFinder != null) {
+          cachingFinder.close();
+        }
+        if (wikiDbConn != null) {
+          wikiDbConn.close();
+        }
       }
     }
   }
@@ -260,4 +404,30 @@ public final class Main {
     assert wikiDbConn != null;
     return wikiDbConn;
   }
+
+  /**
+   * @return The facade over the current dbConn, for looking up links off the
+   *         threads handling commands, ensured not to be null.
+   */
+  public static synchronized AsyncDbConn getWikiDb() {
+    assert wikiDb != null;
+    return wikiDb;
+  }
+
+  /**
+   * @return The distance oracle over cached links, or null if it was not built
+   *         (see --distance-oracle).
+   */
+  public static WikiDistanceOracle getDistanceOracle() {
+    return distanceOracle;
+  }
+
+  /**
+   * @return A link finder of the links already cached (in memory if the
+   *         distance oracle was built), which never fetches pages, or null if
+   *         the database is not open.
+   */
+  public static LinkFinder<WikiPage> getStoredLinkFinder() {
+    return storedLinkFinder;
+  }
 }
@@ -0,0 +1,274 @@
+package edu.brown.cs.jmrs.web;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeVisitor;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * A cache of parsed pages bounded by the (estimated) memory they take up,
+ * rather than by their number, as pages vary in size by orders of magnitude.
+ *
+ * Pages evicted to stay within the budget can optionally be kept in an
+ * overflow tier of soft references, which the garbage collector frees as it
+ * needs, and which is checked before loading pages again.
+ *
+ * Pages are weighed as they are loaded, on the loading thread, so that the
+ * cache's weigher (which runs with the cache locked) only looks the weight up.
+ *
+ * @author mcisler
+ *
+ */
+public class DocumentCache {
+  // rough retained sizes of jsoup's objects, on a 64 bit JVM
+  static final int NODE_BYTES      = 160; // node, child list, attributes
+  static final int ATTRIBUTE_BYTES = 80;  // attribute and its strings
+  static final int CHAR_BYTES      = 2;
+
+  private final LoadingCache<String, Document> cache;
+  private final Cache<String, Document>        overflow;
+  private final long                           maxBytes;
+
+  // of the pages loaded into cache, weighed before they are inserted
+  private final Map<Document, Integer> weights;
+
+  /**
+   * @param maxBytes
+   *          The (estimated) memory to hold pages in, not counting the
+   *          overflow tier.
+   * @param expireHours
+   *          The time after loading after which to drop pages.
+   * @param softOverflow
+   *          Whether to keep pages evicted for space in an overflow tier of
+   *          soft references.
+   * @param loader
+   *          The loader to load pages by url with.
+   */
+  public DocumentCache(long maxBytes, long expireHours, boolean softOverflow,
+      CacheLoader<String, Document> loader) {
+    this.maxBytes = maxBytes;
+    this.weights = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    if (softOverflow) {
+      overflow =
+          CacheBuilder.newBuilder().softValues()
+              .expireAfterWrite(expireHours, TimeUnit.HOURS).recordStats()
+              .build();
+    } else {
+      overflow = null;
+    }
+
+    cache =
+        // one segment, so the whole budget is open to any page rather than
+        // split between segments (cheap now that the weigher is)
+        CacheBuilder.newBuilder().concurrencyLevel(1).maximumWeight(maxBytes)
+            .<String, Document>weigher((url, doc) -> weightOf(doc))
+            .removalListener(removal -> {
+              weights.remove(removal.getValue());
+              if (overflow != null
+                  && removal.getCause() == RemovalCause.SIZE) {
+                overflow.put(removal.getKey(), removal.getValue());
+              }
+            }).expireAfterWrite(expireHours, TimeUnit.HOURS).recordStats()
+            .build(new WeighingLoader(
+                overflow == null ? loader : new OverflowLoader(loader)));
+  }
+
+  /**
+   * @return The cache of pages by url.
+   */
+  public LoadingCache<String, Document> cache() {
+    return cache;
+  }
+
+  /**
+   * @return The (estimated) memory taken up by the pages in the cache, not
+   *         counting the overflow tier.
+   */
+  public long usedBytes() {
+    long used = 0;
+    for (Document doc : cache.asMap().values()) {
+      used += weightOf(doc);
+    }
+    return used;
+  }
+
+  private int weightOf(Document doc) {
+    Integer weight = weights.get(doc);
+    // (only missing for pages put in the cache directly, rather than loaded)
+    return weight != null ? weight : retainedBytes(doc);
+  }
+
+  private Document weighed(Document doc) {
+    weights.put(doc, retainedBytes(doc));
+    return doc;
+  }
+
+  /**
+   * @return Statistics of the cache (and overflow tier, if any) by name, for
+   *         tuning its budget.
+   */
+  public Map<String, Object> stats() {
+    CacheStats stats = cache.stats();
+    Map<String, Object> named = new LinkedHashMap<>();
+    named.put("pages", cache.size());
+    named.put("usedBytes", usedBytes());
+    named.put("maxBytes", maxBytes);
+    named.put("hits", stats.hitCount());
+    named.put("misses", stats.missCount());
+    named.put("hitRate", stats.hitRate());
+    named.put("evictions", stats.evictionCount());
+    named.put("meanLoadMillis",
+        TimeUnit.NANOSECONDS.toMillis((long) stats.averageLoadPenalty()));
+    if (overflow != null) {
+      CacheStats overflowStats = overflow.stats();
+      named.put("overflow",
+          ImmutableMap.of("pages", overflow.size(), "hits",
+              overflowStats.hitCount(), "misses", overflowStats.missCount()));
+    }
+    return named;
+  }
+
+  /**
+   * @param doc
+   *          A parsed page.
+   * @return An estimate of the memory the page takes up, from the number of
+   *         its nodes and attributes and the length of its text.
+   */
+  static int retainedBytes(Document doc) {
+    long[] bytes = {0};
+    doc.traverse(new NodeVisitor() {
+      @Override
+      public void head(Node node, int depth) {
+        bytes[0] += NODE_BYTES;
+        if (node instanceof TextNode) {
+          bytes[0] += ((TextNode) node).getWholeText().length() * CHAR_BYTES;
+        } else if (node instanceof DataNode) {
+          bytes[0] += ((DataNode) node).getWholeData().length() * CHAR_BYTES;
+        } else if (node instanceof Element) {
+          // only elements, as attributes() creates them on other nodes
+          for (Attribute attr : node.attributes()) {
+            bytes[0] += ATTRIBUTE_BYTES
+                + (attr.getKey().length() + attr.getValue().length())
+                    * CHAR_BYTES;
+          }
+        }
+      }
+
+      @Override
+      public void tail(Node node, int depth) {
+      }
+    });
+    return (int) Math.min(bytes[0], Integer.MAX_VALUE);
+  }
+
+  /**
+   * Weighs pages as they are loaded, before the cache is locked to insert
+   * them.
+   *
+   * @author mcisler
+   *
+   */
+  private class WeighingLoader extends CacheLoader<String, Document> {
+    private final CacheLoader<String, Document> loader;
+
+    WeighingLoader(CacheLoader<String, Document> loader) {
+      this.loader = loader;
+    }
+
+    @Override
+    public Document load(String url) throws Exception {
+      return weighed(loader.load(url));
+    }
+
+    @Override
+    public ListenableFuture<Document> reload(String url, Document old)
+        throws Exception {
+      return Futures.transform(loader.reload(url, old), doc -> weighed(doc),
+          MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public Map<String, Document> loadAll(Iterable<? extends String> urls)
+        throws Exception {
+      Map<String, Document> docs = loader.loadAll(urls);
+      for (Document doc : docs.values()) {
+        weighed(doc);
+      }
+      return docs;
+    }
+  }
+
+  /**
+   * Takes pages back out of the overflow tier before loading them.
+   *
+   * @author mcisler
+   *
+   */
+  private class OverflowLoader extends CacheLoader<String, Document> {
+    private final CacheLoader<String, Document> loader;
+
+    OverflowLoader(CacheLoader<String, Document> loader) {
+      this.loader = loader;
+    }
+
+    @Override
+    public Document load(String url) throws Exception {
+      Document doc = overflow.getIfPresent(url);
+      if (doc != null) {
+        overflow.invalidate(url);
+        return doc;
+      }
+      return loader.load(url);
+    }
+
+    @Override
+    public ListenableFuture<Document> reload(String url, Document old)
+        throws Exception {
+      return loader.reload(url, old);
+    }
+
+    @Override
+    public Map<String, Document> loadAll(Iterable<? extends String> urls)
+        throws Exception {
+      Map<String, Document> docs = new LinkedHashMap<>();
+      List<String> missing = new ArrayList<>();
+      Map<String, Document> overflowed = overflow.getAllPresent(urls);
+      overflow.invalidateAll(overflowed.keySet());
+      for (String url : urls) {
+        if (overflowed.containsKey(url)) {
+          docs.put(url, overflowed.get(url));
+        } else {
+          missing.add(url);
+        }
+      }
+
+      if (!missing.isEmpty()) {
+        docs.putAll(loader.loadAll(missing));
+      }
+      return docs;
+    }
+  }
+}
@@ -4,7 +4,9 @@
 package edu.brown.cs.jmrs.web;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -44,4 +46,23 @@ public class FailSafeLinkFInder<P extends Page> implements LinkFinder<P> {
     }
   }
 
+  @Override
+  public Map<P, Set<P>> linkedPages(Collection<P> pages) {
+    Map<P, Set<P>> found = linkFinder.linkedPages(pages);
+    for (P page : pages) {
+      found.putIfAbsent(page, new HashSet<>(0));
+    }
+    return found;
+  }
+
+  @Override
+  public Number edgeValue(Link edge) {
+    return linkFinder.edgeValue(edge);
+  }
+
+  @Override
+  public boolean hasUniformEdgeValues() {
+    return linkFinder.hasUniformEdgeValues();
+  }
+
 }
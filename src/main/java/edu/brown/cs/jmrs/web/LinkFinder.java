@@ -1,7 +1,13 @@
 package edu.brown.cs.jmrs.web;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
@@ -42,6 +48,44 @@ public interface LinkFinder<P extends Page> extends EdgeFinder<Page, Link> {
    */
   Set<P> linkedPages(P page) throws IOException;
 
+  /**
+   * Finds the outgoing pages from each of the given pages. By default finds
+   * those of each page at once, on threads kept for finding links;
+   * implementations able to look up many pages at once (e.g. in a single
+   * database query) should override this.
+   *
+   * @param pages
+   *          The root pages.
+   * @return A map from each root page that could be reached to the pages
+   *         corresponding to its links. Pages that could not be reached are
+   *         left out.
+   */
+  default Map<P, Set<P>> linkedPages(Collection<P> pages) {
+    Map<P, CompletableFuture<Set<P>>> finds = new LinkedHashMap<>();
+    for (P page : pages) {
+      finds.computeIfAbsent(page, (pg) -> CompletableFuture.supplyAsync(() -> {
+        try {
+          return linkedPages(pg);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+      }, LinkFinderExecutor.get()));
+    }
+
+    Map<P, Set<P>> found = new HashMap<>(finds.size());
+    for (Map.Entry<P, CompletableFuture<Set<P>>> find : finds.entrySet()) {
+      try {
+        found.put(find.getKey(), find.getValue().join());
+      } catch (CompletionException e) {
+        if (!(e.getCause() instanceof IOException)) {
+          throw e;
+        }
+        // leave out ones that cannot be accessed
+      }
+    }
+    return found;
+  }
+
   @Override
   default Set<Link> edges(Page page) {
     try {
@@ -0,0 +1,34 @@
+package edu.brown.cs.jmrs.web;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * The threads LinkFinders find the links of many pages on by default. Finding
+ * links blocks (ex. on fetching pages), so it is kept off the common
+ * ForkJoinPool, which is left to computation; the fetches themselves are
+ * still limited per host by the PageFetcher.
+ *
+ * @author mcisler
+ *
+ */
+final class LinkFinderExecutor {
+  static final int THREADS = PageFetcher.DEFAULT_MAX_FETCHES;
+
+  private static final ExecutorService FINDERS =
+      Executors.newFixedThreadPool(THREADS, new ThreadFactoryBuilder()
+          .setDaemon(true).setNameFormat("link-finder-%d").build());
+
+  private LinkFinderExecutor() {
+    // override default constructor
+  }
+
+  /**
+   * @return The shared executor to find links on.
+   */
+  static ExecutorService get() {
+    return FINDERS;
+  }
+}
@@ -6,19 +6,25 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import edu.brown.cs.jmrs.collect.graph.Graph.Node;
 import edu.brown.cs.jmrs.ui.Main;
+import edu.brown.cs.jmrs.web.PageSnapshotStore.Snapshot;
 
 /**
  * A class representing a webpage and the required functions of a web page.
@@ -234,19 +240,130 @@ public class Page implements Node<Page, Link> {
 
   /**
    * A basic cache loader for loading a document given a URL, for use in an
-   * external docCache.
+   * external docCache. Loads through a PageFetcher, so that pages are loaded
+   * concurrently (within its limits), and so that reloads and bulk loads don't
+   * hold up the calling thread.
+   *
+   * If given a PageSnapshotStore, pages are loaded from it while fresh, and
+   * stored in it when fetched; pages that can't be reached are loaded from it
+   * even if stale.
    *
    * @author mcisler
    *
    */
   public static class Loader extends CacheLoader<String, Document> {
+    private final PageFetcher          fetcher;
+    private volatile PageSnapshotStore snapshots;
+
+    /**
+     * Creates a Loader loading through the shared PageFetcher.
+     */
+    public Loader() {
+      this(PageFetcher.shared());
+    }
+
+    /**
+     * @param fetcher
+     *          The PageFetcher to load pages through.
+     */
+    public Loader(PageFetcher fetcher) {
+      this.fetcher = fetcher;
+      this.snapshots = null;
+    }
+
+    /**
+     * @param snapshots
+     *          The store to load pages from before fetching them, and to store
+     *          them in after, or null to always fetch them.
+     */
+    public void useSnapshots(PageSnapshotStore snapshots) {
+      this.snapshots = snapshots;
+    }
+
+    @Override
+    public Document load(String url) throws IOException {
+      return PageFetcher.await(loadAsync(url));
+    }
+
+    @Override
+    public ListenableFuture<Document> reload(String url, Document old) {
+      SettableFuture<Document> reloaded = SettableFuture.create();
+      loadAsync(url).whenComplete((doc, e) -> {
+        if (e == null) {
+          reloaded.set(doc);
+        } else {
+          reloaded.setException(e);
+        }
+      });
+      return reloaded;
+    }
+
     @Override
-    public synchronized Document load(String url) throws IOException {
-      return loadStatic(url);
+    public Map<String, Document> loadAll(Iterable<? extends String> urls)
+        throws IOException {
+      // start them all before waiting on any
+      Map<String, CompletableFuture<Document>> fetches = new LinkedHashMap<>();
+      for (String url : urls) {
+        fetches.put(url, loadAsync(url));
+      }
+
+      Map<String, Document> docs = new LinkedHashMap<>(fetches.size());
+      for (Map.Entry<String, CompletableFuture<Document>> fetch : fetches
+          .entrySet()) {
+        docs.put(fetch.getKey(), PageFetcher.await(fetch.getValue()));
+      }
+      return docs;
+    }
+
+    private CompletableFuture<Document> loadAsync(String url) {
+      PageSnapshotStore store = snapshots;
+      if (store == null) {
+        return fetcher.fetch(url);
+      }
+
+      Snapshot old = stored(store, url);
+      if (old != null && store.isFresh(old)) {
+        return CompletableFuture.completedFuture(old.parse());
+      }
+      return fetcher.fetchSnapshot(url, old).handle((snapshot, e) -> {
+        if (e == null) {
+          save(store, url, old, snapshot);
+          return snapshot.parse();
+        } else if (old != null) {
+          // better out of date than not at all
+          return old.parse();
+        }
+        throw e instanceof CompletionException ? (CompletionException) e
+            : new CompletionException(e);
+      });
+    }
+
+    // failures of the store are logged rather than failing the load
+
+    private static Snapshot stored(PageSnapshotStore store, String url) {
+      try {
+        return store.get(url);
+      } catch (RuntimeException e) {
+        Main.debugLog(e);
+        return null;
+      }
+    }
+
+    private static void save(PageSnapshotStore store, String url,
+        Snapshot old, Snapshot snapshot) {
+      try {
+        if (snapshot.isRecheckOf(old)) {
+          store.touch(url, snapshot.fetched());
+        } else {
+          store.put(url, snapshot);
+        }
+      } catch (RuntimeException e) {
+        Main.debugLog(e);
+      }
     }
 
     /**
-     * Loads a Document from a url.
+     * Loads a Document from a url, through the shared PageFetcher.
      *
      * @param url
      *          The url of the page to get parsed HTML from.
@@ -255,7 +372,7 @@ public class Page implements Node<Page, Link> {
      *           If the page could not be contacted.
      */
     public static Document loadStatic(String url) throws IOException {
-      return Jsoup.connect(url).get();
+      return PageFetcher.shared().load(url);
     }
   }
 
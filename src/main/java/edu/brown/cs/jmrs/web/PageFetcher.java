@@ -0,0 +1,253 @@
+package edu.brown.cs.jmrs.web;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import edu.brown.cs.jmrs.web.PageSnapshotStore.Snapshot;
+
+/**
+ * Downloads and parses pages on a pool of threads, so that many can be fetched
+ * at once, while limiting how many are fetched from any one host (ex. to be
+ * polite to Wikipedia) and giving up on those that take too long.
+ *
+ * Fetches past the limit for their host wait in a queue for that host, not on
+ * a thread of the pool, so every thread of the pool is always fetching.
+ *
+ * Connections are kept alive and reused between fetches to the same host by
+ * the underlying HttpURLConnection.
+ *
+ * @author mcisler
+ *
+ */
+public class PageFetcher {
+  public static final int DEFAULT_MAX_FETCHES          = 32;
+  public static final int DEFAULT_MAX_FETCHES_PER_HOST = 8;
+  public static final int DEFAULT_TIMEOUT              = 10000; // ms
+
+  private static final int NOT_MODIFIED = 304;
+
+  private static final PageFetcher SHARED =
+      new PageFetcher(DEFAULT_MAX_FETCHES, DEFAULT_MAX_FETCHES_PER_HOST,
+          DEFAULT_TIMEOUT);
+
+  private final ExecutorService                  fetchers;
+  private final ConcurrentMap<String, HostQueue> hosts;
+  private final int                              maxPerHost;
+  private final int                              timeoutMillis;
+
+  /**
+   * @param maxFetches
+   *          The maximum number of pages to fetch at once, overall.
+   * @param maxPerHost
+   *          The maximum number of pages to fetch at once from each host.
+   * @param timeoutMillis
+   *          The time to wait to connect to, and then between reads from, a
+   *          host before failing.
+   */
+  public PageFetcher(int maxFetches, int maxPerHost, int timeoutMillis) {
+    this.fetchers =
+        Executors.newFixedThreadPool(maxFetches, new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("page-fetcher-%d").build());
+    this.hosts = new ConcurrentHashMap<>();
+    this.maxPerHost = maxPerHost;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  /**
+   * @return A PageFetcher shared by everything not given one, with the
+   *         default limits.
+   */
+  public static PageFetcher shared() {
+    return SHARED;
+  }
+
+  /**
+   * Starts fetching a page.
+   *
+   * @param url
+   *          The url of the page.
+   * @return The future parsed page, failing with an IOException if it could
+   *         not be reached.
+   */
+  public CompletableFuture<Document> fetch(String url) {
+    return submit(url, () -> Jsoup.connect(url).timeout(timeoutMillis).get());
+  }
+
+  /**
+   * Starts fetching the HTML of a page, without parsing it, unless it is
+   * unchanged since an earlier snapshot of it.
+   *
+   * @param url
+   *          The url of the page.
+   * @param old
+   *          An earlier snapshot of the page, or null if there is none.
+   * @return The future snapshot of the page (old as of now, if the host
+   *         reports it unchanged), failing with an IOException if it could not
+   *         be reached.
+   */
+  public CompletableFuture<Snapshot> fetchSnapshot(String url, Snapshot old) {
+    return submit(url, () -> {
+      Connection request = Jsoup.connect(url).timeout(timeoutMillis);
+      if (old != null && old.etag() != null) {
+        request.header("If-None-Match", old.etag());
+      }
+      if (old != null && old.lastModified() != null) {
+        request.header("If-Modified-Since", old.lastModified());
+      }
+
+      Connection.Response response = request.execute();
+      long now = System.currentTimeMillis();
+      if (old != null && response.statusCode() == NOT_MODIFIED) {
+        return old.checkedAt(now);
+      }
+      return new Snapshot(response.url().toString(), response.body(),
+          response.header("ETag"), response.header("Last-Modified"), now);
+    });
+  }
+
+  /**
+   * Queues a fetch from the host of a url.
+   *
+   * @param url
+   *          The url fetched.
+   * @param fetch
+   *          The fetch itself.
+   * @return The future result of the fetch, failing with whatever it threw
+   *         (even an Error, ex. a StackOverflowError parsing deep HTML, so that
+   *         nothing waits on it forever).
+   * @param <V>
+   *          The result type.
+   */
+  <V> CompletableFuture<V> submit(String url, Callable<V> fetch) {
+    CompletableFuture<V> page = new CompletableFuture<>();
+    HostQueue host;
+    try {
+      host =
+          hosts.computeIfAbsent(new URL(url).getHost(),
+              (name) -> new HostQueue());
+    } catch (MalformedURLException e) {
+      page.completeExceptionally(e);
+      return page;
+    }
+
+    host.submit(() -> {
+      try {
+        V result = fetch.call();
+        return () -> page.complete(result);
+      } catch (Throwable e) {
+        return () -> page.completeExceptionally(e);
+      }
+    });
+    return page;
+  }
+
+  /**
+   * Fetches a page, waiting for it.
+   *
+   * @param url
+   *          The url of the page.
+   * @return The parsed page.
+   * @throws IOException
+   *           If the page could not be reached.
+   */
+  public Document load(String url) throws IOException {
+    return await(fetch(url));
+  }
+
+  /**
+   * Waits for a fetch.
+   *
+   * @param fetch
+   *          The future result of the fetch.
+   * @return The result.
+   * @throws IOException
+   *           If the fetch failed, or InterruptedIOException if the thread
+   *           was interrupted while waiting.
+   * @param <V>
+   *          The result type.
+   */
+  static <V> V await(Future<V> fetch) throws IOException {
+    try {
+      return fetch.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException interrupted =
+          new InterruptedIOException("Interrupted waiting for a page");
+      interrupted.initCause(e);
+      throw interrupted;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  /**
+   * The fetches from one host, of which at most maxPerHost run at once; the
+   * rest wait here until one finishes.
+   *
+   * Each fetch returns how to complete its future, which is only run once the
+   * fetch has given up its place, so that whatever depends on the future (ex.
+   * parsing or storing the page) doesn't hold up the host.
+   */
+  private final class HostQueue {
+    private final Queue<Supplier<Runnable>> waiting = new ArrayDeque<>();
+    private int                             running = 0;
+
+    void submit(Supplier<Runnable> fetch) {
+      synchronized (this) {
+        if (running == maxPerHost) {
+          waiting.add(fetch);
+          return;
+        }
+        running++;
+      }
+      start(fetch);
+    }
+
+    private void start(Supplier<Runnable> fetch) {
+      fetchers.execute(() -> {
+        Runnable complete;
+        try {
+          complete = fetch.get();
+        } finally {
+          finished();
+        }
+        complete.run();
+      });
+    }
+
+    private void finished() {
+      Supplier<Runnable> next;
+      synchronized (this) {
+        next = waiting.poll();
+        if (next == null) {
+          running--;
+          return;
+        }
+      }
+      start(next); // in the place of the one finished
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package edu.brown.cs.jmrs.web;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import com.google.common.io.ByteStreams;
+
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.DbReader;
+import edu.brown.cs.jmrs.io.db.DbWriter;
+import edu.brown.cs.jmrs.io.db.Insert;
+import edu.brown.cs.jmrs.io.db.Query;
+
+/**
+ * A store of the downloaded HTML of pages in a database, compressed, so that
+ * pages can be loaded again (even across restarts) without downloading them.
+ *
+ * Snapshots are fresh for a while after they are fetched; after that they
+ * should be checked against the page (see
+ * {@link PageFetcher#fetchSnapshot(String, Snapshot)}), and after longer still
+ * they are evicted: no longer given, and deleted when the store is opened and
+ * periodically as snapshots are stored.
+ *
+ * Snapshots are stored under a key made from the url of each page, so that
+ * the different urls of one page can share a snapshot.
+ *
+ * @author mcisler
+ *
+ */
+public class PageSnapshotStore {
+  private static final String CREATE_TABLE =
+      "CREATE TABLE IF NOT EXISTS page_snapshots("
+          + "url TEXT PRIMARY KEY,"
+          + "location TEXT NOT NULL,"
+          + "html BLOB NOT NULL,"
+          + "etag TEXT,"
+          + "last_modified TEXT,"
+          + "fetched INTEGER NOT NULL);"
+          + "CREATE INDEX IF NOT EXISTS fetched_index"
+          + " ON page_snapshots (fetched);";
+  private static final long   EVICT_INTERVAL = 60 * 60 * 1000; // ms
+
+  private final DbConn                   conn;
+  private final Query<Snapshot>          lookup;
+  private final Insert<Object[]>         saver;
+  private final Insert<Object[]>         toucher;
+  private final long                     maxAge;
+  private final long                     evictAge;
+  private final Function<String, String> key;
+  private final AtomicLong               lastEvicted = new AtomicLong();
+
+  /**
+   * Opens the store in the given database, evicting snapshots older than
+   * evictAge, with snapshots stored under the full url of each page.
+   *
+   * @param conn
+   *          The conn to the database to store snapshots in. The table is
+   *          created if it does not exist.
+   * @param maxAge
+   *          The time (in ms) after fetching that snapshots are fresh for.
+   * @param evictAge
+   *          The time (in ms) after fetching that snapshots are evicted.
+   * @throws SQLException
+   *           If the table could not be created.
+   */
+  public PageSnapshotStore(DbConn conn, long maxAge, long evictAge)
+      throws SQLException {
+    this(conn, maxAge, evictAge, url -> url);
+  }
+
+  /**
+   * Opens the store in the given database, evicting snapshots older than
+   * evictAge.
+   *
+   * @param conn
+   *          The conn to the database to store snapshots in. The table is
+   *          created if it does not exist.
+   * @param maxAge
+   *          The time (in ms) after fetching that snapshots are fresh for.
+   * @param evictAge
+   *          The time (in ms) after fetching that snapshots are evicted.
+   * @param key
+   *          The key to store the snapshot of each url under.
+   * @throws SQLException
+   *           If the table could not be created.
+   */
+  public PageSnapshotStore(DbConn conn, long maxAge, long evictAge,
+      Function<String, String> key) throws SQLException {
+    this.conn = conn;
+    this.maxAge = maxAge;
+    this.evictAge = evictAge;
+    this.key = key;
+
+    conn.execute(CREATE_TABLE);
+    lookup =
+        conn.makeQuery("SELECT location, html, etag, last_modified, fetched"
+            + " FROM page_snapshots WHERE url=?", new DbReader<>((rs) -> {
+              return new Snapshot(rs.getString(1), decompress(rs.getBytes(2)),
+                  rs.getString(3), rs.getString(4), rs.getLong(5));
+            }), false);
+    saver =
+        conn.makeInsert("INSERT OR REPLACE INTO page_snapshots"
+            + " (url, location, html, etag, last_modified, fetched)"
+            + " VALUES (?, ?, ?, ?, ?, ?)", new DbWriter<>((ps, row) -> {
+              Snapshot snapshot = (Snapshot) row[1];
+              ps.setString(1, (String) row[0]);
+              ps.setString(2, snapshot.location());
+              ps.setBytes(3, compress(snapshot.html()));
+              ps.setString(4, snapshot.etag());
+              ps.setString(5, snapshot.lastModified());
+              ps.setLong(6, snapshot.fetched());
+            }));
+    toucher =
+        conn.makeInsert("UPDATE page_snapshots SET fetched=? WHERE url=?",
+            new DbWriter<>((ps, row) -> {
+              ps.setLong(1, (Long) row[1]);
+              ps.setString(2, (String) row[0]);
+            }));
+
+    evict();
+  }
+
+  /**
+   * @param url
+   *          The url of a page.
+   * @return The stored snapshot of the page (fresh or not), or null if there
+   *         is none or it is due to be evicted.
+   */
+  public Snapshot get(String url) {
+    List<Snapshot> snapshot = lookup.query(key.apply(url));
+    if (snapshot.isEmpty()
+        || System.currentTimeMillis() - snapshot.get(0).fetched() >= evictAge) {
+      return null;
+    }
+    return snapshot.get(0);
+  }
+
+  /**
+   * Stores a snapshot of a page, replacing any previous one. Also evicts old
+   * snapshots, if none have been evicted for a while.
+   *
+   * @param url
+   *          The url of the page.
+   * @param snapshot
+   *          The snapshot.
+   */
+  public void put(String url, Snapshot snapshot) {
+    // in a transaction so as not to become part of another thread's
+    conn.transaction(
+        () -> saver.insert(new Object[] {key.apply(url), snapshot}));
+
+    long now = System.currentTimeMillis();
+    long last = lastEvicted.get();
+    if (now - last >= Math.min(evictAge, EVICT_INTERVAL)
+        && lastEvicted.compareAndSet(last, now)) {
+      evict();
+    }
+  }
+
+  /**
+   * Records that the stored snapshot of a page was checked to be unchanged,
+   * without rewriting it.
+   *
+   * @param url
+   *          The url of the page.
+   * @param fetched
+   *          When it was checked, in ms since the epoch.
+   */
+  public void touch(String url, long fetched) {
+    conn.transaction(
+        () -> toucher.insert(new Object[] {key.apply(url), fetched}));
+  }
+
+  /**
+   * @param snapshot
+   *          A snapshot of a page.
+   * @return Whether the snapshot was fetched recently enough to be used without
+   *         checking the page.
+   */
+  public boolean isFresh(Snapshot snapshot) {
+    return System.currentTimeMillis() - snapshot.fetched() < maxAge;
+  }
+
+  /**
+   * Deletes snapshots fetched longer than evictAge ago.
+   */
+  public void evict() {
+    long now = System.currentTimeMillis();
+    lastEvicted.set(now);
+    conn.transaction(() -> conn.execute("DELETE FROM page_snapshots"
+        + " WHERE fetched < " + (now - evictAge)));
+  }
+
+  private static byte[] compress(String html) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(html.length() / 4);
+    try (OutputStream out = new DeflaterOutputStream(bytes)) {
+      out.write(html.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+
+  private static String decompress(byte[] compressed) throws IOException {
+    try (InputStream in =
+        new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+      return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * The HTML of a page as it was when fetched, along with what is needed to
+   * check whether it has changed since.
+   *
+   * @author mcisler
+   *
+   */
+  public static final class Snapshot {
+    private final String location;
+    private final String html;
+    private final String etag;
+    private final String lastModified;
+    private final long   fetched;
+
+    /**
+     * @param location
+     *          The final url of the page (after any redirects).
+     * @param html
+     *          The HTML of the page.
+     * @param etag
+     *          The ETag header of the page, or null if it had none.
+     * @param lastModified
+     *          The Last-Modified header of the page, or null if it had none.
+     * @param fetched
+     *          When the page was fetched (or last checked to be unchanged), in
+     *          ms since the epoch.
+     */
+    public Snapshot(String location, String html, String etag,
+        String lastModified, long fetched) {
+      this.location = location;
+      this.html = html;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.fetched = fetched;
+    }
+
+    /**
+     * @return The final url of the page (after any redirects).
+     */
+    public String location() {
+      return location;
+    }
+
+    /**
+     * @return The HTML of the page.
+     */
+    public String html() {
+      return html;
+    }
+
+    /**
+     * @return The ETag header of the page, or null if it had none.
+     */
+    public String etag() {
+      return etag;
+    }
+
+    /**
+     * @return The Last-Modified header of the page, or null if it had none.
+     */
+    public String lastModified() {
+      return lastModified;
+    }
+
+    /**
+     * @return When the page was fetched (or last checked to be unchanged), in
+     *         ms since the epoch.
+     */
+    public long fetched() {
+      return fetched;
+    }
+
+    /**
+     * @param time
+     *          When the page was checked to be unchanged, in ms since the
+     *          epoch.
+     * @return This snapshot, as of time.
+     */
+    public Snapshot checkedAt(long time) {
+      return new Snapshot(location, html, etag, lastModified, time);
+    }
+
+    /**
+     * @param old
+     *          An earlier snapshot of the same page, or null.
+     * @return Whether this is old as checked again (see checkedAt()), rather
+     *         than fetched anew.
+     */
+    public boolean isRecheckOf(Snapshot old) {
+      return old != null && html == old.html;
+    }
+
+    /**
+     * @return The parsed HTML of the page, with relative links resolved
+     *         against its location.
+     */
+    public Document parse() {
+      return Jsoup.parse(html, location);
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package edu.brown.cs.jmrs.web.wikipedia;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.select.Elements;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.web.ContentFormatter;
+import edu.brown.cs.jmrs.web.ContentFormatterChain;
+
+/**
+ * A ContentFormatter which formats a Wikipedia page as a chain of a
+ * WikiBodyFormatter, WikiFooterRemover and WikiAnnotationRemover would, but in
+ * one walk over the body that copies only the parts kept, rather than copying
+ * the page and the body and then running a selector per removal.
+ *
+ * Can also replace links with their contents in the same walk (see
+ * WikiPage.linksMatching()).
+ *
+ * @author mcisler
+ *
+ */
+public class FusedWikiFormatter implements ContentFormatter<WikiPage> {
+  // the formatters whose removals are fused here, in order
+  private static final List<Class<?>> FUSED =
+      ImmutableList.of(WikiBodyFormatter.class, WikiFooterRemover.class,
+          WikiAnnotationRemover.class);
+
+  static final String CONTENT_TEXT  = "mw-content-text";
+  static final String PARSER_OUTPUT = "mw-parser-output";
+
+  /**
+   * @param formatter
+   *          A formatter.
+   * @return Whether formatter formats pages the same as a FusedWikiFormatter,
+   *         being one or a chain of the formatters it fuses.
+   */
+  public static boolean fuses(ContentFormatter<?> formatter) {
+    if (formatter instanceof FusedWikiFormatter) {
+      return true;
+    } else if (!(formatter instanceof ContentFormatterChain)) {
+      return false;
+    }
+    List<Class<?>> classes = new ArrayList<>();
+    for (ContentFormatter<?> link : (ContentFormatterChain<?>) formatter) {
+      classes.add(link.getClass());
+    }
+    return classes.equals(FUSED);
+  }
+
+  @Override
+  public Element format(Element input) {
+    return format(input, null);
+  }
+
+  /**
+   * Formats input, replacing the links not in allowedLinks with their
+   * contents.
+   *
+   * @param input
+   *          The page to format; it is not modified.
+   * @param allowedLinks
+   *          The absolute urls of the links to keep, or null to keep all.
+   * @return A formatted copy of the body of input.
+   */
+  public Element format(Element input, Set<String> allowedLinks) {
+    Element root = body(input);
+    Element copy = shallowCopy(root);
+    copyChildren(root, copy, usesParserOutput(root), allowedLinks);
+    return copy;
+  }
+
+  @Override
+  public Element format(WikiPage page) throws IOException {
+    // the original can't be modified through format(), so needn't be copied
+    return formatOriginal(page);
+  }
+
+  private static void copyChildren(Element from, Element to,
+      boolean usesParserOutput, Set<String> allowedLinks) {
+    boolean sectionsRoot = isSectionsRoot(from, usesParserOutput);
+    boolean inFooter = false;
+    for (Node child : from.childNodes()) {
+      if (!(child instanceof Element)) {
+        // (text between removed elements stays, as with the chain)
+        to.appendChild(child.clone());
+        continue;
+      }
+
+      Element el = (Element) child;
+      inFooter = inFooter || (sectionsRoot && startsFooter(el));
+      if (inFooter || isRemoved(el)) {
+        continue;
+      }
+      if (allowedLinks != null && el.tagName().equals("a")
+          && el.hasAttr("href")
+          && !allowedLinks.contains(el.attr("abs:href"))) {
+        // replace the link with only its contents
+        copyChildren(el, to, usesParserOutput, allowedLinks);
+      } else {
+        Element copy = shallowCopy(el);
+        to.appendChild(copy);
+        copyChildren(el, copy, usesParserOutput, allowedLinks);
+      }
+    }
+  }
+
+  private static Element shallowCopy(Element el) {
+    return new Element(el.tag(), el.baseUri(), el.attributes().clone());
+  }
+
+  /**
+   * @param page
+   *          A parsed Wikipedia page.
+   * @return The element containing the body of page.
+   */
+  static Element body(Element page) {
+    Elements possibleRoot = page.select("#" + CONTENT_TEXT);
+
+    // edge case
+    if (possibleRoot.size() == 0) {
+      possibleRoot = page.select("." + PARSER_OUTPUT);
+    }
+    return possibleRoot.first();
+  }
+
+  /**
+   * @param body
+   *          The body of a page.
+   * @return Whether the sections of the body are within .mw-parser-output
+   *         rather than directly within #mw-content-text.
+   */
+  static boolean usesParserOutput(Element body) {
+    return body.hasClass(PARSER_OUTPUT)
+        || body.getElementsByClass(PARSER_OUTPUT).size() != 0;
+  }
+
+  /**
+   * @param el
+   *          An element of the body of a page.
+   * @param usesParserOutput
+   *          Whether the page uses .mw-parser-output.
+   * @return Whether the children of el are the sections of the page.
+   */
+  static boolean isSectionsRoot(Element el, boolean usesParserOutput) {
+    return usesParserOutput ? el.hasClass(PARSER_OUTPUT)
+        : el.id().equals(CONTENT_TEXT);
+  }
+
+  /**
+   * @param section
+   *          A child of the sections root of a page.
+   * @return Whether section starts the footer of the page (everything after
+   *         "See Also" or "External Links").
+   */
+  static boolean startsFooter(Element section) {
+    for (Element heading : section.children()) {
+      if (heading.id().equals("See_also")
+          || heading.id().equals("External_links")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param el
+   *          An element of the body of a page.
+   * @return Whether el (and everything in it) is removed by formatting.
+   */
+  static boolean isRemoved(Element el) {
+    return el.hasClass("geography") || el.id().equals("coordinates")
+        || el.hasClass("reflist") || el.hasClass("navbox")
+        || (el.tagName().equals("sup") && el.hasClass("reference"))
+        || el.hasClass("mw-editsection");
+  }
+}
@@ -0,0 +1,73 @@
+package edu.brown.cs.jmrs.web.wikipedia;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.jsoup.nodes.Element;
+
+import edu.brown.cs.jmrs.web.ContentFormatter;
+
+/**
+ * Finds the links in the body of a Wikipedia page that would be left after
+ * formatting it with a FusedWikiFormatter (or the chain it fuses), in one pass
+ * over the original page without copying any of it.
+ *
+ * @author mcisler
+ *
+ */
+final class WikiLinkExtractor {
+  private static final String CONTENT_TEXT = FusedWikiFormatter.CONTENT_TEXT;
+
+  private WikiLinkExtractor() {
+  }
+
+  /**
+   * @param formatter
+   *          A formatter applied to pages before finding their links.
+   * @return Whether links() finds the same links as formatter does.
+   */
+  static boolean extracts(ContentFormatter<?> formatter) {
+    return FusedWikiFormatter.fuses(formatter);
+  }
+
+  /**
+   * @param page
+   *          The parsed page; it is not modified.
+   * @param pred
+   *          The predicate to filter links by, using their absolute urls.
+   * @return The absolute urls of the links in the body of page matching pred.
+   */
+  static Set<String> links(Element page, Predicate<String> pred) {
+    Element root = FusedWikiFormatter.body(page);
+    boolean usesParserOutput = FusedWikiFormatter.usesParserOutput(root);
+
+    Set<String> urls = new HashSet<>();
+    collect(root, root.id().equals(CONTENT_TEXT), usesParserOutput, pred, urls);
+    return urls;
+  }
+
+  private static void collect(Element el, boolean inContentText,
+      boolean usesParserOutput, Predicate<String> pred, Set<String> urls) {
+    if (inContentText && el.tagName().equals("a") && el.hasAttr("href")) {
+      // use absolute link in case there are external links which may have a
+      // wikipedia-like suffix.
+      String link = el.attr("abs:href");
+      if (pred.test(link)) {
+        urls.add(link);
+      }
+    }
+
+    boolean sectionsRoot =
+        FusedWikiFormatter.isSectionsRoot(el, usesParserOutput);
+    for (Element child : el.children()) {
+      if (sectionsRoot && FusedWikiFormatter.startsFooter(child)) {
+        break;
+      }
+      if (!FusedWikiFormatter.isRemoved(child)) {
+        collect(child, inContentText || child.id().equals(CONTENT_TEXT),
+            usesParserOutput, pred, urls);
+      }
+    }
+  }
+}
@@ -37,6 +37,9 @@ public class WikiPage extends Page {
   public static final Pattern WIKIPEDIA_ARTICLE_REGEX =
       Pattern.compile(WIKIPEDIA_DOMAIN_REGEX.pattern() + "\\/wiki\\/.*");
 
+  private static final FusedWikiFormatter FUSED_FORMATTER =
+      new FusedWikiFormatter();
+
   /**
    * @param url
    *          The url of the wikipedia page to be constructed.
@@ -156,6 +159,16 @@ public class WikiPage extends Page {
     return parsedContentOriginal().select("#firstHeading").text();
   }
 
+  /**
+   * @return The parsed HTML of this page, shared with others; must not be
+   *         modified.
+   * @throws IOException
+   *           If the page could not be reached or loaded.
+   */
+  Document original() throws IOException {
+    return parsedContentOriginal();
+  }
+
   /**
    * @return The blurb of this Wikipedia page.
    * @throws IOException
@@ -177,7 +190,12 @@ public class WikiPage extends Page {
     return getBlurbFrom(formatter.format(this));
   }
 
-  private String getBlurbFrom(Element doc) {
+  /**
+   * @param doc
+   *          The content of a Wikipedia page, formatted or not.
+   * @return The blurb of the page.
+   */
+  public static String getBlurbFrom(Element doc) {
     String para = "";
     Elements paragraphs = doc.select("#mw-content-text > p");
     if (paragraphs.size() == 0) {
@@ -220,6 +238,26 @@ public class WikiPage extends Page {
     return content;
   }
 
+  /**
+   * @return The parsedContent() of the Wikipedia page formatted with
+   *         formatter, with any links NOT matched by lf replaced with just
+   *         their plaintext. If formatter is (or fuses to) a
+   *         FusedWikiFormatter, both are done in one pass over one copy.
+   * @param lf
+   *          The LinkFinder to use to limit the links on the page.
+   * @param formatter
+   *          The ContentFormatter to use in formatting this page.
+   * @throws IOException
+   *           If the page could not be reached or loaded.
+   */
+  public Element linksMatching(LinkFinder<WikiPage> lf,
+      ContentFormatter<WikiPage> formatter) throws IOException {
+    if (FusedWikiFormatter.fuses(formatter)) {
+      return FUSED_FORMATTER.format(parsedContentOriginal(), lf.links(this));
+    }
+    return formatter.format(linksMatching(lf));
+  }
+
   /***************************************************************************/
   /* Link finding helpers and methods */
   /***************************************************************************/
@@ -245,6 +283,17 @@ public class WikiPage extends Page {
         && !url.contains("#cite_note");
   }
 
+  /**
+   * @param url
+   *          The url of a Wikipedia article.
+   * @return The title the page is stored under: its url past
+   *         WIKIPEDIA_ARTICLE_PREFIX, or all of url if it has another prefix.
+   */
+  public static String storedTitle(String url) {
+    return url.startsWith(WIKIPEDIA_ARTICLE_PREFIX)
+        ? url.substring(WIKIPEDIA_ARTICLE_PREFIX.length()) : url;
+  }
+
   /**
    * @param url
    *          The url of this page.
@@ -1,6 +1,7 @@
 package edu.brown.cs.jmrs.web.wikipedia;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -23,6 +24,8 @@ import edu.brown.cs.jmrs.web.Page;
 public class WikiPageLinkFinder implements LinkFinder<WikiPage> {
   private final LinkFinderMethod<WikiPage> linkFinderMethod;
   private final Predicate<String>          filterMethod;
+  // whether the links can be found without formatting pages
+  private final boolean                    extractLinks;
 
   /**
    * An enum of possible link filters ("invalidators") to apply to this
@@ -83,7 +86,9 @@ public class WikiPageLinkFinder implements LinkFinder<WikiPage> {
    * Constucts a WikiPageLinkFinder.
    *
    * @param formatter
-   *          Formatter to use before.
+   *          Formatter to use before. If it is the usual chain of a
+   *          WikiBodyFormatter, WikiFooterRemover and WikiAnnotationRemover,
+   *          the same links are found without actually formatting pages.
    * @param filters
    *          A series of filters to ignore links by.
    */
@@ -94,10 +99,15 @@ public class WikiPageLinkFinder implements LinkFinder<WikiPage> {
             .factory(url -> new WikiPage(url, Main.WIKI_PAGE_DOC_CACHE))
             .formatter(formatter);
     this.filterMethod = getFilterMethod(filters);
+    this.extractLinks = WikiLinkExtractor.extracts(formatter);
   }
 
   @Override
   public Set<String> links(WikiPage page) throws IOException {
+    if (extractLinks) {
+      return WikiLinkExtractor.links(page.original(),
+          (url) -> page.isChildWikipediaArticle(url) && filterMethod.test(url));
+    }
     return linkFinderMethod.filter(
         (url) -> page.isChildWikipediaArticle(url) && filterMethod.test(url))
         .links(page);
@@ -105,6 +115,13 @@ public class WikiPageLinkFinder implements LinkFinder<WikiPage> {
 
   @Override
   public Set<WikiPage> linkedPages(WikiPage page) throws IOException {
+    if (extractLinks) {
+      Set<String> urls = links(page);
+      Set<WikiPage> output = new HashSet<>(urls.size());
+      urls.forEach(
+          url -> output.add(new WikiPage(url, Main.WIKI_PAGE_DOC_CACHE)));
+      return output;
+    }
     return linkFinderMethod.filter(
         (url) -> page.isChildWikipediaArticle(url) && filterMethod.test(url))
         .linkedPages(page);
@@ -131,4 +148,9 @@ public class WikiPageLinkFinder implements LinkFinder<WikiPage> {
     // just return generic value
     return 1;
   }
+
+  @Override
+  public boolean hasUniformEdgeValues() {
+    return true;
+  }
 }
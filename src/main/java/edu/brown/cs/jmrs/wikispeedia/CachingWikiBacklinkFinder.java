@@ -0,0 +1,56 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import edu.brown.cs.jmrs.collect.graph.EdgeFinder;
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.Query;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.Page;
+
+/**
+ * An edge finder that finds the INCOMING links of a page, using the database
+ * cache of links populated by {@link CachingWikiLinkFinder}. For use as the
+ * reverse direction of a bidirectional search.
+ *
+ * Note that this only knows of links from pages that have already been cached,
+ * so it will generally not find every incoming link of a page.
+ *
+ * @author mcisler
+ *
+ */
+public class CachingWikiBacklinkFinder implements EdgeFinder<Page, Link> {
+  private final Query<Link> lookup;
+
+  /**
+   * @param conn
+   *          The conn to use to query the Link database. The links table is
+   *          created if it does not exist.
+   */
+  public CachingWikiBacklinkFinder(DbConn conn) {
+    LinkTables.setup(conn);
+    lookup =
+        conn.makeQuery(LinkTables.SELECT_LINKS_TO, LinkTables.LINK_READER,
+            true);
+  }
+
+  /**
+   * @return All cached links whose destination is node.
+   */
+  @Override
+  public Set<Link> edges(Page node) {
+    return new HashSet<>(lookup.query(LinkTables.title(node.url())));
+  }
+
+  @Override
+  public Number edgeValue(Link edge) {
+    // same as forward links
+    return 1;
+  }
+
+  @Override
+  public boolean hasUniformEdgeValues() {
+    return true;
+  }
+}
@@ -2,24 +2,26 @@ package edu.brown.cs.jmrs.wikispeedia;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import edu.brown.cs.jmrs.collect.Functional;
+import edu.brown.cs.jmrs.io.db.AsyncDbConn;
+import edu.brown.cs.jmrs.io.db.AsyncDbConn.BatchedLookup;
 import edu.brown.cs.jmrs.io.db.DbConn;
-import edu.brown.cs.jmrs.io.db.DbReader;
-import edu.brown.cs.jmrs.io.db.DbWriter;
-import edu.brown.cs.jmrs.io.db.Insert;
-import edu.brown.cs.jmrs.io.db.Query;
 import edu.brown.cs.jmrs.ui.Main;
 import edu.brown.cs.jmrs.web.ContentFormatter;
 import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.LinkFinder;
 import edu.brown.cs.jmrs.web.Page;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder;
@@ -28,34 +30,47 @@ import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder;
  * An edge finder for use in graph searching on WikiPages that uses a database
  * cache of edges to speed up operations.
  *
+ * Links are looked up on the threads of an AsyncDbConn, together with those of
+ * other pages looked up at the same time, and treated as not cached if the
+ * database takes too long, so that callers never wait long on the disk.
+ *
+ * Keeps a Bloom filter of the pages in the cache (loaded on construction, so
+ * pages cached since by others are only found after scraping them again), so
+ * that pages never cached don't need to be looked up.
+ *
+ * When made over a DbConn, the finder makes an AsyncDbConn of its own, whose
+ * threads stay up until the finder is closed.
+ *
  * @author mcisler
  *
  */
-public class CachingWikiLinkFinder extends WikiPageLinkFinder {
-  private static final DbReader<Link> LINK_READER = new DbReader<>((rs) -> {
-    // rs stores two urls; use Main cache for insides
-    return new Link(new WikiPage(rs.getString(1), Main.WIKI_PAGE_DOC_CACHE),
-        new WikiPage(rs.getString(2), Main.WIKI_PAGE_DOC_CACHE));
-  }); // don't do prehash because there are so many possible pages
-
-  private static final DbWriter<Link> LINK_WRITER =
-      new DbWriter<>((ps, link) -> {
-        ps.setString(1, link.getSource().url());
-        ps.setString(2, link.getDestination().url());
-      }, "CREATE TABLE IF NOT EXISTS links(" + "start TEXT," + "end TEXT,"
-          + "index_time DATETIME DEFAULT CURRENT_TIMESTAMP,"
-          + "PRIMARY KEY (start, end));"
-          + "CREATE INDEX IF NOT EXISTS start_index ON links (start);");
-  // +"start-links INT,"+"end-links INT"
-
+public class CachingWikiLinkFinder extends WikiPageLinkFinder
+    implements AutoCloseable {
   private final CacherService cacherService;
+  // the AsyncDbConn made for this finder alone (null if it was given one)
+  private final AsyncDbConn   ownedDb;
+
+  private final BatchedLookup<String, Link> lookup;
+  private final LinkTables.Cacher           cacher;
+  private final KnownPageFilter             knownPages;
+
+  // finds (and caches) links in the normal way, for pages already looked up
+  private final LinkFinder<WikiPage> fetcher = new LinkFinder<WikiPage>() {
+    @Override
+    public Set<String> links(WikiPage page) throws IOException {
+      return fetchLinks(page);
+    }
 
-  private final Query<Link>  lookup;
-  private final Insert<Link> cacher;
+    @Override
+    public Set<WikiPage> linkedPages(WikiPage page) throws IOException {
+      return fetchLinkedPages(page);
+    }
+  };
 
   /**
    * Creates a CachingWikiEdgeFinder that caches (and hangs while doing so) all
-   * found links on the spot.
+   * found links on the spot, looking them up on threads of its own that are
+   * stopped by {@link #close()}.
    *
    * @param conn
    *          The conn to use to query/update the WikiPage and Link database.
@@ -64,26 +79,37 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
    * @param filters
    *          A series of filters to ignore links by.
    * @throws SQLException
-   *           If the required table could not be created.
+   *           If the required tables could not be created.
    */
   public CachingWikiLinkFinder(DbConn conn,
       ContentFormatter<WikiPage> formatter, Filter... filters)
       throws SQLException {
-    super(formatter, filters);
-    lookup =
-        conn.makeQuery("SELECT * FROM links WHERE start=?", LINK_READER, true);
-    cacher =
-        conn.makeInsert(
-            "INSERT OR IGNORE INTO links (start, end) VALUES (?, ?)",
-            LINK_WRITER);
-
-    // nullify worker to signify to just do it on this thread
-    cacherService = null;
+    this(LinkTables.async(conn), true, 0, formatter, filters);
+  }
+
+  /**
+   * Creates a CachingWikiEdgeFinder that caches (and hangs while doing so) all
+   * found links on the spot, looking them up on the threads of db.
+   *
+   * @param db
+   *          The facade over the WikiPage and Link database to query/update.
+   * @param formatter
+   *          The formatter to use before finding links.
+   * @param filters
+   *          A series of filters to ignore links by.
+   * @throws SQLException
+   *           If the required tables could not be created.
+   */
+  public CachingWikiLinkFinder(AsyncDbConn db,
+      ContentFormatter<WikiPage> formatter, Filter... filters)
+      throws SQLException {
+    this(db, false, 0, formatter, filters);
   }
 
   /**
    * Creates a CachingWikiEdgeFinder with a series of worker threads to actually
-   * send links to the database, for better responsiveness.
+   * send links to the database, for better responsiveness, looking them up on
+   * threads of its own that are stopped by {@link #close()}.
    *
    * @param conn
    *          The conn to use to query/update the WikiPage and Link database.
@@ -95,37 +121,66 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
    * @param filters
    *          A series of filters to ignore links by.
    * @throws SQLException
-   *           If the required table could not be created.
+   *           If the required tables could not be created.
    */
   public CachingWikiLinkFinder(DbConn conn,
       double cacheWorkerExecutionPercentage,
       ContentFormatter<WikiPage> formatter, Filter... filters)
       throws SQLException {
+    this(LinkTables.async(conn), true, cacheWorkerExecutionPercentage,
+        formatter, filters);
+  }
+
+  /**
+   * Creates a CachingWikiEdgeFinder with a series of worker threads to actually
+   * send links to the database, for better responsiveness, looking them up on
+   * the threads of db.
+   *
+   * @param db
+   *          The facade over the WikiPage and Link database to query/update.
+   * @param cacheWorkerExecutionPercentage
+   *          The desired percentage of CPU time the DB caching worker threads
+   *          use.
+   * @param formatter
+   *          The formatter to use before finding links.
+   * @param filters
+   *          A series of filters to ignore links by.
+   * @throws SQLException
+   *           If the required tables could not be created.
+   */
+  public CachingWikiLinkFinder(AsyncDbConn db,
+      double cacheWorkerExecutionPercentage,
+      ContentFormatter<WikiPage> formatter, Filter... filters)
+      throws SQLException {
+    this(db, false, cacheWorkerExecutionPercentage, formatter, filters);
+  }
+
+  private CachingWikiLinkFinder(AsyncDbConn db, boolean ownsDb,
+      double cacheWorkerExecutionPercentage,
+      ContentFormatter<WikiPage> formatter, Filter... filters)
+      throws SQLException {
     super(formatter, filters);
-    lookup =
-        conn.makeQuery("SELECT * FROM links WHERE start=?", LINK_READER, true);
-    cacher =
-        conn.makeInsert(
-            "INSERT OR IGNORE INTO links (start, end) VALUES (?, ?)",
-            LINK_WRITER);
-
-    // create worker that does batch sizes estimated to take up the desired time
-    cacherService = new CacherService(cacheWorkerExecutionPercentage);
+    cacher = new LinkTables.Cacher(db.conn());
+    knownPages = new KnownPageFilter(db.conn());
+    lookup = LinkTables.linkLookup(db);
+    ownedDb = ownsDb ? db : null;
+
+    if (cacheWorkerExecutionPercentage > 0) {
+      // create worker that does batch sizes estimated to take up the desired
+      // time
+      cacherService = new CacherService(cacheWorkerExecutionPercentage);
+    } else {
+      // nullify worker to signify to just do it on this thread
+      cacherService = null;
+    }
   }
 
   @Override
   public Set<String> links(WikiPage page) throws IOException {
     // try database
-    List<Link> links = lookup.query(page.url());
+    List<Link> links = cachedLinks(page);
     if (links.isEmpty()) {
-      // grab links using WikiPage link finder in normal way
-      Set<String> urls = super.links(page);
-
-      // and cache them as Links (deferring to other thread)
-      addLinks(
-          Functional.map(urls, (url) -> new Link(page, new WikiPage(url))));
-
-      return urls;
+      return fetchLinks(page);
     }
     return new HashSet<>(
         Functional.map(links, (link) -> link.getDestination().url()));
@@ -134,23 +189,60 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
   @Override
   public Set<WikiPage> linkedPages(WikiPage page) throws IOException {
     // try database
-    List<Link> links = lookup.query(page.url());
+    List<Link> links = cachedLinks(page);
     if (links.isEmpty()) {
-      // grab links using WikiPage link finder in normal way
-      Set<WikiPage> pages = super.linkedPages(page);
-
-      // and cache them as Links
-      addLinks(Functional.map(pages, (dest) -> new Link(page, dest)));
-
-      return pages;
+      return fetchLinkedPages(page);
     }
     return new HashSet<>(
         Functional.map(links, (link) -> (WikiPage) link.getDestination()));
   }
 
+  /**
+   * Finds the outgoing pages from each of the given pages, looking up cached
+   * pages MAX_TITLES at a time on the database threads, and then finding the
+   * rest in parallel.
+   */
+  @Override
+  public Map<WikiPage, Set<WikiPage>> linkedPages(Collection<WikiPage> pages) {
+    Map<String, WikiPage> byTitle = new HashMap<>(pages.size());
+    for (WikiPage page : pages) {
+      byTitle.put(LinkTables.title(page.url()), page);
+    }
+
+    // skip the database for pages never cached
+    Map<String, CompletableFuture<List<Link>>> lookups =
+        new HashMap<>(byTitle.size());
+    for (String title : byTitle.keySet()) {
+      if (knownPages.mightContain(title)) {
+        lookups.put(title, lookup.get(title));
+      }
+    }
+
+    Map<WikiPage, Set<WikiPage>> found = new HashMap<>(byTitle.size());
+    for (Map.Entry<String, CompletableFuture<List<Link>>> entry : lookups
+        .entrySet()) {
+      List<Link> links = LinkTables.await(entry.getValue());
+      if (!links.isEmpty()) {
+        found.put(byTitle.get(entry.getKey()), new HashSet<>(Functional
+            .map(links, (link) -> (WikiPage) link.getDestination())));
+      }
+    }
+
+    // grab (and cache) the links of uncached pages in normal way, without
+    // looking them up again
+    List<WikiPage> uncached = new ArrayList<>();
+    for (WikiPage page : byTitle.values()) {
+      if (!found.containsKey(page)) {
+        uncached.add(page);
+      }
+    }
+    found.putAll(fetcher.linkedPages(uncached));
+    return found;
+  }
+
   @Override
   public Set<Link> edges(Page node) {
-    List<Link> links = lookup.query(node.url());
+    List<Link> links = cachedLinks(node);
     if (links.isEmpty()) {
       // grab edges using wikipage link finder in normal way
       Set<Link> edges = super.edges(node);
@@ -169,9 +261,98 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
     return 1;
   }
 
+  /**
+   * @return The probability that a page never cached is looked up in the
+   *         database anyway (a false positive of the filter of known pages).
+   */
+  public double knownPagesFpp() {
+    return knownPages.expectedFpp();
+  }
+
+  /**
+   * @return The approximate size in memory of the filter of known pages.
+   */
+  public long knownPagesBytes() {
+    return knownPages.bytes();
+  }
+
+  /**
+   * @return The number of links waiting to be cached by the worker threads (0
+   *         if links are cached on the spot).
+   */
+  public int pendingLinks() {
+    return cacherService == null ? 0 : cacherService.buffer.pendingLinks();
+  }
+
+  /**
+   * @return The number of times the links of a page were not cached because
+   *         too many links were waiting to be.
+   */
+  public long droppedPages() {
+    return cacherService == null ? 0 : cacherService.buffer.droppedPages();
+  }
+
+  /**
+   * @return The average time the worker threads took to cache each batch of
+   *         links, in ms (0 if none have been).
+   */
+  public double meanFlushMillis() {
+    return cacherService == null ? 0 : cacherService.meanFlushMillis();
+  }
+
+  /**
+   * Stops the threads of the AsyncDbConn this finder made for itself, if any;
+   * one it was given is left for its owner to close.
+   */
+  @Override
+  public void close() {
+    if (ownedDb != null) {
+      ownedDb.close();
+    }
+  }
+
+  private List<Link> cachedLinks(Page page) {
+    String title = LinkTables.title(page.url());
+    if (!knownPages.mightContain(title)) {
+      // never cached, so don't bother looking
+      return new ArrayList<>(0);
+    }
+    return LinkTables.await(lookup.get(title));
+  }
+
+  private Set<String> fetchLinks(WikiPage page) throws IOException {
+    // grab links using WikiPage link finder in normal way
+    Set<String> urls = super.links(page);
+
+    // and cache them as Links (deferring to other thread)
+    addLinks(Functional.map(urls, (url) -> new Link(page, new WikiPage(url))));
+
+    return urls;
+  }
+
+  private Set<WikiPage> fetchLinkedPages(WikiPage page) throws IOException {
+    // grab links using WikiPage link finder in normal way
+    Set<WikiPage> pages = super.linkedPages(page);
+
+    // and cache them as Links
+    addLinks(Functional.map(pages, (dest) -> new Link(page, dest)));
+
+    return pages;
+  }
+
+  private void store(Collection<Link> links) {
+    cacher.insertAll(links);
+
+    Set<String> sources = new HashSet<>();
+    for (Link link : links) {
+      sources.add(LinkTables.title(link.getSource().url()));
+    }
+    knownPages.addAll(sources);
+  }
+
   private void addLinks(Set<Link> links) {
     if (cacherService == null) {
-      cacher.insertAll(links);
+      store(links);
     } else {
       cacherService.addLinks(links);
     }
@@ -185,9 +366,9 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
    * A runnable to handle deferring of database storage. Allows for quick
    * responses to queries while also doing the heavy work of DB storage.
    *
-   * Keeps a BlockingQueue of links to cache, and adds them to the database in
-   * SQL batches. The batch size is determine dynamically to meet a desired
-   * percentage of total execution time.
+   * Takes the links of whole pages from a LinkWriteBuffer, and adds them to the
+   * database in a single transaction per batch. The batch size is determine
+   * dynamically to meet a desired percentage of total execution time.
    *
    * @author mcisler
    *
@@ -198,20 +379,23 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
     private static final double BATCH_SIZES_TO_AVG = 5;
     private double              desiredExecutionTime;
 
-    private final BlockingQueue<Link> linksToCache;
-    private int                       curBatchSize;
+    private final LinkWriteBuffer buffer;
+    private final LongAdder       flushes;
+    private final LongAdder       flushTime; // ms
+    private int                   curBatchSize;
 
     /**
-     * Creates and starts a CacherWorker.
+     * Creates a CacherWorker.
      *
-     * @param linksToCache
-     *          A collection of links to get links to be cached from.
-     * @param desiredExecutionPercentage
+     * @param buffer
+     *          The buffer to get links to be cached from.
+     * @param desiredExecutionTime
      *          The desired time this CacherWorker should spend on each batch.
      */
-    CacherWorker(BlockingQueue<Link> linksToCache,
-        double desiredExecutionTime) {
-      this.linksToCache = linksToCache;
+    CacherWorker(LinkWriteBuffer buffer, double desiredExecutionTime) {
+      this.buffer = buffer;
+      this.flushes = new LongAdder();
+      this.flushTime = new LongAdder();
       this.curBatchSize = INITIAL_BATCH_SIZE;
       this.desiredExecutionTime = desiredExecutionTime;
     }
@@ -219,27 +403,43 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
     @Override
     public void run() {
       try {
-        Set<Link> buffer = new HashSet<>(curBatchSize);
-        for (int i = 0; i < curBatchSize; i++) {
-          buffer.add(linksToCache.take());
+        List<Link> batch = new ArrayList<>(curBatchSize);
+        for (Set<Link> links : buffer.drain(curBatchSize)) {
+          batch.addAll(links);
+        }
+        if (batch.isEmpty()) {
+          return;
         }
-        Main.debugLog("\tCaching buffer of " + curBatchSize);
+
+        Main.debugLog("\tCaching batch of " + batch.size() + "; "
+            + buffer.pendingLinks() + " left");
         long start = System.currentTimeMillis();
-        cacher.insertAll(buffer);
-        long duration = System.currentTimeMillis() - start;
+        store(batch);
+        long duration = Math.max(System.currentTimeMillis() - start, 1);
+        flushes.increment();
+        flushTime.add(duration);
 
         // adjust current value by deviation (ratio) off desired
         // average last ten values (weight the new one ony a bit and the old
         // (average) higher)
         double newBatchSize =
-            (desiredExecutionTime / (double) duration) * curBatchSize;
+            (desiredExecutionTime / (double) duration) * batch.size();
         curBatchSize =
-            (int) (newBatchSize * 1.0 / BATCH_SIZES_TO_AVG + curBatchSize
-                * (BATCH_SIZES_TO_AVG - 1.0) / BATCH_SIZES_TO_AVG);
+            Math.max(1, (int) (newBatchSize * 1.0 / BATCH_SIZES_TO_AVG
+                + curBatchSize * (BATCH_SIZES_TO_AVG - 1.0)
+                    / BATCH_SIZES_TO_AVG));
       } catch (Throwable e) {
         e.printStackTrace();
       }
     }
+
+    /**
+     * @return The average time taken to cache each batch, in ms.
+     */
+    double meanFlushMillis() {
+      long numFlushes = flushes.sum();
+      return numFlushes == 0 ? 0 : flushTime.sum() / (double) numFlushes;
+    }
   }
 
   /**
@@ -250,27 +450,29 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
    *
    */
   class CacherService extends ScheduledThreadPoolExecutor {
-    public static final int           MAX_THREAD_EXECUTE_PERIOD = 2000; // ms
-    private final BlockingQueue<Link> linksToCache;
+    public static final int MAX_THREAD_EXECUTE_PERIOD = 2000; // ms
+    // beyond this, the links of further pages are found again when needed
+    public static final int MAX_PENDING_LINKS         = 100000;
+
+    private final LinkWriteBuffer buffer;
+    private final CacherWorker    worker;
 
     /**
-     * Creates a ExecutorService (Thread Pool) running several CacherWorkers.
+     * Creates a ExecutorService (Thread Pool) running a CacherWorker.
      *
      * @param desiredExecutionPercentage
      *          The desired percentage of CPU time for each CacherWorker worker
      *          to use.
-     * @param numThreads
-     *          The number of threads to use in the ExecutorService.
      */
     CacherService(double desiredExecutionPercentage) {
       super(1); // 1 thread
       assert desiredExecutionPercentage > 0 && desiredExecutionPercentage < 1;
 
-      linksToCache = new LinkedBlockingQueue<>();
+      buffer = new LinkWriteBuffer(MAX_PENDING_LINKS);
       double desiredExecutionTime =
           desiredExecutionPercentage * MAX_THREAD_EXECUTE_PERIOD;
 
-      Runnable worker = new CacherWorker(linksToCache, desiredExecutionTime);
+      worker = new CacherWorker(buffer, desiredExecutionTime);
 
       // schedule at staggered times
       scheduleWithFixedDelay(worker, 0,
@@ -280,12 +482,21 @@ public class CachingWikiLinkFinder extends WikiPageLinkFinder {
 
     /**
      * @param links
-     *          Add these links to those to be cached.
+     *          Add these links to those to be cached, unless there are too
+     *          many already.
      */
     void addLinks(Collection<Link> links) {
-      linksToCache.addAll(links);
-      Main.debugLog("\tAdded " + links.size() + " links for caching; now at "
-          + linksToCache.size());
+      if (!buffer.offer(links)) {
+        Main.debugLog(
+            "\tDropped links for caching; at " + buffer.pendingLinks());
+      }
+    }
+
+    /**
+     * @return The average time taken to cache each batch, in ms.
+     */
+    double meanFlushMillis() {
+      return worker.meanFlushMillis();
     }
   }
 }
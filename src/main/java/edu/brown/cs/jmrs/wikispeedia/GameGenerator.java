@@ -3,12 +3,16 @@ package edu.brown.cs.jmrs.wikispeedia;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.primitives.Doubles;
 
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.DbReader;
+import edu.brown.cs.jmrs.io.db.Query;
 import edu.brown.cs.jmrs.ui.Main;
 import edu.brown.cs.jmrs.web.LinkFinder;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
@@ -79,10 +83,28 @@ public final class GameGenerator {
    */
   private static final double MAX_NUM_OF_PAGE_LINKS = 1000;
 
+  // numbers of links stored for cached pages, or null to count them live
+  private static volatile Query<Integer> storedNumsOfLinks = null;
+
   private GameGenerator() {
     // override default constructor
   }
 
+  /**
+   * Judges the obscurity of pages by the number of links stored for them in
+   * the given database, rather than by fetching them; pages with none stored
+   * are judged most obscure.
+   *
+   * @param conn
+   *          The conn to the Link database.
+   */
+  public static void useStoredNumsOfLinks(DbConn conn) {
+    LinkTables.setup(conn);
+    storedNumsOfLinks =
+        conn.makeQuery(LinkTables.SELECT_DEGREES,
+            new DbReader<>(rs -> rs.getInt(1)), false);
+  }
+
   /**
    * Generates a WikiGame (essentially pair of pages) that have an approximate
    * obscurity value.
@@ -356,8 +378,11 @@ public final class GameGenerator {
    */
   private static double obscurity(WikiPage page) {
     try {
-      double linkRatio =
-          WIKI_LINK_FINDER.links(page).size() / MAX_NUM_OF_PAGE_LINKS;
+      int numOfLinks = numOfLinks(page);
+      if (numOfLinks < 0) {
+        return 1; // pages without a stored count are ranked most obscure
+      }
+      double linkRatio = numOfLinks / MAX_NUM_OF_PAGE_LINKS;
 
       // make sure if we find a page with more links that we don't go negative
       // (note we can never go over one - page links can't be negative). This
@@ -368,4 +393,23 @@ public final class GameGenerator {
       return 5; // pages that can't be reached are "very" obscure
     }
   }
+
+  /**
+   * @return The number of links of page: that stored, if stored numbers are
+   *         used (or -1 if there is none, rather than fetching the page), or
+   *         else that counted live.
+   */
+  private static int numOfLinks(WikiPage page) throws IOException {
+    Query<Integer> stored = storedNumsOfLinks;
+    if (stored != null) {
+      List<Integer> numOfLinks = stored.query(LinkTables.title(page.url()));
+      // pages only linked to have none stored, but aren't known to have none
+      if (!numOfLinks.isEmpty() && numOfLinks.get(0) > 0) {
+        return numOfLinks.get(0);
+      }
+      return -1;
+    }
+    // not using the database, so count them live
+    return WIKI_LINK_FINDER.links(page).size();
+  }
 }
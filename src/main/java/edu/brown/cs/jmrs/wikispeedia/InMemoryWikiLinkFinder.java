@@ -0,0 +1,322 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.graph.AStarDirectedPathFinder;
+import edu.brown.cs.jmrs.collect.graph.BreadthFirstPathFinder;
+import edu.brown.cs.jmrs.collect.graph.CsrGraph;
+import edu.brown.cs.jmrs.collect.graph.EdgeFinder;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+import edu.brown.cs.jmrs.collect.graph.KShortestPaths;
+import edu.brown.cs.jmrs.collect.graph.Landmarks;
+import edu.brown.cs.jmrs.collect.graph.ShortestPathDag;
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.ui.Main;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.LinkFinder;
+import edu.brown.cs.jmrs.web.Page;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * A link finder over the entire database cache of links (as populated by
+ * {@link CachingWikiLinkFinder}), loaded once into memory as a
+ * {@link CsrGraph}. Each url is mapped to an int id so that graph algorithms
+ * may run directly over graph() with no database access or per-edge objects.
+ *
+ * Note that pages which were never cached simply have no links under this
+ * LinkFinder.
+ *
+ * @author mcisler
+ *
+ */
+public class InMemoryWikiLinkFinder implements LinkFinder<WikiPage> {
+  private final Map<String, Integer> ids;    // by title
+  private final List<String>         titles;
+  private final CsrGraph             graph;
+  private final CsrGraph             reverseGraph;
+
+  /**
+   * Loads all cached links from the given database into memory.
+   *
+   * @param conn
+   *          The conn to read the Link database from. The links table is
+   *          created if it does not exist.
+   */
+  public InMemoryWikiLinkFinder(DbConn conn) {
+    LinkTables.setup(conn);
+    ids = new HashMap<>();
+    titles = new ArrayList<>();
+    CsrGraph.Builder builder = new CsrGraph.Builder();
+
+    // add each row to the graph as it is read, so that no list of the whole
+    // table is built up
+    conn.makeQuery(LinkTables.SELECT_ALL_LINKS)
+        .fetchSize(LinkTables.BULK_FETCH_SIZE)
+        .forEachRow(rs -> builder.addEdge(idOrAdd(rs.getString(1)),
+            idOrAdd(rs.getString(2))));
+
+    graph = builder.numNodes(titles.size()).build();
+    reverseGraph = graph.reverse();
+    Main.debugLog(String.format("Loaded %d pages and %d links into memory",
+        graph.numNodes(), graph.numEdges()));
+  }
+
+  private int idOrAdd(String title) {
+    Integer id = ids.get(title);
+    if (id == null) {
+      id = titles.size();
+      ids.put(title, id);
+      titles.add(title);
+    }
+    return id;
+  }
+
+  /**
+   * @return The graph of all links, where nodes are page ids.
+   */
+  public CsrGraph graph() {
+    return graph;
+  }
+
+  /**
+   * @return The graph of all links with each reversed, where nodes are page
+   *         ids.
+   */
+  public CsrGraph reverseGraph() {
+    return reverseGraph;
+  }
+
+  /**
+   * @param url
+   *          The url of a page.
+   * @return The id of the page in graph(), or -1 if it has no cached links to
+   *         or from it.
+   */
+  public int id(String url) {
+    Integer id = ids.get(LinkTables.title(url));
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * @param id
+   *          The id of a page in graph().
+   * @return The url of the page.
+   */
+  public String url(int id) {
+    return LinkTables.url(titles.get(id));
+  }
+
+  /**
+   * @param id
+   *          The id of a page in graph().
+   * @return A WikiPage for the page, using the Main document cache.
+   */
+  public WikiPage page(int id) {
+    return new WikiPage(url(id), Main.WIKI_PAGE_DOC_CACHE);
+  }
+
+  @Override
+  public Set<String> links(WikiPage page) {
+    int id = id(page.url());
+    if (id == -1) {
+      return new HashSet<>(0);
+    }
+
+    Set<String> links = new HashSet<>(graph.outDegree(id));
+    for (int e = graph.edgesStart(id); e < graph.edgesEnd(id); e++) {
+      links.add(url(graph.target(e)));
+    }
+    return links;
+  }
+
+  @Override
+  public Set<WikiPage> linkedPages(WikiPage page) {
+    int id = id(page.url());
+    if (id == -1) {
+      return new HashSet<>(0);
+    }
+
+    Set<WikiPage> pages = new HashSet<>(graph.outDegree(id));
+    for (int e = graph.edgesStart(id); e < graph.edgesEnd(id); e++) {
+      pages.add(page(graph.target(e)));
+    }
+    return pages;
+  }
+
+  @Override
+  public Map<WikiPage, Set<WikiPage>> linkedPages(Collection<WikiPage> pages) {
+    // already in memory; not worth going parallel
+    Map<WikiPage, Set<WikiPage>> found = new HashMap<>(pages.size());
+    for (WikiPage page : pages) {
+      found.put(page, linkedPages(page));
+    }
+    return found;
+  }
+
+  @Override
+  public boolean hasUniformEdgeValues() {
+    return true;
+  }
+
+  @Override
+  public Set<Link> edges(Page page) {
+    int id = id(page.url());
+    if (id == -1) {
+      return new HashSet<>(0);
+    }
+
+    Set<Link> edges = new HashSet<>(graph.outDegree(id));
+    for (int e = graph.edgesStart(id); e < graph.edgesEnd(id); e++) {
+      edges.add(new Link(page, page(graph.target(e))));
+    }
+    return edges;
+  }
+
+  /**
+   * @return An EdgeFinder of the INCOMING links of each page, for use as the
+   *         reverse direction of a bidirectional search.
+   */
+  public EdgeFinder<Page, Link> backlinkFinder() {
+    return new EdgeFinder<Page, Link>() {
+      @Override
+      public Set<Link> edges(Page page) {
+        int id = id(page.url());
+        if (id == -1) {
+          return new HashSet<>(0);
+        }
+
+        Set<Link> edges = new HashSet<>(reverseGraph.outDegree(id));
+        for (int e = reverseGraph.edgesStart(id); e < reverseGraph
+            .edgesEnd(id); e++) {
+          edges.add(new Link(page(reverseGraph.target(e)), page));
+        }
+        return edges;
+      }
+
+      @Override
+      public Number edgeValue(Link edge) {
+        return 1;
+      }
+
+      @Override
+      public boolean hasUniformEdgeValues() {
+        return true;
+      }
+    };
+  }
+
+  /**
+   * @param k
+   *          The number of landmarks to choose.
+   * @return Landmarks of the k most linked pages in graph(), with distances to
+   *         and from each precomputed.
+   */
+  public Landmarks landmarks(int k) {
+    Landmarks landmarks = Landmarks.ofHubs(graph, reverseGraph, k);
+    Main.debugLog("Computed " + landmarks);
+    return landmarks;
+  }
+
+  /**
+   * Gives an A* heuristic for the number of links between two pages. This is
+   * admissible over the links in memory, but over live links only as far as
+   * the cache is complete, since links not yet cached may give shorter paths.
+   *
+   * @param landmarks
+   *          Landmarks of graph().
+   * @return A heuristic function for {@link AStarDirectedPathFinder}, which is
+   *         0 for pages with no cached links.
+   */
+  public BiFunction<Page, Page, Double> heuristic(Landmarks landmarks) {
+    return (page, end) -> {
+      int id = id(page.url());
+      int endId = id(end.url());
+      if (id == -1 || endId == -1) {
+        return 0.0;
+      }
+      return (double) landmarks.lowerBound(id, endId);
+    };
+  }
+
+  /**
+   * @param start
+   *          The page paths start at.
+   * @param goal
+   *          The page paths end at.
+   * @return All shortest paths between start and goal over the links in
+   *         memory, or null if either has no cached links.
+   */
+  public ShortestPathDag shortestPathDag(Page start, Page goal) {
+    int startId = id(start.url());
+    int goalId = id(goal.url());
+    if (startId == -1 || goalId == -1) {
+      return null;
+    }
+    return ShortestPathDag.between(graph, reverseGraph, startId, goalId);
+  }
+
+  /**
+   * @param start
+   *          The page paths start at.
+   * @param goal
+   *          The page paths end at.
+   * @param k
+   *          The maximum number of paths to find.
+   * @return Up to k of the shortest paths (without repeated pages) between
+   *         start and goal over the links in memory, shortest first, each as
+   *         the pages along it.
+   */
+  public List<List<WikiPage>> kShortestPaths(WikiPage start, WikiPage goal,
+      int k) {
+    int startId = id(start.url());
+    int goalId = id(goal.url());
+    if (startId == -1 || goalId == -1) {
+      return ImmutableList.of();
+    }
+
+    List<List<WikiPage>> paths = new ArrayList<>(k);
+    for (int[] ids : new KShortestPaths(graph, reverseGraph, goalId).find(
+        startId, k)) {
+      List<WikiPage> path = new ArrayList<>(ids.length);
+      for (int id : ids) {
+        path.add(page(id));
+      }
+      paths.add(path);
+    }
+    return paths;
+  }
+
+  /**
+   * @return A PathFinder over the links in memory, which runs a breadth first
+   *         search directly over graph() and only creates Links for the path
+   *         found.
+   */
+  public PathFinder<Page, Link> pathFinder() {
+    return (start, end) -> {
+      int startId = id(start.url());
+      int endId = id(end.url());
+      if (startId == -1 || endId == -1) {
+        return ImmutableList.of();
+      }
+
+      int[] ids = BreadthFirstPathFinder.shortestPath(graph, startId, endId);
+      List<Link> path = new ArrayList<>(Math.max(ids.length - 1, 0));
+      Page prev = start;
+      for (int i = 1; i < ids.length; i++) {
+        Page next = i == ids.length - 1 ? end : page(ids[i]);
+        path.add(new Link(prev, next));
+        prev = next;
+      }
+      return path;
+    };
+  }
+}
@@ -0,0 +1,100 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.DbReader;
+import edu.brown.cs.jmrs.io.db.Query;
+import edu.brown.cs.jmrs.ui.Main;
+
+/**
+ * A Bloom filter of the titles of pages whose links are in the database, so
+ * that pages which have never been cached can skip querying it.
+ *
+ * May (rarely) claim to know a page that isn't cached, but never the reverse.
+ * Thread safe through synchronization on the filter.
+ *
+ * @author mcisler
+ *
+ */
+class KnownPageFilter {
+  static final int    MIN_EXPECTED_PAGES  = 1000000;
+  static final double FALSE_POSITIVE_RATE = 0.01;
+
+  private final BloomFilter<CharSequence> filter;
+  private final long                      expectedPages;
+
+  /**
+   * Creates a filter of the pages with links in the database.
+   *
+   * @param conn
+   *          The conn to the Link database, with the required tables.
+   */
+  KnownPageFilter(DbConn conn) {
+    Query<Long> count =
+        conn.makeQuery("SELECT COUNT(DISTINCT src) FROM links",
+            new DbReader<>(rs -> rs.getLong(1)), false);
+    long numPages = count.query().get(0);
+
+    // leave room for those cached later, to keep the false positive rate
+    expectedPages = Math.max(MIN_EXPECTED_PAGES, numPages * 2);
+    filter =
+        BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+            expectedPages, FALSE_POSITIVE_RATE);
+    conn.makeQuery(LinkTables.SELECT_SOURCE_TITLES,
+        new DbReader<>(rs -> rs.getString(1)), false)
+        .fetchSize(LinkTables.BULK_FETCH_SIZE)
+        .forEach(filter::put);
+
+    Main.debugLog(String.format(
+        "Filtering %d known pages in %d KB (%.4f false positive rate)",
+        numPages, bytes() / 1024, expectedFpp()));
+  }
+
+  /**
+   * @param title
+   *          The title of a page.
+   * @return Whether the links of the page might be in the database; if false,
+   *         they definitely aren't.
+   */
+  boolean mightContain(String title) {
+    synchronized (filter) {
+      return filter.mightContain(title);
+    }
+  }
+
+  /**
+   * @param titles
+   *          The titles of pages whose links have been added to the database.
+   */
+  void addAll(Collection<String> titles) {
+    synchronized (filter) {
+      titles.forEach(filter::put);
+    }
+  }
+
+  /**
+   * @return The probability that mightContain() is true of a page that isn't
+   *         in the database, given the pages added so far.
+   */
+  double expectedFpp() {
+    synchronized (filter) {
+      return filter.expectedFpp();
+    }
+  }
+
+  /**
+   * @return The approximate size of the filter in memory.
+   */
+  long bytes() {
+    // the number of bits BloomFilter.create() chooses
+    double bits =
+        -expectedPages * Math.log(FALSE_POSITIVE_RATE)
+            / (Math.log(2) * Math.log(2));
+    return (long) Math.ceil(bits / Long.SIZE) * Long.BYTES;
+  }
+}
@@ -0,0 +1,352 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import edu.brown.cs.jmrs.io.db.AsyncDbConn;
+import edu.brown.cs.jmrs.io.db.AsyncDbConn.BatchedLookup;
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.DbReader;
+import edu.brown.cs.jmrs.io.db.DbWriter;
+import edu.brown.cs.jmrs.io.db.Insert;
+import edu.brown.cs.jmrs.ui.Main;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * The schema of the database cache of links between WikiPages, shared by the
+ * link finders using it.
+ *
+ * Each page is stored once in pages(id, title), and each link as a pair of
+ * page ids in links(src, dst), clustered by (src, dst) with an index on dst,
+ * so that looking up the links of a page is a few integer index seeks. Titles
+ * are the end of English article urls (or the whole url of anything else).
+ * Each page also keeps its number of links from and to it, kept up to date by
+ * triggers on links (and rebuilt by rebuildDegrees()).
+ *
+ * Older databases storing links as pairs of urls are migrated on setup.
+ *
+ * @author mcisler
+ *
+ */
+final class LinkTables {
+  /**
+   * Reads links as pairs of titles, as selected by the queries below.
+   */
+  static final DbReader<Link> LINK_READER = new DbReader<>((rs) -> {
+    // use Main cache for insides
+    return new Link(
+        new WikiPage(url(rs.getString(1)), Main.WIKI_PAGE_DOC_CACHE),
+        new WikiPage(url(rs.getString(2)), Main.WIKI_PAGE_DOC_CACHE));
+  }); // don't do prehash because there are so many possible pages
+
+  private static final String SELECT_LINKS =
+      "SELECT s.title, d.title FROM links"
+          + " JOIN pages s ON s.id = links.src"
+          + " JOIN pages d ON d.id = links.dst";
+
+  /**
+   * Selects the links of the page with the given title.
+   */
+  static final String SELECT_LINKS_FROM = SELECT_LINKS + " WHERE s.title=?";
+
+  /**
+   * The number of titles SELECT_LINKS_FROM_ANY takes; unused ones may be null.
+   */
+  static final int MAX_TITLES = 100;
+
+  /**
+   * Selects the links of the pages with any of MAX_TITLES titles.
+   */
+  static final String SELECT_LINKS_FROM_ANY =
+      SELECT_LINKS + " WHERE s.title IN ("
+          + String.join(",", Collections.nCopies(MAX_TITLES, "?")) + ")";
+
+  /**
+   * The most lookups of links to queue for the database threads, and the time
+   * to wait on each, past which the page is treated as not cached.
+   */
+  static final int  MAX_QUEUED_LOOKUPS = 1000;
+  static final long LOOKUP_TIMEOUT     = 2000; // ms
+
+  /**
+   * Selects the number of links from and to the page with the given title.
+   */
+  static final String SELECT_DEGREES =
+      "SELECT out_degree, in_degree FROM pages WHERE title=?";
+
+  /**
+   * Selects the links to the page with the given title.
+   */
+  static final String SELECT_LINKS_TO = SELECT_LINKS + " WHERE d.title=?";
+
+  /**
+   * Selects the title of every page with links.
+   */
+  static final String SELECT_SOURCE_TITLES =
+      "SELECT title FROM pages WHERE id IN (SELECT DISTINCT src FROM links)";
+
+  /**
+   * The number of rows to fetch at once when reading whole tables.
+   */
+  static final int BULK_FETCH_SIZE = 10000;
+
+  /**
+   * Selects every link.
+   */
+  static final String SELECT_ALL_LINKS = SELECT_LINKS;
+
+  private static final String CREATE_TABLES =
+      "CREATE TABLE IF NOT EXISTS pages("
+          + "id INTEGER PRIMARY KEY,"
+          + "title TEXT NOT NULL UNIQUE,"
+          + "out_degree INTEGER NOT NULL DEFAULT 0,"
+          + "in_degree INTEGER NOT NULL DEFAULT 0);"
+          + "CREATE TABLE IF NOT EXISTS links("
+          + "src INTEGER NOT NULL,"
+          + "dst INTEGER NOT NULL,"
+          + "PRIMARY KEY (src, dst)) WITHOUT ROWID;"
+          + "CREATE INDEX IF NOT EXISTS dst_index ON links (dst);";
+
+  private static final String ADD_DEGREES =
+      "ALTER TABLE pages ADD COLUMN out_degree INTEGER NOT NULL DEFAULT 0;"
+          + "ALTER TABLE pages ADD COLUMN in_degree INTEGER NOT NULL DEFAULT 0;";
+
+  // only fire for links actually inserted, not those ignored as duplicates
+  private static final String CREATE_DEGREE_TRIGGERS =
+      "CREATE TRIGGER IF NOT EXISTS link_added AFTER INSERT ON links BEGIN"
+          + " UPDATE pages SET out_degree = out_degree + 1 WHERE id = NEW.src;"
+          + " UPDATE pages SET in_degree = in_degree + 1 WHERE id = NEW.dst;"
+          + " END;"
+          + "CREATE TRIGGER IF NOT EXISTS link_removed AFTER DELETE ON links"
+          + " BEGIN"
+          + " UPDATE pages SET out_degree = out_degree - 1 WHERE id = OLD.src;"
+          + " UPDATE pages SET in_degree = in_degree - 1 WHERE id = OLD.dst;"
+          + " END;";
+
+  private static final String REBUILD_DEGREES =
+      "UPDATE pages SET"
+          + " out_degree = (SELECT COUNT(*) FROM links WHERE src = pages.id),"
+          + " in_degree = (SELECT COUNT(*) FROM links WHERE dst = pages.id);";
+
+  // run in a transaction, so that a failure leaves the old table intact
+  private static final String MIGRATE_URL_LINKS_BODY =
+      "ALTER TABLE links RENAME TO url_links;"
+          + "DROP INDEX IF EXISTS start_index;"
+          + "DROP INDEX IF EXISTS end_index;"
+          + CREATE_TABLES
+          + "INSERT OR IGNORE INTO pages (title)"
+          + " SELECT " + sqlTitle("start") + " FROM url_links"
+          + " UNION SELECT " + sqlTitle("end") + " FROM url_links;"
+          + "INSERT OR IGNORE INTO links (src, dst)"
+          + " SELECT s.id, d.id FROM url_links"
+          + " JOIN pages s ON s.title = " + sqlTitle("url_links.start")
+          + " JOIN pages d ON d.title = " + sqlTitle("url_links.end") + ";"
+          + "DROP TABLE url_links;";
+
+  private LinkTables() {
+    // not instantiable
+  }
+
+  /**
+   * Creates the tables if they don't exist, migrating links stored by url, and
+   * pages stored without their degrees, if there are any.
+   *
+   * @param conn
+   *          The conn to the Link database.
+   */
+  static synchronized void setup(DbConn conn) {
+    boolean migrated = columns(conn, "links").contains("start");
+    if (migrated) {
+      Main.debugLog("Migrating links stored by url to page ids");
+      conn.transaction(() -> conn.execute(MIGRATE_URL_LINKS_BODY));
+    } else {
+      conn.execute(CREATE_TABLES);
+    }
+
+    boolean addDegrees = !columns(conn, "pages").contains("out_degree");
+    if (addDegrees) {
+      conn.execute(ADD_DEGREES);
+    }
+    // after any bulk inserts, so that they don't fire the triggers
+    conn.execute(CREATE_DEGREE_TRIGGERS);
+    if (migrated || addDegrees) {
+      rebuildDegrees(conn);
+    }
+
+    if (migrated) {
+      conn.execute("VACUUM;"); // give back the space
+    }
+  }
+
+  /**
+   * Recounts the links from and to every page, in bulk.
+   *
+   * @param conn
+   *          The conn to the Link database, with the required tables.
+   */
+  static void rebuildDegrees(DbConn conn) {
+    Main.debugLog("Counting links of each page");
+    conn.transaction(() -> conn.execute(REBUILD_DEGREES));
+  }
+
+  /**
+   * @param conn
+   *          The conn to the Link database.
+   * @return A facade running lookups over conn on threads of its own, one per
+   *         reader of conn.
+   */
+  static AsyncDbConn async(DbConn conn) {
+    return new AsyncDbConn(conn, Math.max(conn.numReaders(), 1),
+        MAX_QUEUED_LOOKUPS, LOOKUP_TIMEOUT);
+  }
+
+  /**
+   * @param db
+   *          The facade over the Link database, with the required tables.
+   * @return A lookup of the links of pages by title, which looks up those
+   *         asked for at once MAX_TITLES at a time.
+   */
+  static BatchedLookup<String, Link> linkLookup(AsyncDbConn db) {
+    return db.batchedLookup(
+        db.conn().makeQuery(SELECT_LINKS_FROM_ANY, LINK_READER, false),
+        MAX_TITLES, (link) -> title(link.getSource().url()));
+  }
+
+  /**
+   * Waits for a lookup of links.
+   *
+   * @param links
+   *          The future links, as from linkLookup().
+   * @return The links, or none if the lookup failed or took too long (so
+   *         callers fall back on finding them as if they were not stored).
+   */
+  static List<Link> await(CompletableFuture<List<Link>> links) {
+    try {
+      return links.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.emptyList();
+    } catch (ExecutionException e) {
+      Main.debugLog("Gave up looking up links: " + e.getCause());
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * Waits for a lookup of links, for callers that must not miss any, such as
+   * searches for shortest paths.
+   *
+   * @param links
+   *          The future links, as from linkLookup().
+   * @return The links.
+   * @throws UncheckedExecutionException
+   *           If the lookup failed or took too long, or the wait was
+   *           interrupted.
+   */
+  static List<Link> join(CompletableFuture<List<Link>> links) {
+    try {
+      return links.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new UncheckedExecutionException(e);
+    } catch (ExecutionException e) {
+      throw new UncheckedExecutionException(e.getCause());
+    }
+  }
+
+  private static List<String> columns(DbConn conn, String table) {
+    return conn.makeQuery("PRAGMA table_info(" + table + ")",
+        new DbReader<>(rs -> rs.getString("name")), false).query();
+  }
+
+  /**
+   * @param url
+   *          The url of a WikiPage.
+   * @return The title to store the page under.
+   */
+  static String title(String url) {
+    return WikiPage.storedTitle(url);
+  }
+
+  /**
+   * @param title
+   *          The title a WikiPage is stored under.
+   * @return The url of the page.
+   */
+  static String url(String title) {
+    return title.startsWith("http://") || title.startsWith("https://") ? title
+        : WikiPage.WIKIPEDIA_ARTICLE_PREFIX + title;
+  }
+
+  /**
+   * The same as title(), in SQL, for the url in column.
+   */
+  private static String sqlTitle(String column) {
+    String prefix = WikiPage.WIKIPEDIA_ARTICLE_PREFIX;
+    return String.format("(CASE WHEN substr(%s, 1, %d) = '%s'"
+        + " THEN substr(%s, %d) ELSE %s END)", column, prefix.length(), prefix,
+        column, prefix.length() + 1, column);
+  }
+
+  /**
+   * Stores links, adding any pages not yet stored.
+   *
+   * @author mcisler
+   *
+   */
+  static final class Cacher {
+    private final DbConn         conn;
+    private final Insert<String> pageCacher;
+    private final Insert<Link>   linkCacher;
+
+    /**
+     * @param conn
+     *          The conn to the Link database.
+     * @throws SQLException
+     *           If the required tables could not be created.
+     */
+    Cacher(DbConn conn) throws SQLException {
+      this.conn = conn;
+      setup(conn);
+      pageCacher =
+          conn.makeInsert("INSERT OR IGNORE INTO pages (title) VALUES (?)",
+              new DbWriter<>((ps, title) -> ps.setString(1, title)));
+      linkCacher =
+          conn.makeInsert("INSERT OR IGNORE INTO links (src, dst)"
+              + " SELECT s.id, d.id FROM pages s, pages d"
+              + " WHERE s.title = ? AND d.title = ?",
+              new DbWriter<>((ps, link) -> {
+                ps.setString(1, title(link.getSource().url()));
+                ps.setString(2, title(link.getDestination().url()));
+              }));
+    }
+
+    /**
+     * Stores links in a single transaction, so that either all or none of them
+     * are stored.
+     *
+     * @param links
+     *          The links to store.
+     */
+    void insertAll(Collection<Link> links) {
+      Set<String> titles = new HashSet<>();
+      for (Link link : links) {
+        titles.add(title(link.getSource().url()));
+        titles.add(title(link.getDestination().url()));
+      }
+      conn.transaction(() -> {
+        pageCacher.insertAll(titles);
+        linkCacher.insertAll(links);
+      });
+    }
+  }
+}
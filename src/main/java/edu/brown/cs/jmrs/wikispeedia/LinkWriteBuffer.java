@@ -0,0 +1,131 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.Page;
+
+/**
+ * A bounded buffer of links waiting to be cached, grouped by the page they are
+ * from, so that links found again (ex. by viewing the same page twice) are only
+ * held once, and so that each page's links can be stored together.
+ *
+ * When full, the links of new pages (and any links of pages already held that
+ * are not yet held) are dropped rather than held; as they were never cached,
+ * they will be found again the next time they are needed.
+ *
+ * Thread safe through synchronization on the buffer.
+ *
+ * @author mcisler
+ *
+ */
+class LinkWriteBuffer {
+  private final int maxLinks;
+
+  // oldest first
+  private final LinkedHashMap<Page, Set<Link>> pending;
+  private int                                  numLinks;
+  private long                                 droppedPages;
+
+  /**
+   * @param maxLinks
+   *          The maximum number of links to hold.
+   */
+  LinkWriteBuffer(int maxLinks) {
+    this.maxLinks = maxLinks;
+    this.pending = new LinkedHashMap<>();
+    this.numLinks = 0;
+    this.droppedPages = 0;
+  }
+
+  /**
+   * Adds links to be cached, merging them with those already held from the
+   * same page.
+   *
+   * @param links
+   *          The links to add, from any number of pages.
+   * @return Whether all of the links were added; if false, the links of at
+   *         least one page were dropped.
+   */
+  synchronized boolean offer(Collection<Link> links) {
+    Map<Page, Set<Link>> bySource = new LinkedHashMap<>();
+    for (Link link : links) {
+      bySource.computeIfAbsent(link.getSource(), (src) -> new HashSet<>())
+          .add(link);
+    }
+
+    boolean added = true;
+    for (Map.Entry<Page, Set<Link>> page : bySource.entrySet()) {
+      Set<Link> held = pending.get(page.getKey());
+      if (held != null) {
+        Set<Link> extra = new HashSet<>(page.getValue());
+        extra.removeAll(held);
+        if (numLinks + extra.size() <= maxLinks) {
+          held.addAll(extra);
+          numLinks += extra.size();
+        } else {
+          // keep only those already held, found together
+          droppedPages++;
+          added = false;
+        }
+      } else if (numLinks + page.getValue().size() <= maxLinks) {
+        pending.put(page.getKey(), page.getValue());
+        numLinks += page.getValue().size();
+      } else {
+        droppedPages++;
+        added = false;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Removes the links of the pages held longest, whole pages at a time.
+   *
+   * @param minLinks
+   *          The number of links after which to stop removing pages (unless
+   *          fewer are held).
+   * @return The links of each page removed.
+   */
+  synchronized List<Set<Link>> drain(int minLinks) {
+    List<Set<Link>> drained = new ArrayList<>();
+    int drainedLinks = 0;
+    Iterator<Set<Link>> oldest = pending.values().iterator();
+    while (drainedLinks < minLinks && oldest.hasNext()) {
+      Set<Link> links = oldest.next();
+      drained.add(links);
+      drainedLinks += links.size();
+      oldest.remove();
+    }
+    numLinks -= drainedLinks;
+    return drained;
+  }
+
+  /**
+   * @return The number of pages whose links are held.
+   */
+  synchronized int pendingPages() {
+    return pending.size();
+  }
+
+  /**
+   * @return The number of links held.
+   */
+  synchronized int pendingLinks() {
+    return numLinks;
+  }
+
+  /**
+   * @return The number of times a page's links were dropped for lack of room.
+   */
+  synchronized long droppedPages() {
+    return droppedPages;
+  }
+}
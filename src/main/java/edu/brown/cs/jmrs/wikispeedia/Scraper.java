@@ -5,6 +5,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import edu.brown.cs.jmrs.io.db.DbConn;
@@ -12,12 +13,12 @@ import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder.Filter;
 
 /**
- * A basic wikipedia page scraper.
+ * A basic wikipedia page scraper, to be closed once done scraping.
  *
  * @author mcisler
  *
  */
-public class Scraper {
+public class Scraper implements AutoCloseable {
   private static final int AVG_LINKS_PER_PAGE = 100; // try to underestimate
 
   private final WikiPage        startPage;
@@ -68,17 +69,15 @@ public class Scraper {
     }
 
     while (depth == -1 || curDepth < depth) {
-      for (WikiPage page : searchLinks) {
-        // add all edges to be searched (and cached) at the next round
-        try {
-          Set<WikiPage> linksOfPage = linkFinder.linkedPages(page);
-          nextSearchLinks.addAll(linksOfPage);
-          System.out.printf(String.format("Found %d links at page %s\n",
-              linksOfPage.size(), page.toString()));
-        } catch (IOException e) {
-          // skip ones that cannot be accessed
-          continue;
-        }
+      // add all edges to be searched (and cached) at the next round, skipping
+      // ones that cannot be accessed
+      Map<WikiPage, Set<WikiPage>> linksOfPages =
+          linkFinder.linkedPages(searchLinks);
+      for (Map.Entry<WikiPage, Set<WikiPage>> linksOfPage : linksOfPages
+          .entrySet()) {
+        nextSearchLinks.addAll(linksOfPage.getValue());
+        System.out.printf(String.format("Found %d links at page %s\n",
+            linksOfPage.getValue().size(), linksOfPage.getKey().toString()));
       }
 
       searchLinks = nextSearchLinks;
@@ -110,18 +109,8 @@ public class Scraper {
 
     List<WikiPage> accessiblePages = new ArrayList<>();
     while (depth == -1 || curDepth < depth) {
-      for (WikiPage page : links) {
-        // cache all edges of each
-        try {
-          linkFinder.linkedPages(page);
-          // note accessible
-          accessiblePages.add(page);
-
-        } catch (IOException e) {
-          // skip failed ones
-          continue;
-        }
-      }
+      // cache all edges of each, noting those accessible
+      accessiblePages.addAll(linkFinder.linkedPages(links).keySet());
       // then choose one for the next iteration (cycling until we get one)
       assert accessiblePages.size() > 0;
 
@@ -137,4 +126,9 @@ public class Scraper {
     }
     curDepth++;
   }
+
+  @Override
+  public void close() {
+    linkFinder.close();
+  }
 }
@@ -0,0 +1,65 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.brown.cs.jmrs.io.db.AsyncDbConn;
+import edu.brown.cs.jmrs.io.db.AsyncDbConn.BatchedLookup;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.LinkFinder;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * A link finder that finds only the links already in the database cache of
+ * links (as populated by {@link CachingWikiLinkFinder}), never fetching pages,
+ * so that searches over it don't touch Wikipedia or the document cache.
+ *
+ * Note that pages which were never cached simply have no links under this
+ * LinkFinder, while links that could not be looked up (e.g. that took too
+ * long) fail with an UncheckedExecutionException, so that searches over it
+ * fail rather than silently miss links.
+ *
+ * @author mcisler
+ *
+ */
+public class StoredWikiLinkFinder implements LinkFinder<WikiPage> {
+  private final BatchedLookup<String, Link> lookup;
+
+  /**
+   * @param db
+   *          The facade over the Link database to query on the threads of. The
+   *          links table is created if it does not exist.
+   */
+  public StoredWikiLinkFinder(AsyncDbConn db) {
+    LinkTables.setup(db.conn());
+    lookup = LinkTables.linkLookup(db);
+  }
+
+  @Override
+  public Set<String> links(WikiPage page) {
+    List<Link> links =
+        LinkTables.join(lookup.get(LinkTables.title(page.url())));
+    Set<String> urls = new HashSet<>(links.size());
+    for (Link link : links) {
+      urls.add(link.getDestination().url());
+    }
+    return urls;
+  }
+
+  @Override
+  public Set<WikiPage> linkedPages(WikiPage page) {
+    List<Link> links =
+        LinkTables.join(lookup.get(LinkTables.title(page.url())));
+    Set<WikiPage> pages = new HashSet<>(links.size());
+    for (Link link : links) {
+      pages.add((WikiPage) link.getDestination());
+    }
+    return pages;
+  }
+
+  @Override
+  public boolean hasUniformEdgeValues() {
+    return true;
+  }
+}
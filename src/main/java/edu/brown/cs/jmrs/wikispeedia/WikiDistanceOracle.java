@@ -0,0 +1,139 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.graph.DistanceOracle;
+import edu.brown.cs.jmrs.collect.graph.ShortestPathDag;
+import edu.brown.cs.jmrs.ui.Main;
+import edu.brown.cs.jmrs.web.Page;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * Answers shortest distances and paths between Wikipedia pages from a
+ * {@link DistanceOracle} built over all cached links, without any searching.
+ *
+ * Like {@link InMemoryWikiLinkFinder}, this only knows of cached links, so its
+ * distances are exact over the cache but only upper bounds over all of
+ * Wikipedia.
+ *
+ * @author mcisler
+ *
+ */
+public class WikiDistanceOracle {
+  private final InMemoryWikiLinkFinder linkFinder;
+  private final DistanceOracle         oracle;
+
+  /**
+   * Builds the oracle over all links loaded by linkFinder.
+   *
+   * @param linkFinder
+   *          The in-memory links to answer queries over.
+   */
+  public WikiDistanceOracle(InMemoryWikiLinkFinder linkFinder) {
+    this.linkFinder = linkFinder;
+    long startTime = System.currentTimeMillis();
+    oracle = new DistanceOracle(linkFinder.graph(), linkFinder.reverseGraph());
+    Main.debugLog(String.format(
+        "Built distance oracle of %d label entries (%d bytes) in %d seconds",
+        oracle.numLabelEntries(), oracle.sizeInBytes(),
+        (System.currentTimeMillis() - startTime) / 1000));
+  }
+
+  /**
+   * @param start
+   *          The page a path would start at.
+   * @param goal
+   *          The page a path would end at.
+   * @return The fewest links to click to get from start to goal, or -1 if no
+   *         path is known.
+   */
+  public int distance(Page start, Page goal) {
+    if (start.url().equals(goal.url())) {
+      return 0;
+    }
+    int startId = linkFinder.id(start.url());
+    int goalId = linkFinder.id(goal.url());
+    if (startId == -1 || goalId == -1) {
+      return -1;
+    }
+    return oracle.distance(startId, goalId);
+  }
+
+  /**
+   * @param start
+   *          The page the path starts at.
+   * @param goal
+   *          The page the path ends at.
+   * @return The pages along a shortest path from start to goal, inclusive, or
+   *         an empty list if no path is known.
+   */
+  public List<WikiPage> path(WikiPage start, WikiPage goal) {
+    if (start.url().equals(goal.url())) {
+      return ImmutableList.of(start);
+    }
+    int startId = linkFinder.id(start.url());
+    int goalId = linkFinder.id(goal.url());
+    if (startId == -1 || goalId == -1) {
+      return ImmutableList.of();
+    }
+
+    int[] ids = oracle.path(startId, goalId);
+    List<WikiPage> path = new ArrayList<>(ids.length);
+    for (int i = 0; i < ids.length; i++) {
+      if (i == 0) {
+        path.add(start);
+      } else if (i == ids.length - 1) {
+        path.add(goal);
+      } else {
+        path.add(linkFinder.page(ids[i]));
+      }
+    }
+    return path;
+  }
+
+  /**
+   * @param start
+   *          The page paths start at.
+   * @param goal
+   *          The page paths end at.
+   * @param k
+   *          The maximum number of paths to give.
+   * @return Up to k of the shortest paths from start to goal, shortest first,
+   *         each as the pages along it.
+   */
+  public List<List<WikiPage>> shortestPaths(WikiPage start, WikiPage goal,
+      int k) {
+    return linkFinder.kShortestPaths(start, goal, k);
+  }
+
+  /**
+   * @param start
+   *          The page paths start at.
+   * @param goal
+   *          The page paths end at.
+   * @return The number of distinct shortest paths from start to goal, or 0 if
+   *         no path is known.
+   */
+  public long numShortestPaths(Page start, Page goal) {
+    ShortestPathDag dag = linkFinder.shortestPathDag(start, goal);
+    return dag == null ? 0 : dag.countPaths();
+  }
+
+  /**
+   * @param game
+   *          The game to find the shortest path of.
+   * @return The same game, carrying the shortest path between its start and
+   *         goal if one is known.
+   */
+  public WikiGame withShortestPath(WikiGame game) {
+    List<WikiPage> path = path(game.getStart(), game.getGoal());
+    if (path.isEmpty()) {
+      return game;
+    }
+    return new WikiGame(game.getStart(), game.getGoal(), game.getSpace(),
+        path);
+  }
+}
@@ -1,7 +1,29 @@
 package edu.brown.cs.jmrs.wikispeedia;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.brown.cs.jmrs.collect.graph.CancellableEdgeFinder;
+import edu.brown.cs.jmrs.collect.graph.EdgeFinder;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+import edu.brown.cs.jmrs.ui.Main;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.Page;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
 
 /**
@@ -11,9 +33,33 @@ import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
  *
  */
 public class WikiGame {
-  private final WikiPage      start;
-  private final WikiPage      goal;
-  private final Set<WikiPage> space;
+  /**
+   * Shortest path search constants; searches are run on a small dedicated pool
+   * so that they never hold up server threads, and games that cannot be queued
+   * simply go without a shortest path.
+   */
+  private static final int SHORTEST_PATH_THREADS    = 2;
+  private static final int SHORTEST_PATH_QUEUE_SIZE = 16;
+  /**
+   * How long to search for a shortest path before giving up (in minutes).
+   */
+  public static final long SHORTEST_PATH_TIMEOUT = 2;
+
+  private static final ListeningExecutorService SHORTEST_PATH_EXECUTOR =
+      MoreExecutors.listeningDecorator(new ThreadPoolExecutor(
+          SHORTEST_PATH_THREADS, SHORTEST_PATH_THREADS, 0L,
+          TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(SHORTEST_PATH_QUEUE_SIZE),
+          new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("shortest-path-%d").build()));
+
+  private final WikiPage       start;
+  private final WikiPage       goal;
+  private final Set<WikiPage>  space;
+  private final List<WikiPage> shortestPath;
+
+  private transient volatile ListenableFuture<List<WikiPage>>
+      shortestPathFuture;
 
   /**
    * @param start
@@ -25,9 +71,27 @@ public class WikiGame {
    *          Presumed to be found during generation, but with no guarantees.
    */
   public WikiGame(WikiPage start, WikiPage goal, Set<WikiPage> space) {
+    this(start, goal, space, null);
+  }
+
+  /**
+   * @param start
+   *          The starting page of this game.
+   * @param goal
+   *          The goal page of this game.
+   * @param space
+   *          The space of pages surrounding the start and goal in this game.
+   *          Presumed to be found during generation, but with no guarantees.
+   * @param shortestPath
+   *          The pages along a known shortest path from start to goal,
+   *          inclusive, or null if none is known.
+   */
+  public WikiGame(WikiPage start, WikiPage goal, Set<WikiPage> space,
+      List<WikiPage> shortestPath) {
     this.start = start;
     this.goal = goal;
     this.space = space;
+    this.shortestPath = shortestPath;
   }
 
   /**
@@ -51,4 +115,119 @@ public class WikiGame {
   public final Set<WikiPage> getSpace() {
     return space;
   }
+
+  /**
+   * Starts finding the shortest path from start to goal in the background (if
+   * not already started), giving up after SHORTEST_PATH_TIMEOUT.
+   *
+   * @param edgeFinder
+   *          The edge finder to search over.
+   * @return A Future of the pages along the shortest path, inclusive, which is
+   *         empty if there is none. It is cancelled if the search could not be
+   *         queued, and fails with a CancellationException if it timed out.
+   */
+  public synchronized ListenableFuture<List<WikiPage>> findShortestPath(
+      EdgeFinder<Page, Link> edgeFinder) {
+    if (shortestPathFuture != null) {
+      return shortestPathFuture;
+    }
+
+    if (shortestPath != null) {
+      shortestPathFuture = Futures.immediateFuture(shortestPath);
+    } else if (start.equals(goal)) {
+      shortestPathFuture = Futures.immediateFuture(ImmutableList.of(start));
+    } else {
+      shortestPathFuture = inBackground(() -> {
+        // timed from when the search starts, not from when it was queued
+        PathFinder<Page, Link> pathFinder =
+            PathFinder.forEdgeFinder(new CancellableEdgeFinder<>(edgeFinder,
+                SHORTEST_PATH_TIMEOUT, TimeUnit.MINUTES));
+        return toPages(pathFinder.shortestPath(start, goal));
+      });
+    }
+    return shortestPathFuture;
+  }
+
+  /**
+   * Runs other work on shortest paths (ex. finding more of them) on the same
+   * threads as the shortest path searches, so that it never holds up server
+   * threads.
+   *
+   * @param work
+   *          The work to run.
+   * @return A Future of the result of work, which is cancelled if it could not
+   *         be queued.
+   * @param <T>
+   *          The type work returns.
+   */
+  static <T> ListenableFuture<T> inBackground(Callable<T> work) {
+    try {
+      return SHORTEST_PATH_EXECUTOR.submit(work);
+    } catch (RejectedExecutionException e) {
+      Main.debugLog("Too many shortest path searches queued; skipping one");
+      return Futures.immediateCancelledFuture();
+    }
+  }
+
+  private List<WikiPage> toPages(List<Link> links) {
+    if (links.isEmpty()) {
+      return ImmutableList.of();
+    }
+    List<WikiPage> pages = new ArrayList<>(links.size() + 1);
+    pages.add(start);
+    for (Link link : links) {
+      // links found from WikiPages lead to WikiPages
+      pages.add((WikiPage) link.getDestination());
+    }
+    return pages;
+  }
+
+  /**
+   * Stops any background search for the shortest path.
+   */
+  public void cancelShortestPath() {
+    Future<List<WikiPage>> future = shortestPathFuture;
+    if (future != null) {
+      future.cancel(true);
+    }
+  }
+
+  /**
+   * Never blocks.
+   *
+   * @return The pages along a known shortest path from start to goal,
+   *         inclusive, or null if none is known (yet).
+   */
+  public final List<WikiPage> getShortestPath() {
+    if (shortestPath != null) {
+      return shortestPath;
+    }
+
+    Future<List<WikiPage>> future = shortestPathFuture;
+    if (future != null && future.isDone() && !future.isCancelled()) {
+      try {
+        List<WikiPage> path = future.get(); // already done
+        return path.isEmpty() ? null : path;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        // timed out or failed; no path known
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return The fewest links that must be clicked to get from start to goal,
+   *         or -1 if no shortest path is known.
+   */
+  public final int getShortestPathLength() {
+    List<WikiPage> path = getShortestPath();
+    return path == null ? -1 : path.size() - 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s -> %s", start, goal);
+  }
 }
@@ -15,6 +15,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
@@ -28,11 +29,9 @@ import edu.brown.cs.jmrs.server.Server;
 import edu.brown.cs.jmrs.server.customizable.Lobby;
 import edu.brown.cs.jmrs.ui.Main;
 import edu.brown.cs.jmrs.web.ContentFormatter;
-import edu.brown.cs.jmrs.web.ContentFormatterChain;
+import edu.brown.cs.jmrs.web.FailSafeLinkFInder;
 import edu.brown.cs.jmrs.web.LinkFinder;
-import edu.brown.cs.jmrs.web.wikipedia.WikiAnnotationRemover;
-import edu.brown.cs.jmrs.web.wikipedia.WikiBodyFormatter;
-import edu.brown.cs.jmrs.web.wikipedia.WikiFooterRemover;
+import edu.brown.cs.jmrs.web.wikipedia.FusedWikiFormatter;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder;
 import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder.Filter;
@@ -117,6 +116,10 @@ public class WikiLobby implements Lobby {
         lobby.addProperty("endTime",
             src.getEndTime() != null ? src.getEndTime().toEpochMilli() : null);
         lobby.add("winners", Main.GSON.toJsonTree(src.getWinners()));
+        lobby.add("shortestPath", Main.GSON.toJsonTree(src.getShortestPath()));
+        lobby.add("shortestPaths",
+            Main.GSON.toJsonTree(src.getShortestPaths()));
+        lobby.addProperty("numShortestPaths", src.getNumShortestPaths());
       }
 
       return lobby;
@@ -124,9 +127,7 @@ public class WikiLobby implements Lobby {
   }
 
   public static final ContentFormatter<WikiPage> DEFAULT_CONTENT_FORMATTER =
-      new ContentFormatterChain<WikiPage>(
-          ImmutableList.of(new WikiBodyFormatter(), new WikiFooterRemover(),
-              new WikiAnnotationRemover()));
+      new FusedWikiFormatter();
   // NOTE: this should be configured to provide MORE or AT LEAST as many links
   // as the game generation link finder, so that players can definitely go down
   // a path
@@ -138,7 +139,7 @@ public class WikiLobby implements Lobby {
     if (USE_CACHING_WIKI_LINK_FINDER) {
       try {
         DEFAULT_LINK_FINDER =
-            new CachingWikiLinkFinder(Main.getWikiDbConn(),
+            new CachingWikiLinkFinder(Main.getWikiDb(),
                 CACHING_THREAD_CPU_USAGE, DEFAULT_CONTENT_FORMATTER,
                 Filter.DISAMBIGUATION, Filter.NON_ENGLISH_WIKIPEDIA);
       } catch (SQLException e) {
@@ -155,6 +156,10 @@ public class WikiLobby implements Lobby {
    */
   private static final long START_DELAY   = 5;
   private static final int  MAX_ID_LENGTH = 30;
+  /**
+   * Number of shortest paths to show players once the game ends.
+   */
+  private static final int  MAX_SHORTEST_PATHS = 5;
 
   private transient Server server;
   private final String     id;
@@ -168,6 +173,11 @@ public class WikiLobby implements Lobby {
   private boolean         ended;  // only allow ending once
   private Set<WikiPlayer> winners;
 
+  // other ways there were to win, found in the background once ended (only
+  // with a distance oracle)
+  private volatile List<List<WikiPage>> shortestPaths;
+  private volatile long                 numShortestPaths;
+
   /****************************************/
   /* LOBBY OVERRIDES */
   /****************************************/
@@ -192,6 +202,7 @@ public class WikiLobby implements Lobby {
     players = new ConcurrentHashMap<>();
     messages = Collections.synchronizedList(new ArrayList<>());
     winners = ImmutableSet.of();
+    shortestPaths = ImmutableList.of();
     ended = false;
   }
 
@@ -442,11 +453,22 @@ public class WikiLobby implements Lobby {
     }
 
     game = new WikiGame(startPage, endPage, ImmutableSet.of());
+    if (Main.getDistanceOracle() != null) {
+      game = Main.getDistanceOracle().withShortestPath(game);
+    }
+    // find it in the background for the end of the game (if not known), over
+    // the links already cached rather than live pages, so as not to compete
+    // with players for Wikipedia and the document cache
+    if (Main.getStoredLinkFinder() != null) {
+      game.findShortestPath(
+          new FailSafeLinkFInder<>(Main.getStoredLinkFinder()))
+          .addListener(this::shortestPathFound, MoreExecutors.directExecutor());
+    }
 
-    Main.debugLog(String.format("Generated %s game: %s -> %s",
+    Main.debugLog(String.format("Generated %s game: %s -> %s (distance %d)",
         mode == WikiGameMode.Mode.TIME_TRIAL.ordinal() ? "time trial"
             : "least clicks",
-        game.getStart(), game.getGoal()));
+        game.getStart(), game.getGoal(), game.getShortestPathLength()));
   }
 
   @Override
@@ -460,6 +482,10 @@ public class WikiLobby implements Lobby {
       }
     }
 
+    if (closed && game != null) {
+      // nobody is left to see it
+      game.cancelShortestPath();
+    }
     return closed;
   }
 
@@ -618,6 +644,21 @@ public class WikiLobby implements Lobby {
       assert entry.getValue().done();
     }
 
+    // each search over the cached links takes a full pass over them, so it
+    // runs on the shortest path threads rather than this one, and players are
+    // sent the paths once found
+    WikiDistanceOracle oracle = Main.getDistanceOracle();
+    if (oracle != null) {
+      WikiGame.inBackground(() -> {
+        shortestPaths =
+            oracle.shortestPaths(game.getStart(), game.getGoal(),
+                MAX_SHORTEST_PATHS);
+        numShortestPaths =
+            oracle.numShortestPaths(game.getStart(), game.getGoal());
+        return null;
+      }).addListener(this::shortestPathFound, MoreExecutors.directExecutor());
+    }
+
     Main.debugLog(String.format(
         "Lobby %s finished; \n\twinners: %s \n\tplayTime: %s\n\tendTime: %s",
         id, getWinners(), getPlayTime(), getEndTime()));
@@ -634,6 +675,47 @@ public class WikiLobby implements Lobby {
         started() ? (ended ? "ended" : "started") : "not started");
   }
 
+  /**
+   * Sends players the shortest paths if they were found only after the game
+   * ended; otherwise the shortest path goes with the end of the game.
+   */
+  private synchronized void shortestPathFound() {
+    if (ended && game.getShortestPath() != null) {
+      Command.sendShortestPath(this);
+    }
+  }
+
+  /**
+   * Never blocks.
+   *
+   * @return Up to MAX_SHORTEST_PATHS of the shortest paths from start to goal,
+   *         each as the pages along it, or none if not found (yet).
+   */
+  public List<List<WikiPage>> getShortestPaths() {
+    return shortestPaths;
+  }
+
+  /**
+   * Never blocks.
+   *
+   * @return The number of distinct shortest paths from start to goal, or 0 if
+   *         not found (yet).
+   */
+  public long getNumShortestPaths() {
+    return numShortestPaths;
+  }
+
+  /**
+   * Never blocks.
+   *
+   * @return The pages along a shortest path from start to goal, inclusive, or
+   *         an empty list if none has been found (yet).
+   */
+  public List<WikiPage> getShortestPath() {
+    List<WikiPage> path = game.getShortestPath();
+    return path == null ? ImmutableList.of() : path;
+  }
+
   /**
    * @return The game mode of this lobby.
    */
@@ -50,6 +50,7 @@ public enum Command {
    * OUTGOING Server Commands (see below for constructions).
    */
   END_GAME("end_game", CommandType.OUTGOING), //
+  SHORTEST_PATH("shortest_path", CommandType.OUTGOING), //
   BEGIN_GAME("begin_game", CommandType.OUTGOING), //
   ALL_PLAYERS("all_players", CommandType.OUTGOING), //
   ERROR("error", CommandType.OUTGOING), //
@@ -235,10 +236,23 @@ public enum Command {
 
   /**
    * @param lobby
-   *          The lobby to get players and winner from.
+   *          The lobby to get players, winner, and shortest path (if found
+   *          yet) from.
    */
   public static void sendEndGame(WikiLobby lobby) {
-    Command.END_GAME.sendToAll(lobby, lobby.getWinners());
+    Command.END_GAME.sendToAll(lobby, ImmutableMap.of("winners",
+        lobby.getWinners(), "shortestPath", lobby.getShortestPath()));
+  }
+
+  /**
+   * @param lobby
+   *          The lobby to get the shortest path (and any others known) from,
+   *          once found after the end of the game.
+   */
+  public static void sendShortestPath(WikiLobby lobby) {
+    Command.SHORTEST_PATH.sendToAll(lobby, ImmutableMap.of("shortestPath",
+        lobby.getShortestPath(), "shortestPaths", lobby.getShortestPaths(),
+        "numShortestPaths", lobby.getNumShortestPaths()));
   }
 
   /**
@@ -3,6 +3,8 @@ package edu.brown.cs.jmrs.wikispeedia.comms;
 import java.io.IOException;
 import java.util.NoSuchElementException;
 
+import org.jsoup.nodes.Element;
+
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.JsonObject;
 
@@ -242,10 +244,11 @@ public class WikiInterpreter implements CommandInterpreter {
     info.addProperty("href", page.url());
     info.addProperty("name", page.getName());
     info.addProperty("title", page.getTitle());
-    info.addProperty("blurb",
-        page.getFormattedBlurb(lobby.getContentFormatter()));
-    info.addProperty("text", lobby.getContentFormatter()
-        .stringFormat(page.linksMatching(lobby.getLinkFinder())));
+    // (formatted once for both; replacing links doesn't change the blurb)
+    Element text =
+        page.linksMatching(lobby.getLinkFinder(), lobby.getContentFormatter());
+    info.addProperty("blurb", WikiPage.getBlurbFrom(text));
+    info.addProperty("text", text.outerHtml());
     info.add("links",
         Main.GSON.toJsonTree(lobby.getLinkFinder().linkedPages(page)));
     return info;
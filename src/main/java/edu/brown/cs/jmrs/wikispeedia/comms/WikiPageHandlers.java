@@ -34,6 +34,7 @@ public class WikiPageHandlers implements SparkHandlers {
     Spark.get("/wiki/:name", new InnerContentHandler());
     Spark.get("/wiki/links/:name", new LinksHandler());
     Spark.get("/random", new GenerateHandler());
+    Spark.get("/cache/stats", new CacheStatsHandler());
 
     // TODO - Spark.get("/wiki/suggest/:page", new PageNameSuggestHandler());
   }
@@ -48,8 +49,8 @@ public class WikiPageHandlers implements SparkHandlers {
     @Override
     public String handle(Request req, Response res) {
       try {
-        return contentFormatter.stringFormat(
-            WikiPage.fromName(req.params(":name")).linksMatching(linkFinder));
+        return WikiPage.fromName(req.params(":name"))
+            .linksMatching(linkFinder, contentFormatter).outerHtml();
       } catch (IOException | IllegalArgumentException e) {
         e.printStackTrace();
         return SparkServer.reqError(e.getMessage());
@@ -76,6 +77,19 @@ public class WikiPageHandlers implements SparkHandlers {
     }
   }
 
+  /**
+   * Handler for getting the statistics of the page cache.
+   *
+   * @author mcisler
+   *
+   */
+  public static class CacheStatsHandler implements Route {
+    @Override
+    public String handle(Request req, Response res) {
+      return Main.GSON.toJson(Main.WIKI_PAGE_DOCS.stats());
+    }
+  }
+
   /**
    * Handler generating a random wikipage.
    *
@@ -48,6 +48,9 @@ serverConn.whenReadyToRecieve(() => {
 
 	// TODO: Get settings: game type and end page
 
+	// sent if the shortest path is only found after the game ended
+	serverConn.registerShortestPath(drawShortestPath);
+
 	if (docReady) {
 		console.log("REGISTERED");
 		serverConn.registerAllPlayers(playersCallback);
@@ -66,12 +69,34 @@ function settingsCallback(settings) {
 	console.log("SETTTINGS");
 	console.log(settings);
 	endPage = settings.goalPage.name;
+	if (settings.shortestPath) {
+		drawShortestPath(settings);
+	}
 }
 
 function settingsError(error) {
 	// TODO
 }
 
+// Draws the shortest path between the start and goal pages, if one was found,
+// and how many others there are, if known
+function drawShortestPath(paths) {
+	let path = paths.shortestPath;
+	if (path.length == 0) {
+		return;
+	}
+
+	let names = [];
+	for (let i = 0; i < path.length; i++) {
+		names.push(titleFromHref(path[i].name));
+	}
+	let others = "";
+	if (paths.numShortestPaths > 1) {
+		others = `, one of ${paths.numShortestPaths}`;
+	}
+	$("#shortest-path").html(`<i>Shortest path (${path.length - 1} clicks${others}): ${names.join(" &rarr; ")}</i>`);
+}
+
 // Updates the player to time map and redraws the results
 function playersCallback(players) {
 	recentPlayers = players;
@@ -195,6 +195,10 @@ const Command = {
     END_GAME : {
 		name: "end_game",
 		type: COMMAND_TYPE.OUTGOING,
+	},
+  SHORTEST_PATH : {
+		name: "shortest_path",
+		type: COMMAND_TYPE.OUTGOING,
 	}
 }
 
@@ -412,6 +416,10 @@ class ServerConn {
         this._registerOutgoing(Command.END_GAME, callback);
     }
 
+    registerShortestPath(callback) {
+        this._registerOutgoing(Command.SHORTEST_PATH, callback);
+    }
+
     registerError(callback) {
         this._registerOutgoing(Command.ERROR, callback);
     }
@@ -0,0 +1,267 @@
+package edu.brown.cs.jmrs.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests the memoizing Cache, including concurrent lookups and eviction.
+ *
+ * @author mcisler
+ *
+ */
+public class CacheTest {
+  private static final int THREADS = 8;
+  private static final int SIZE    = 200;
+
+  /**
+   * Test that values are only looked up once.
+   */
+  @Test
+  public void testMemoizes() {
+    AtomicInteger lookups = new AtomicInteger();
+    Cache<Integer, String> cache = new Cache<>(key -> {
+      lookups.incrementAndGet();
+      return key.toString();
+    });
+
+    assertEquals("1", cache.get(1));
+    assertEquals("1", cache.get(1));
+    assertEquals("2", cache.get(2));
+    assertEquals(2, lookups.get());
+
+    assertNull(cache.put(3, "three"));
+    assertEquals("three", cache.put(3, "other"));
+    assertEquals("three", cache.get(3));
+    assertEquals(2, lookups.get());
+  }
+
+  /**
+   * Test that concurrent misses on the same key share one lookup.
+   *
+   * @throws Exception
+   *           If a lookup fails.
+   */
+  @Test
+  public void testSingleFlight() throws Exception {
+    AtomicInteger lookups = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    Cache<Integer, List<Integer>> cache = new Cache<>(key -> {
+      lookups.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return new ArrayList<>();
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch started = new CountDownLatch(THREADS);
+      List<Future<List<Integer>>> results = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        results.add(executor.submit(() -> {
+          started.countDown();
+          return cache.get(1);
+        }));
+      }
+      started.await();
+      Thread.sleep(50); // let them all reach the cache
+      release.countDown();
+
+      List<Integer> first = results.get(0).get(1, TimeUnit.MINUTES);
+      for (Future<List<Integer>> result : results) {
+        assertSame(first, result.get(1, TimeUnit.MINUTES));
+      }
+      assertEquals(1, lookups.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Test that a failed lookup is thrown but not cached.
+   */
+  @Test
+  public void testFailureNotCached() {
+    AtomicInteger lookups = new AtomicInteger();
+    Cache<Integer, String> cache = new Cache<>(key -> {
+      if (lookups.incrementAndGet() == 1) {
+        throw new IllegalStateException("first lookup fails");
+      }
+      return key.toString();
+    });
+
+    try {
+      cache.get(1);
+      throw new AssertionError("Lookup did not fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertEquals(0, cache.size());
+    assertEquals("1", cache.get(1));
+    assertEquals(2, lookups.get());
+  }
+
+  /**
+   * Test that the least recently used values are evicted past maximum size.
+   */
+  @Test
+  public void testLruEviction() {
+    AtomicInteger lookups = new AtomicInteger();
+    Cache<Integer, String> cache = new Cache<>(key -> {
+      lookups.incrementAndGet();
+      return key.toString();
+    }, 2);
+
+    cache.get(1);
+    cache.get(2);
+    cache.get(1); // 2 is now least recently used
+    cache.get(3);
+    assertEquals(2, cache.size());
+    assertEquals(3, lookups.get());
+
+    cache.get(1);
+    cache.get(3);
+    assertEquals(3, lookups.get());
+    cache.get(2);
+    assertEquals(4, lookups.get());
+    assertEquals(2, cache.size());
+  }
+
+  /**
+   * Test that hits past the buffer's capacity, from many threads, still leave
+   * the cache consistent and the most used key held.
+   */
+  @Test
+  public void testBufferedHits() throws Exception {
+    Cache<Integer, String> cache = new Cache<>(key -> key.toString(), 2);
+    cache.get(1);
+    cache.get(2);
+
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> readers = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      readers.add(pool.submit(() -> {
+        for (int j = 0; j < 10000; j++) {
+          cache.get(2);
+        }
+      }));
+    }
+    for (Future<?> reader : readers) {
+      reader.get();
+    }
+    pool.shutdown();
+
+    cache.get(3); // 1 is least recently used
+    assertEquals(2, cache.size());
+    assertEquals(2, cache.weight());
+    assertEquals(40000, cache.stats().hitCount());
+    cache.get(2);
+    assertEquals(3, cache.stats().missCount());
+  }
+
+  /**
+   * Test that entries are evicted by weight, and the stats that result.
+   */
+  @Test
+  public void testWeightedEviction() {
+    Cache<String, String> cache =
+        new Cache<>(key -> key, new LruPolicy<>(10), (k, v) -> v.length());
+
+    cache.get("aaaa");
+    cache.get("bbbb");
+    assertEquals(8, cache.weight());
+    cache.get("cccccc"); // evicts a
+    assertEquals(2, cache.size());
+    assertEquals(10, cache.weight());
+    cache.get("cccccc");
+    cache.get("ddddddddddd"); // too heavy to keep at all, evicts everything
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.weight());
+
+    CacheStats stats = cache.stats();
+    assertEquals(1, stats.hitCount());
+    assertEquals(4, stats.missCount());
+    assertEquals(4, stats.loadSuccessCount());
+    assertEquals(4, stats.evictionCount());
+  }
+
+  /**
+   * Test that a frequently used key survives a scan of keys used once under
+   * TinyLFU, where it does not under LRU.
+   */
+  @Test
+  public void testScanResistance() {
+    Cache<Integer, Integer> lru =
+        new Cache<>(key -> key, new LruPolicy<>(SIZE), (k, v) -> 1);
+    Cache<Integer, Integer> tinyLfu =
+        new Cache<>(key -> key, new TinyLfuPolicy<>(SIZE, SIZE), (k, v) -> 1);
+
+    for (Cache<Integer, Integer> cache : ImmutableList.of(lru, tinyLfu)) {
+      for (int i = 0; i < SIZE; i++) {
+        for (int repeat = 0; repeat < 3; repeat++) {
+          cache.get(i); // popular keys
+        }
+      }
+      for (int i = SIZE; i < SIZE * 10; i++) {
+        cache.get(i); // one-off scan
+      }
+      assertTrue(cache.weight() <= SIZE);
+    }
+
+    long lruHits = lru.stats().hitCount();
+    long tinyLfuHits = tinyLfu.stats().hitCount();
+    for (int i = 0; i < SIZE; i++) {
+      lru.get(i);
+      tinyLfu.get(i);
+    }
+    assertEquals(lruHits, lru.stats().hitCount());
+    assertTrue(tinyLfu.stats().hitCount() - tinyLfuHits > SIZE * 9 / 10);
+  }
+
+  /**
+   * Test that a key rejected by TinyLFU evicts nothing from main, even when it
+   * is more popular than some of what it would have displaced.
+   */
+  @Test
+  public void testTinyLfuRejectionEvictsNothing() {
+    // a window of 1, and a main region of 99
+    TinyLfuPolicy<String> policy = new TinyLfuPolicy<>(100, 16);
+    assertTrue(policy.recordInsertion("cold", 49).isEmpty());
+    assertTrue(policy.recordInsertion("hot", 50).isEmpty());
+    for (int i = 0; i < 5; i++) {
+      policy.recordAccess("hot");
+    }
+
+    // more popular than cold, but not hot, and needs the room of both
+    policy.recordAccess("new");
+    policy.recordAccess("new");
+    assertEquals(ImmutableList.of("new"), policy.recordInsertion("new", 50));
+    assertEquals(99, policy.weight());
+
+    // once more popular than both, it displaces both
+    for (int i = 0; i < 6; i++) {
+      policy.recordAccess("newer");
+    }
+    assertEquals(ImmutableList.of("cold", "hot"),
+        policy.recordInsertion("newer", 50));
+    assertEquals(50, policy.weight());
+  }
+}
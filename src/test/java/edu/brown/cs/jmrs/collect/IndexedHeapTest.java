@@ -0,0 +1,116 @@
+package edu.brown.cs.jmrs.collect;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.junit.Test;
+
+/**
+ * Tests the indexed binary heap.
+ *
+ * @author mcisler
+ *
+ */
+public class IndexedHeapTest {
+
+  /**
+   * Test basic ordering.
+   */
+  @Test
+  public void testPollOrder() {
+    IndexedHeap<String> heap = new IndexedHeap<>();
+    assertTrue(heap.isEmpty());
+    assertNull(heap.poll());
+
+    heap.offer("c", 3);
+    heap.offer("a", 1);
+    heap.offer("d", 4);
+    heap.offer("b", 2);
+    assertEquals(4, heap.size());
+    assertEquals("a", heap.peek());
+    assertEquals(1, heap.peekPriority(), 0);
+
+    assertEquals("a", heap.poll());
+    assertEquals("b", heap.poll());
+    assertEquals("c", heap.poll());
+    assertEquals("d", heap.poll());
+    assertTrue(heap.isEmpty());
+  }
+
+  /**
+   * Test that offer only ever lowers priorities.
+   */
+  @Test
+  public void testOffer() {
+    IndexedHeap<String> heap = new IndexedHeap<>();
+    assertTrue(heap.offer("a", 5));
+    assertTrue(heap.offer("b", 3));
+    assertFalse(heap.offer("a", 10));
+    assertEquals(5, heap.priority("a"), 0);
+    assertTrue(heap.offer("a", 1));
+    assertEquals(1, heap.priority("a"), 0);
+    assertEquals(2, heap.size());
+    assertEquals("a", heap.poll());
+    assertFalse(heap.contains("a"));
+    assertTrue(heap.contains("b"));
+  }
+
+  /**
+   * Test decreaseKey on a missing element.
+   */
+  @Test(expected = NoSuchElementException.class)
+  public void testDecreaseKeyMissing() {
+    IndexedHeap<String> heap = new IndexedHeap<>();
+    heap.offer("a", 5);
+    heap.decreaseKey("b", 1);
+  }
+
+  /**
+   * Test decreaseKey with a larger priority.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testDecreaseKeyIncrease() {
+    IndexedHeap<String> heap = new IndexedHeap<>();
+    heap.offer("a", 5);
+    heap.decreaseKey("a", 6);
+  }
+
+  /**
+   * Test against a sort with many random decreases.
+   */
+  @Test
+  public void testRandom() {
+    int size = 1000;
+    IndexedHeap<Integer> heap = new IndexedHeap<>();
+    double[] priorities = new double[size];
+    for (int i = 0; i < size; i++) {
+      priorities[i] = Math.random() * 100;
+      heap.offer(i, priorities[i]);
+    }
+    for (int i = 0; i < size * 2; i++) {
+      int elm = (int) (Math.random() * size);
+      priorities[elm] -= Math.random() * 10;
+      heap.decreaseKey(elm, priorities[elm]);
+    }
+
+    List<Double> expected = new ArrayList<>(size);
+    for (double priority : priorities) {
+      expected.add(priority);
+    }
+    Collections.sort(expected);
+
+    for (int i = 0; i < size; i++) {
+      assertEquals(expected.get(i), heap.peekPriority(), 0);
+      int elm = heap.poll();
+      assertEquals(priorities[elm], expected.get(i), 0);
+    }
+    assertTrue(heap.isEmpty());
+  }
+}
@@ -6,9 +6,12 @@ import java.util.List;
 
 import com.google.common.collect.ImmutableList;
 
+import edu.brown.cs.jmrs.collect.graph.BasicNode;
+import edu.brown.cs.jmrs.collect.graph.CsrGraph;
+
 /**
  * Static class to contain testing helpers common to recommender and autocorrect
- * functionality.
+ * functionality, and to the graph tests.
  *
  * @author mcisler
  *
@@ -79,4 +82,67 @@ public final class TestingHelpers {
     }
     return missingElms1.size() == 0 && missingElms2.size() == 0;
   }
+
+  /**
+   * @param arr
+   *          The array to search.
+   * @param val
+   *          The value to search for.
+   * @return Whether arr contains val.
+   */
+  public static boolean contains(int[] arr, int val) {
+    for (int i : arr) {
+      if (i == val) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gives list of generated nodes with random connections, all of value 1.
+   *
+   * @param size
+   *          The number of nodes.
+   * @param connectedness
+   *          The chance of an edge from each node to each other node.
+   * @return The nodes.
+   */
+  public static List<BasicNode<String, Double>> generateUniformGraph(int size,
+      double connectedness) {
+    List<BasicNode<String, Double>> nodes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      nodes.add(new BasicNode<String, Double>("node " + i));
+    }
+
+    for (BasicNode<String, Double> node : nodes) {
+      for (BasicNode<String, Double> neighbor : nodes) {
+        if (node != neighbor && Math.random() < connectedness) {
+          node.addNeighbor(neighbor, 1.0, true);
+        }
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Gives a graph with random connections.
+   *
+   * @param size
+   *          The number of nodes.
+   * @param connectedness
+   *          The chance of an edge from each node to each other node.
+   * @return The graph.
+   */
+  public static CsrGraph generateCsrGraph(int size, double connectedness) {
+    CsrGraph.Builder builder = new CsrGraph.Builder().numNodes(size);
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++) {
+        if (i != j && Math.random() < connectedness) {
+          builder.addEdge(i, j);
+        }
+      }
+    }
+    return builder.build();
+  }
 }
@@ -0,0 +1,145 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.TestingHelpers;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * Tests the bidirectional Dijkstra implementation of a path finder.
+ *
+ * @author mcisler
+ *
+ */
+public class BidirectionalDijkstraPathFinderTest {
+  private final EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> edgeFinder =
+      new BasicEdgeFinder<String, Double>();
+  private final PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> oracle =
+      new DirectedDijkstraPathFinder<>(edgeFinder);
+  private static final int GRAPH_SIZE = 40;
+
+  /**
+   * Test on a super simple graphs (nodes).
+   */
+  @Test
+  public void testSimpleGraph() {
+    BasicNode<String, Double> n1 = new BasicNode<>("cat");
+    BasicNode<String, Double> n2 = new BasicNode<>("bird");
+    BasicNode<String, Double> n3 = new BasicNode<>("dog");
+    BasicNode<String, Double> n4 = new BasicNode<>("free bird");
+    BasicNode<String, Double> n5 = new BasicNode<>("fly");
+    n1.addNeighbor(n2, 1.0, true).addNeighbor(n4, 5.0, true);
+    n2.addNeighbor(n3, 4.0, true);
+    n3.addNeighbor(n1, 2.0, true).addNeighbor(n2, 10.0, true);
+    n4.addNeighbor(n1, 5.0, true).addNeighbor(n1, 100.0, true);
+    n5.addNeighbor(n2, 5.0, true);
+
+    PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new BidirectionalDijkstraPathFinder<>(edgeFinder,
+            new IncomingEdgeFinder<>(edgeFinder,
+                ImmutableList.of(n1, n2, n3, n4, n5)));
+
+    // unreachable
+    assertEquals(0, pf.shortestPath(n1, n5).size());
+    assertEquals(0, pf.shortestPath(n4, n5).size());
+
+    assertTrue(TestingHelpers.containsSameElements(
+        ImmutableList.of(new BasicEdge<String, Double>(1.0, n1, n2, true)),
+        pf.shortestPath(n1, n2)));
+    assertTrue(TestingHelpers.containsSameElements(
+        ImmutableList.of(new BasicEdge<String, Double>(5.0, n4, n1, true)),
+        pf.shortestPath(n4, n1))); // shorter path of two
+    assertEquals(ImmutableList.of(
+        new BasicEdge<String, Double>(5.0, n4, n1, true),
+        new BasicEdge<String, Double>(1.0, n1, n2, true),
+        new BasicEdge<String, Double>(4.0, n2, n3, true)),
+        pf.shortestPath(n4, n3));
+  }
+
+  /**
+   * Test shortest path distances using oracle on fully connected graph.
+   */
+  @Test
+  public void testShortestFullyConnected() {
+    testNodes(generateGraph(GRAPH_SIZE, 1));
+  }
+
+  /**
+   * Test shortest path distances using oracle on sparsely connected graph.
+   */
+  @Test
+  public void testShortestSparselyConnected() {
+    testNodes(generateGraph(GRAPH_SIZE, 0.1));
+  }
+
+  /**
+   * Test shortest path distances using oracle on very sparsely connected
+   * graph, where many pairs have no path.
+   */
+  @Test
+  public void testShortestVerySparselyConnected() {
+    testNodes(generateGraph(GRAPH_SIZE, 0.03));
+  }
+
+  private void testNodes(List<BasicNode<String, Double>> nodes) {
+    PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new BidirectionalDijkstraPathFinder<>(edgeFinder,
+            new IncomingEdgeFinder<>(edgeFinder, nodes));
+
+    for (BasicNode<String, Double> start : nodes) {
+      for (BasicNode<String, Double> end : nodes) {
+        if (start != end) {
+          List<BasicEdge<String, Double>> path = pf.shortestPath(start, end);
+          assertEquals(pathLength(oracle.shortestPath(start, end)),
+              pathLength(path), 1e-9);
+
+          // make sure it's actually a path from start to end
+          if (!path.isEmpty()) {
+            assertEquals(start, path.get(0).getSource());
+            assertEquals(end, path.get(path.size() - 1).getDestination());
+            for (int i = 1; i < path.size(); i++) {
+              assertEquals(path.get(i - 1).getDestination(),
+                  path.get(i).getSource());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static double pathLength(List<BasicEdge<String, Double>> path) {
+    double length = 0;
+    for (BasicEdge<String, Double> edge : path) {
+      length += edge.getValue();
+    }
+    return length;
+  }
+
+  /**
+   * Gives list of generated nodes with random connections and weights.
+   */
+  private List<BasicNode<String, Double>> generateGraph(int size,
+      double connectedness) {
+    List<BasicNode<String, Double>> nodes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      nodes.add(new BasicNode<String, Double>("node " + i));
+    }
+
+    for (BasicNode<String, Double> node : nodes) {
+      for (BasicNode<String, Double> neighbor : nodes) {
+        if (node != neighbor && Math.random() < connectedness) {
+          node.addNeighbor(neighbor, Math.random() * 10, true);
+        }
+      }
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,183 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.TestingHelpers;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * Tests the breadth first implementation of a path finder, both over nodes and
+ * over a CsrGraph.
+ *
+ * @author mcisler
+ *
+ */
+public class BreadthFirstPathFinderTest {
+  private final EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> edgeFinder =
+      new BasicEdgeFinder<String, Double>();
+  private final PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> oracle =
+      new DirectedDijkstraPathFinder<>(edgeFinder);
+  private static final int GRAPH_SIZE = 40;
+
+  /**
+   * Test on a super simple graph, where the fewest edges is not the least
+   * total value.
+   */
+  @Test
+  public void testSimpleGraph() {
+    BasicNode<String, Double> n1 = new BasicNode<>("cat");
+    BasicNode<String, Double> n2 = new BasicNode<>("bird");
+    BasicNode<String, Double> n3 = new BasicNode<>("dog");
+    BasicNode<String, Double> n4 = new BasicNode<>("fly");
+    n1.addNeighbor(n2, 1.0, true).addNeighbor(n3, 10.0, true);
+    n2.addNeighbor(n3, 1.0, true);
+    n3.addNeighbor(n1, 1.0, true);
+    n4.addNeighbor(n1, 1.0, true);
+
+    PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new BreadthFirstPathFinder<>(edgeFinder);
+
+    // unreachable
+    assertEquals(0, pf.shortestPath(n1, n4).size());
+
+    assertEquals(
+        ImmutableList.of(new BasicEdge<String, Double>(10.0, n1, n3, true)),
+        pf.shortestPath(n1, n3));
+    assertEquals(ImmutableList.of(
+        new BasicEdge<String, Double>(1.0, n4, n1, true),
+        new BasicEdge<String, Double>(1.0, n1, n2, true)),
+        pf.shortestPath(n4, n2));
+  }
+
+  /**
+   * Test that forEdgeFinder() only chooses a breadth first search for uniform
+   * edge values.
+   */
+  @Test
+  public void testForEdgeFinder() {
+    assertTrue(PathFinder
+        .forEdgeFinder(edgeFinder) instanceof DirectedDijkstraPathFinder);
+    assertTrue(PathFinder.forEdgeFinder(new UniformEdgeFinder(
+        edgeFinder)) instanceof BreadthFirstPathFinder);
+  }
+
+  /**
+   * Test shortest path lengths using oracle on sparsely connected graph.
+   */
+  @Test
+  public void testShortestSparselyConnected() {
+    testNodes(TestingHelpers.generateUniformGraph(GRAPH_SIZE, 0.1));
+  }
+
+  /**
+   * Test shortest path lengths using oracle on very sparsely connected graph,
+   * where many pairs have no path.
+   */
+  @Test
+  public void testShortestVerySparselyConnected() {
+    testNodes(TestingHelpers.generateUniformGraph(GRAPH_SIZE, 0.03));
+  }
+
+  private void testNodes(List<BasicNode<String, Double>> nodes) {
+    PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new BreadthFirstPathFinder<>(edgeFinder);
+
+    // the same graph by index
+    CsrGraph.Builder builder = new CsrGraph.Builder().numNodes(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      for (BasicEdge<String, Double> edge : edgeFinder.edges(nodes.get(i))) {
+        builder.addEdge(i, nodes.indexOf(edge.getDestination()));
+      }
+    }
+    CsrGraph graph = builder.build();
+
+    for (int s = 0; s < nodes.size(); s++) {
+      for (int e = 0; e < nodes.size(); e++) {
+        if (s != e) {
+          BasicNode<String, Double> start = nodes.get(s);
+          BasicNode<String, Double> end = nodes.get(e);
+          List<BasicEdge<String, Double>> path = pf.shortestPath(start, end);
+          assertEquals(oracle.shortestPath(start, end).size(), path.size());
+
+          // make sure it's actually a path from start to end
+          int[] ids = BreadthFirstPathFinder.shortestPath(graph, s, e);
+          if (path.isEmpty()) {
+            assertEquals(0, ids.length);
+          } else {
+            assertEquals(start, path.get(0).getSource());
+            assertEquals(end, path.get(path.size() - 1).getDestination());
+            for (int i = 1; i < path.size(); i++) {
+              assertEquals(path.get(i - 1).getDestination(),
+                  path.get(i).getSource());
+            }
+
+            assertEquals(path.size() + 1, ids.length);
+            assertEquals(s, ids[0]);
+            assertEquals(e, ids[ids.length - 1]);
+            for (int i = 1; i < ids.length; i++) {
+              assertTrue(TestingHelpers.contains(
+                  graph.neighbors(ids[i - 1]), ids[i]));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test paths over a CsrGraph directly.
+   */
+  @Test
+  public void testCsrGraph() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(0, 1).addEdge(1, 2).addEdge(2, 3)
+            .addEdge(0, 2).addEdge(3, 0).numNodes(5).build();
+
+    assertArrayEquals(new int[] {0}, BreadthFirstPathFinder.shortestPath(graph,
+        0, 0));
+    assertArrayEquals(new int[] {0, 2, 3},
+        BreadthFirstPathFinder.shortestPath(graph, 0, 3));
+    assertArrayEquals(new int[] {3, 0, 1},
+        BreadthFirstPathFinder.shortestPath(graph, 3, 1));
+    assertArrayEquals(new int[0],
+        BreadthFirstPathFinder.shortestPath(graph, 0, 4));
+  }
+
+  /**
+   * An edge finder reporting uniform edge values.
+   */
+  private static class UniformEdgeFinder implements
+      EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> {
+    private final EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> inner;
+
+    UniformEdgeFinder(
+        EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> inner) {
+      this.inner = inner;
+    }
+
+    @Override
+    public Set<BasicEdge<String, Double>> edges(
+        BasicNode<String, Double> node) {
+      return inner.edges(node);
+    }
+
+    @Override
+    public Number edgeValue(BasicEdge<String, Double> edge) {
+      return 1;
+    }
+
+    @Override
+    public boolean hasUniformEdgeValues() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the compressed sparse row graph.
+ *
+ * @author mcisler
+ *
+ */
+public class CsrGraphTest {
+
+  /**
+   * Test a graph with no edges.
+   */
+  @Test
+  public void testEmpty() {
+    CsrGraph graph = new CsrGraph.Builder().build();
+    assertEquals(0, graph.numNodes());
+    assertEquals(0, graph.numEdges());
+    assertEquals(0, graph.reverse().numNodes());
+
+    graph = new CsrGraph.Builder().numNodes(3).build();
+    assertEquals(3, graph.numNodes());
+    assertEquals(0, graph.outDegree(2));
+  }
+
+  /**
+   * Test edges added out of order are grouped by source.
+   */
+  @Test
+  public void testEdges() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(2, 0).addEdge(0, 1).addEdge(2, 1)
+            .addEdge(0, 2).addEdge(1, 1).build();
+
+    assertEquals(3, graph.numNodes());
+    assertEquals(5, graph.numEdges());
+    assertArrayEquals(new int[] {1, 2}, sorted(graph.neighbors(0)));
+    assertArrayEquals(new int[] {1}, sorted(graph.neighbors(1)));
+    assertArrayEquals(new int[] {0, 1}, sorted(graph.neighbors(2)));
+
+    int count = 0;
+    for (int e = graph.edgesStart(2); e < graph.edgesEnd(2); e++) {
+      count++;
+    }
+    assertEquals(graph.outDegree(2), count);
+  }
+
+  /**
+   * Test reversing a graph, including nodes with no edges.
+   */
+  @Test
+  public void testReverse() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(2, 0).addEdge(0, 1).addEdge(2, 1)
+            .addEdge(0, 2).numNodes(5).build();
+    CsrGraph reverse = graph.reverse();
+
+    assertEquals(5, reverse.numNodes());
+    assertEquals(4, reverse.numEdges());
+    assertArrayEquals(new int[] {2}, sorted(reverse.neighbors(0)));
+    assertArrayEquals(new int[] {0, 2}, sorted(reverse.neighbors(1)));
+    assertArrayEquals(new int[] {0}, sorted(reverse.neighbors(2)));
+    assertEquals(0, reverse.outDegree(4));
+  }
+
+  /**
+   * Test a graph large enough to grow the builder.
+   */
+  @Test
+  public void testLarge() {
+    int size = 5000;
+    CsrGraph.Builder builder = new CsrGraph.Builder();
+    for (int i = 0; i < size; i++) {
+      builder.addEdge(i, (i + 1) % size).addEdge(i, (i + 7) % size);
+    }
+    CsrGraph graph = builder.build();
+
+    assertEquals(size, graph.numNodes());
+    assertEquals(2 * size, graph.numEdges());
+    CsrGraph reverse = graph.reverse();
+    for (int i = 0; i < size; i++) {
+      assertEquals(2, graph.outDegree(i));
+      assertEquals(2, reverse.outDegree(i));
+    }
+  }
+
+  private static int[] sorted(int[] arr) {
+    Arrays.sort(arr);
+    return arr;
+  }
+}
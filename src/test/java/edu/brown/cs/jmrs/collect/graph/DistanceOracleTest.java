@@ -0,0 +1,84 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.brown.cs.jmrs.collect.TestingHelpers;
+
+/**
+ * Tests the distance oracle against breadth first search.
+ *
+ * @author mcisler
+ *
+ */
+public class DistanceOracleTest {
+  private static final int GRAPH_SIZE = 60;
+
+  /**
+   * Test on a super simple graph.
+   */
+  @Test
+  public void testSimpleGraph() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(0, 1).addEdge(1, 2).addEdge(2, 3)
+            .addEdge(0, 2).addEdge(3, 0).numNodes(5).build();
+    DistanceOracle oracle = new DistanceOracle(graph, graph.reverse());
+
+    assertEquals(5, oracle.numNodes());
+    assertEquals(0, oracle.distance(1, 1));
+    assertEquals(2, oracle.distance(0, 3));
+    assertEquals(3, oracle.distance(1, 0));
+    assertEquals(-1, oracle.distance(0, 4));
+    assertEquals(-1, oracle.distance(4, 0));
+
+    assertArrayEquals(new int[] {1}, oracle.path(1, 1));
+    assertArrayEquals(new int[] {0, 2, 3}, oracle.path(0, 3));
+    assertArrayEquals(new int[] {3, 0, 1}, oracle.path(3, 1));
+    assertArrayEquals(new int[0], oracle.path(0, 4));
+  }
+
+  /**
+   * Test on an empty graph.
+   */
+  @Test
+  public void testEmpty() {
+    CsrGraph graph = new CsrGraph.Builder().build();
+    DistanceOracle oracle = new DistanceOracle(graph, graph.reverse());
+    assertEquals(0, oracle.numNodes());
+    assertEquals(0, oracle.numLabelEntries());
+  }
+
+  /**
+   * Test distances and paths using breadth first search as oracle on randomly
+   * connected graphs.
+   */
+  @Test
+  public void testRandomGraphs() {
+    for (double connectedness : new double[] {0.02, 0.05, 0.2}) {
+      CsrGraph graph =
+          TestingHelpers.generateCsrGraph(GRAPH_SIZE, connectedness);
+      DistanceOracle oracle = new DistanceOracle(graph, graph.reverse());
+
+      for (int s = 0; s < GRAPH_SIZE; s++) {
+        int[] dists = BreadthFirstPathFinder.distances(graph, s);
+        for (int e = 0; e < GRAPH_SIZE; e++) {
+          assertEquals(dists[e], oracle.distance(s, e));
+
+          int[] path = oracle.path(s, e);
+          assertEquals(dists[e] + 1, path.length);
+          if (path.length > 0) {
+            assertEquals(s, path[0]);
+            assertEquals(e, path[path.length - 1]);
+            for (int i = 1; i < path.length; i++) {
+              assertTrue(TestingHelpers.contains(
+                  graph.neighbors(path[i - 1]), path[i]));
+            }
+          }
+        }
+      }
+    }
+  }
+}
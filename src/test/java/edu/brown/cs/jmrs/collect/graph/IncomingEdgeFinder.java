@@ -0,0 +1,54 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.Edge;
+import edu.brown.cs.jmrs.collect.graph.Graph.Node;
+
+/**
+ * A testing EdgeFinder which finds the incoming edges of nodes in a known
+ * graph, by inverting another EdgeFinder over all of its nodes.
+ *
+ * @author mcisler
+ *
+ * @param <N>
+ *          The particular node implementation.
+ * @param <E>
+ *          The particular edge implementation.
+ */
+public class IncomingEdgeFinder<N extends Node<N, E>, E extends Edge<N, E>>
+    implements EdgeFinder<N, E> {
+  private final EdgeFinder<N, E> forward;
+  private final Map<N, Set<E>>   incoming;
+
+  /**
+   * @param forward
+   *          The EdgeFinder of outgoing edges to invert.
+   * @param nodes
+   *          Every node in the graph.
+   */
+  public IncomingEdgeFinder(EdgeFinder<N, E> forward, Collection<N> nodes) {
+    this.forward = forward;
+    this.incoming = new HashMap<>();
+    for (N node : nodes) {
+      for (E edge : forward.edges(node)) {
+        incoming.computeIfAbsent(edge.getDestination(), n -> new HashSet<>())
+            .add(edge);
+      }
+    }
+  }
+
+  @Override
+  public Set<E> edges(N node) {
+    return incoming.getOrDefault(node, new HashSet<>());
+  }
+
+  @Override
+  public Number edgeValue(E edge) {
+    return forward.edgeValue(edge);
+  }
+}
@@ -0,0 +1,159 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.brown.cs.jmrs.collect.TestingHelpers;
+
+/**
+ * Tests the k shortest paths and all shortest paths DAG against brute force
+ * enumeration of all simple paths.
+ *
+ * @author mcisler
+ *
+ */
+public class KShortestPathsTest {
+  private static final int GRAPH_SIZE = 9;
+  private static final int K          = 6;
+
+  /**
+   * Test on a super simple graph with two shortest paths.
+   */
+  @Test
+  public void testSimpleGraph() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(0, 1).addEdge(0, 2).addEdge(1, 3)
+            .addEdge(2, 3).addEdge(3, 4).addEdge(0, 4).addEdge(1, 2)
+            .numNodes(6).build();
+    CsrGraph reverse = graph.reverse();
+
+    List<int[]> paths = new KShortestPaths(graph, reverse, 3).find(0, 10);
+    assertEquals(3, paths.size());
+    assertEquals(3, paths.get(0).length);
+    assertEquals(3, paths.get(1).length);
+    assertArrayEquals(new int[] {0, 1, 2, 3}, paths.get(2));
+
+    assertEquals(0, new KShortestPaths(graph, reverse, 5).find(0, 10).size());
+    assertEquals(1, new KShortestPaths(graph, reverse, 0).find(0, 10).size());
+
+    ShortestPathDag dag = ShortestPathDag.between(graph, reverse, 0, 3);
+    assertEquals(2, dag.distance());
+    assertEquals(2, dag.countPaths());
+    assertArrayEquals(new int[] {0, 1, 2, 3}, dag.nodes());
+    assertTrue(dag.contains(1, 3));
+    assertFalse(dag.contains(1, 2));
+    assertFalse(dag.contains(4));
+    assertEquals(1, dag.paths(1).size());
+
+    ShortestPathDag none = ShortestPathDag.between(graph, reverse, 4, 0);
+    assertEquals(-1, none.distance());
+    assertEquals(0, none.countPaths());
+    assertEquals(0, none.paths(10).size());
+  }
+
+  /**
+   * Test against brute force on randomly connected graphs.
+   */
+  @Test
+  public void testRandomGraphs() {
+    for (double connectedness : new double[] {0.15, 0.3, 0.5}) {
+      CsrGraph graph =
+          TestingHelpers.generateCsrGraph(GRAPH_SIZE, connectedness);
+      CsrGraph reverse = graph.reverse();
+
+      for (int e = 0; e < GRAPH_SIZE; e++) {
+        KShortestPaths kShortest = new KShortestPaths(graph, reverse, e);
+        for (int s = 0; s < GRAPH_SIZE; s++) {
+          List<int[]> all = allSimplePaths(graph, s, e);
+          all.sort((a, b) -> Integer.compare(a.length, b.length));
+
+          // k shortest
+          List<int[]> paths = kShortest.find(s, K);
+          assertEquals(Math.min(K, all.size()), paths.size());
+          Set<List<Integer>> distinct = new HashSet<>();
+          for (int i = 0; i < paths.size(); i++) {
+            assertEquals(all.get(i).length, paths.get(i).length);
+            assertTrue(isSimplePath(graph, paths.get(i), s, e));
+            assertTrue(distinct.add(asList(paths.get(i))));
+          }
+
+          // all shortest
+          ShortestPathDag dag = ShortestPathDag.between(graph, reverse, s, e);
+          int shortest = all.isEmpty() ? 0 : all.get(0).length;
+          Set<List<Integer>> expected = new HashSet<>();
+          for (int[] path : all) {
+            if (path.length == shortest) {
+              expected.add(asList(path));
+            }
+          }
+          assertEquals(expected.size(), dag.countPaths());
+          assertEquals(all.isEmpty() ? -1 : shortest - 1, dag.distance());
+
+          Set<List<Integer>> enumerated = new HashSet<>();
+          for (int[] path : dag.paths(Integer.MAX_VALUE)) {
+            enumerated.add(asList(path));
+          }
+          assertEquals(expected, enumerated);
+        }
+      }
+    }
+  }
+
+  private static List<Integer> asList(int[] path) {
+    List<Integer> list = new ArrayList<>(path.length);
+    for (int node : path) {
+      list.add(node);
+    }
+    return list;
+  }
+
+  private static boolean isSimplePath(CsrGraph graph, int[] path, int start,
+      int end) {
+    Set<Integer> nodes = new HashSet<>();
+    for (int node : path) {
+      if (!nodes.add(node)) {
+        return false;
+      }
+    }
+    for (int i = 1; i < path.length; i++) {
+      int next = path[i];
+      if (Arrays.stream(graph.neighbors(path[i - 1])).noneMatch(n -> n == next)) {
+        return false;
+      }
+    }
+    return path[0] == start && path[path.length - 1] == end;
+  }
+
+  private static List<int[]> allSimplePaths(CsrGraph graph, int start,
+      int end) {
+    List<int[]> paths = new ArrayList<>();
+    addSimplePaths(graph, new ArrayList<>(Arrays.asList(start)), end, paths);
+    return paths;
+  }
+
+  private static void addSimplePaths(CsrGraph graph, List<Integer> path,
+      int end, List<int[]> paths) {
+    int cur = path.get(path.size() - 1);
+    if (cur == end) {
+      paths.add(path.stream().mapToInt(Integer::intValue).toArray());
+      return;
+    }
+    for (int next : graph.neighbors(cur)) {
+      if (!path.contains(next)) {
+        path.add(next);
+        addSimplePaths(graph, path, end, paths);
+        path.remove(path.size() - 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * Tests landmark selection and the bounds they give.
+ *
+ * @author mcisler
+ *
+ */
+public class LandmarksTest {
+  private final EdgeFinder<BasicNode<Integer, Double>, BasicEdge<Integer, Double>> edgeFinder =
+      new BasicEdgeFinder<Integer, Double>();
+  private final PathFinder<BasicNode<Integer, Double>, BasicEdge<Integer, Double>> oracle =
+      new BreadthFirstPathFinder<>(edgeFinder);
+  private static final int GRAPH_SIZE = 40;
+  private static final int NUM_LANDMARKS = 4;
+
+  /**
+   * Test breadth first distances over a CsrGraph.
+   */
+  @Test
+  public void testDistances() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(0, 1).addEdge(1, 2).addEdge(0, 2)
+            .addEdge(2, 3).numNodes(5).build();
+    assertArrayEquals(new int[] {0, 1, 1, 2, -1},
+        BreadthFirstPathFinder.distances(graph, 0));
+    assertArrayEquals(new int[] {-1, -1, -1, 0, -1},
+        BreadthFirstPathFinder.distances(graph, 3));
+  }
+
+  /**
+   * Test that the highest degree nodes are chosen.
+   */
+  @Test
+  public void testOfHubs() {
+    CsrGraph graph =
+        new CsrGraph.Builder().addEdge(0, 1).addEdge(2, 1).addEdge(3, 1)
+            .addEdge(1, 3).addEdge(3, 0).numNodes(6).build();
+    Landmarks landmarks = Landmarks.ofHubs(graph, graph.reverse(), 2);
+    assertArrayEquals(new int[] {1, 3}, landmarks.landmarks());
+    assertEquals(2 * 2 * 2 * 6, landmarks.sizeInBytes());
+
+    // more landmarks than nodes
+    assertEquals(6,
+        Landmarks.ofHubs(graph, graph.reverse(), 10).landmarks().length);
+  }
+
+  /**
+   * Test that bounds are never more than the true distance.
+   */
+  @Test
+  public void testAdmissible() {
+    for (double connectedness : new double[] {0.03, 0.1, 0.5}) {
+      CsrGraph graph = toCsr(generateGraph(GRAPH_SIZE, connectedness));
+      Landmarks landmarks =
+          Landmarks.ofHubs(graph, graph.reverse(), NUM_LANDMARKS);
+
+      for (int s = 0; s < GRAPH_SIZE; s++) {
+        int[] dists = BreadthFirstPathFinder.distances(graph, s);
+        for (int e = 0; e < GRAPH_SIZE; e++) {
+          int bound = landmarks.lowerBound(s, e);
+          assertTrue(bound >= 0);
+          if (dists[e] != -1) {
+            assertTrue(bound <= dists[e]);
+          }
+        }
+      }
+
+      // exact to and from landmarks themselves
+      for (int landmark : landmarks.landmarks()) {
+        int[] dists = BreadthFirstPathFinder.distances(graph, landmark);
+        for (int e = 0; e < GRAPH_SIZE; e++) {
+          if (dists[e] != -1) {
+            assertEquals(dists[e], landmarks.lowerBound(landmark, e));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Test A* using landmarks as a heuristic against oracle.
+   */
+  @Test
+  public void testAStar() {
+    List<BasicNode<Integer, Double>> nodes = generateGraph(GRAPH_SIZE, 0.1);
+    CsrGraph graph = toCsr(nodes);
+    Landmarks landmarks =
+        Landmarks.ofHubs(graph, graph.reverse(), NUM_LANDMARKS);
+    PathFinder<BasicNode<Integer, Double>, BasicEdge<Integer, Double>> pf =
+        new AStarDirectedPathFinder<>(edgeFinder,
+            (n1, n2) -> (double) landmarks.lowerBound(n1.getValue(),
+                n2.getValue()));
+
+    for (BasicNode<Integer, Double> start : nodes) {
+      for (BasicNode<Integer, Double> end : nodes) {
+        if (start != end) {
+          assertEquals(oracle.shortestPath(start, end).size(),
+              pf.shortestPath(start, end).size());
+        }
+      }
+    }
+  }
+
+  private CsrGraph toCsr(List<BasicNode<Integer, Double>> nodes) {
+    CsrGraph.Builder builder = new CsrGraph.Builder().numNodes(nodes.size());
+    for (BasicNode<Integer, Double> node : nodes) {
+      for (BasicEdge<Integer, Double> edge : edgeFinder.edges(node)) {
+        builder.addEdge(node.getValue(), edge.getDestination().getValue());
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gives list of generated nodes valued by their index, with random
+   * connections all of value 1.
+   */
+  private List<BasicNode<Integer, Double>> generateGraph(int size,
+      double connectedness) {
+    List<BasicNode<Integer, Double>> nodes = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      nodes.add(new BasicNode<Integer, Double>(i));
+    }
+
+    for (BasicNode<Integer, Double> node : nodes) {
+      for (BasicNode<Integer, Double> neighbor : nodes) {
+        if (node != neighbor && Math.random() < connectedness) {
+          node.addNeighbor(neighbor, 1.0, true);
+        }
+      }
+    }
+    return nodes;
+  }
+}
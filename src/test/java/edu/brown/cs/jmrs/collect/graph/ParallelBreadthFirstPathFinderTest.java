@@ -0,0 +1,159 @@
+package edu.brown.cs.jmrs.collect.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+import edu.brown.cs.jmrs.collect.TestingHelpers;
+import edu.brown.cs.jmrs.collect.graph.Graph.PathFinder;
+
+/**
+ * Tests the parallel breadth first implementation of a path finder.
+ *
+ * @author mcisler
+ *
+ */
+public class ParallelBreadthFirstPathFinderTest {
+  private final EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> edgeFinder =
+      new BasicEdgeFinder<String, Double>();
+  private final PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> oracle =
+      new BreadthFirstPathFinder<>(edgeFinder);
+  private final ExecutorService executor = Executors.newFixedThreadPool(4);
+  private static final int GRAPH_SIZE = 40;
+
+  /**
+   * Shuts down the executor used.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Test on a super simple graph.
+   */
+  @Test
+  public void testSimpleGraph() {
+    BasicNode<String, Double> n1 = new BasicNode<>("cat");
+    BasicNode<String, Double> n2 = new BasicNode<>("bird");
+    BasicNode<String, Double> n3 = new BasicNode<>("dog");
+    BasicNode<String, Double> n4 = new BasicNode<>("fly");
+    n1.addNeighbor(n2, 1.0, true).addNeighbor(n3, 10.0, true);
+    n2.addNeighbor(n3, 1.0, true);
+    n3.addNeighbor(n1, 1.0, true);
+    n4.addNeighbor(n1, 1.0, true);
+
+    PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new ParallelBreadthFirstPathFinder<>(edgeFinder, executor);
+
+    // unreachable
+    assertEquals(0, pf.shortestPath(n1, n4).size());
+
+    assertEquals(
+        ImmutableList.of(new BasicEdge<String, Double>(10.0, n1, n3, true)),
+        pf.shortestPath(n1, n3));
+    assertEquals(ImmutableList.of(
+        new BasicEdge<String, Double>(1.0, n4, n1, true),
+        new BasicEdge<String, Double>(1.0, n1, n2, true)),
+        pf.shortestPath(n4, n2));
+  }
+
+  /**
+   * Test shortest path lengths using oracle on sparsely connected graph.
+   */
+  @Test
+  public void testShortestSparselyConnected() {
+    testNodes(TestingHelpers.generateUniformGraph(GRAPH_SIZE, 0.1));
+  }
+
+  /**
+   * Test shortest path lengths using oracle on very sparsely connected graph,
+   * where many pairs have no path.
+   */
+  @Test
+  public void testShortestVerySparselyConnected() {
+    testNodes(TestingHelpers.generateUniformGraph(GRAPH_SIZE, 0.03));
+  }
+
+  /**
+   * Test that exceptions thrown while finding edges reach the caller.
+   */
+  @Test(expected = IllegalStateException.class)
+  public void testEdgeFinderException() {
+    List<BasicNode<String, Double>> nodes =
+        TestingHelpers.generateUniformGraph(2, 1);
+    EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>> failing =
+        new EdgeFinder<BasicNode<String, Double>, BasicEdge<String, Double>>() {
+          @Override
+          public Set<BasicEdge<String, Double>> edges(
+              BasicNode<String, Double> node) {
+            throw new IllegalStateException();
+          }
+
+          @Override
+          public Number edgeValue(BasicEdge<String, Double> edge) {
+            return 1;
+          }
+        };
+
+    new ParallelBreadthFirstPathFinder<>(failing, executor)
+        .shortestPath(nodes.get(0), nodes.get(1));
+  }
+
+  /**
+   * Test that closing shuts down only a pool the path finder made itself.
+   */
+  @Test
+  public void testClose() {
+    List<BasicNode<String, Double>> nodes =
+        TestingHelpers.generateUniformGraph(2, 1);
+    new ParallelBreadthFirstPathFinder<>(edgeFinder, executor).close();
+    assertFalse(executor.isShutdown());
+
+    ParallelBreadthFirstPathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new ParallelBreadthFirstPathFinder<>(edgeFinder, 2);
+    assertEquals(1, pf.shortestPath(nodes.get(0), nodes.get(1)).size());
+    pf.close();
+    try {
+      pf.shortestPath(nodes.get(0), nodes.get(1));
+      fail("Path found after closing");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
+
+  private void testNodes(List<BasicNode<String, Double>> nodes) {
+    PathFinder<BasicNode<String, Double>, BasicEdge<String, Double>> pf =
+        new ParallelBreadthFirstPathFinder<>(edgeFinder, executor);
+
+    for (BasicNode<String, Double> start : nodes) {
+      for (BasicNode<String, Double> end : nodes) {
+        if (start != end) {
+          List<BasicEdge<String, Double>> path = pf.shortestPath(start, end);
+          assertEquals(oracle.shortestPath(start, end).size(), path.size());
+
+          // make sure it's actually a path from start to end
+          if (!path.isEmpty()) {
+            assertEquals(start, path.get(0).getSource());
+            assertEquals(end, path.get(path.size() - 1).getDestination());
+            for (int i = 1; i < path.size(); i++) {
+              assertEquals(path.get(i - 1).getDestination(),
+                  path.get(i).getSource());
+            }
+          }
+        }
+      }
+    }
+  }
+}
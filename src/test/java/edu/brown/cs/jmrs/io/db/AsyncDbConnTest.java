@@ -0,0 +1,164 @@
+package edu.brown.cs.jmrs.io.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests running queries through an AsyncDbConn, over a temporary database.
+ *
+ * @author mcisler
+ *
+ */
+public class AsyncDbConnTest {
+  private static final int  MAX_KEYS = 4;
+  private static final long TIMEOUT  = 5000; // ms
+
+  private File           dbFile;
+  private DbConn         conn;
+  private CountDownLatch release;
+  private Insert<Integer> blocker;
+
+  /**
+   * Opens a new database of a few numbers.
+   *
+   * @throws Exception
+   *           If the database could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dbFile = File.createTempFile("async", ".sqlite3");
+    conn = new DbConn(dbFile.getPath());
+    conn.execute("CREATE TABLE nums(n INTEGER PRIMARY KEY, square INTEGER);"
+        + "INSERT INTO nums VALUES (1, 1), (2, 4), (3, 9), (4, 16), (5, 25);"
+        + "CREATE TABLE blocks(n INTEGER);");
+
+    // an insert that holds up a database thread until released
+    release = new CountDownLatch(1);
+    blocker =
+        conn.makeInsert("INSERT INTO blocks (n) VALUES (?)",
+            new DbWriter<>((ps, n) -> {
+              release.await();
+              ps.setInt(1, n);
+            }));
+  }
+
+  /**
+   * Removes the database.
+   *
+   * @throws Exception
+   *           If the database could not be closed.
+   */
+  @After
+  public void tearDown() throws Exception {
+    release.countDown();
+    conn.close();
+    dbFile.delete();
+  }
+
+  /**
+   * Test that queries and inserts run.
+   *
+   * @throws Exception
+   *           If they did not.
+   */
+  @Test
+  public void testQuery() throws Exception {
+    try (AsyncDbConn async = new AsyncDbConn(conn, 2, 10, TIMEOUT)) {
+      Query<Integer> square =
+          conn.makeQuery("SELECT square FROM nums WHERE n = ?",
+              new DbReader<>(rs -> rs.getInt(1)), false);
+      assertEquals(ImmutableList.of(9), async.query(square, 3).get());
+
+      release.countDown();
+      async.insertAll(blocker, ImmutableList.of(1, 2)).get();
+      assertEquals(ImmutableList.of(2),
+          async.query(conn.makeQuery("SELECT COUNT(*) FROM blocks",
+              new DbReader<>(rs -> rs.getInt(1)), false)).get());
+    }
+  }
+
+  /**
+   * Test that keys looked up while the database is busy are looked up
+   * together.
+   *
+   * @throws Exception
+   *           If the lookups failed.
+   */
+  @Test
+  public void testBatchedLookup() throws Exception {
+    try (AsyncDbConn async = new AsyncDbConn(conn, 1, 10, TIMEOUT)) {
+      AsyncDbConn.BatchedLookup<Integer, int[]> squares =
+          async.batchedLookup(
+              conn.makeQuery("SELECT n, square FROM nums WHERE n IN (?,?,?,?)",
+                  new DbReader<>(rs -> new int[] {rs.getInt(1), rs.getInt(2)}),
+                  false),
+              MAX_KEYS, row -> row[0]);
+
+      async.insertAll(blocker, ImmutableList.of(1));
+      List<CompletableFuture<List<int[]>>> lookups = new ArrayList<>();
+      for (int n = 1; n <= 6; n++) {
+        lookups.add(squares.get(n));
+      }
+      assertTrue(squares.get(1) == lookups.get(0));
+      assertEquals(6, squares.pendingKeys());
+
+      release.countDown();
+      for (int n = 1; n <= 5; n++) {
+        List<int[]> rows = lookups.get(n - 1).get();
+        assertEquals(1, rows.size());
+        assertEquals(n * n, rows.get(0)[1]);
+      }
+      assertEquals(Collections.emptyList(), lookups.get(5).get());
+      assertEquals(0, squares.pendingKeys());
+    }
+  }
+
+  /**
+   * Test that work fails rather than waits when the database is too busy.
+   *
+   * @throws Exception
+   *           If the database could not be queried.
+   */
+  @Test
+  public void testTimeoutAndRejection() throws Exception {
+    try (AsyncDbConn async = new AsyncDbConn(conn, 1, 1, 100)) {
+      Query<Integer> count =
+          conn.makeQuery("SELECT COUNT(*) FROM nums",
+              new DbReader<>(rs -> rs.getInt(1)), false);
+
+      CompletableFuture<Void> blocked =
+          async.insertAll(blocker, ImmutableList.of(1));
+      CompletableFuture<List<Integer>> queued = async.query(count);
+      assertFailsWith(RejectedExecutionException.class, async.query(count));
+      assertFailsWith(TimeoutException.class, queued);
+      assertFailsWith(TimeoutException.class, blocked);
+    }
+  }
+
+  private void assertFailsWith(Class<? extends Throwable> cause,
+      CompletableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+      fail("Expected " + cause.getSimpleName());
+    } catch (ExecutionException e) {
+      assertEquals(cause, e.getCause().getClass());
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package edu.brown.cs.jmrs.io.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests a DbConn with a pool of reader connections, over a temporary database.
+ *
+ * @author mcisler
+ *
+ */
+public class DbConnTest {
+  private static final int NUM_READERS = 2;
+
+  private File   dbFile;
+  private DbConn conn;
+
+  /**
+   * Opens a new database with a single table.
+   *
+   * @throws Exception
+   *           If the database could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dbFile = File.createTempFile("pool", ".sqlite3");
+    conn = new DbConn(dbFile.getPath(), "", NUM_READERS);
+    conn.execute("CREATE TABLE nums(n INTEGER PRIMARY KEY);");
+  }
+
+  /**
+   * Removes the database.
+   *
+   * @throws Exception
+   *           If the database could not be closed.
+   */
+  @After
+  public void tearDown() throws Exception {
+    conn.close();
+    new File(dbFile.getPath() + "-wal").delete();
+    new File(dbFile.getPath() + "-shm").delete();
+    dbFile.delete();
+  }
+
+  /**
+   * Test that pooling puts the database in WAL mode.
+   */
+  @Test
+  public void testWal() {
+    assertEquals(NUM_READERS, conn.numReaders());
+    assertEquals(ImmutableList.of("wal"),
+        conn.makeQuery("PRAGMA journal_mode",
+            new DbReader<>(rs -> rs.getString(1)), false).query());
+  }
+
+  /**
+   * Test that queries see committed inserts, but don't wait on uncommitted
+   * ones.
+   *
+   * @throws Exception
+   *           If the insert failed.
+   */
+  @Test
+  public void testReadDuringWrite() throws Exception {
+    Insert<Integer> insert =
+        conn.makeInsert("INSERT INTO nums (n) VALUES (?)",
+            new DbWriter<>((ps, n) -> ps.setInt(1, n)));
+    Query<Integer> count =
+        conn.makeQuery("SELECT COUNT(*) FROM nums",
+            new DbReader<>(rs -> rs.getInt(1)), false);
+
+    insert.insertAll(ImmutableList.of(1, 2, 3));
+    assertEquals(ImmutableList.of(3), count.query());
+
+    conn.execute("BEGIN;");
+    insert.insertAll(ImmutableList.of(4));
+
+    // read from other threads, while the write transaction is open
+    ExecutorService readers = Executors.newFixedThreadPool(NUM_READERS * 2);
+    for (int i = 0; i < NUM_READERS * 2; i++) {
+      assertEquals(ImmutableList.of(3), readers.submit(() -> count.query())
+          .get(1, TimeUnit.SECONDS));
+    }
+
+    conn.execute("COMMIT;");
+    assertEquals(ImmutableList.of(4), count.query());
+    for (int i = 0; i < NUM_READERS * 2; i++) {
+      assertEquals(ImmutableList.of(4), readers.submit(() -> count.query())
+          .get(1, TimeUnit.SECONDS));
+    }
+    readers.shutdown();
+  }
+
+  /**
+   * Test that a failed transaction stores nothing.
+   *
+   * @throws Exception
+   *           If the insert could not be made.
+   */
+  @Test
+  public void testTransactionRollback() throws Exception {
+    Insert<Integer> insert =
+        conn.makeInsert("INSERT INTO nums (n) VALUES (?)",
+            new DbWriter<>((ps, n) -> ps.setInt(1, n)));
+    try {
+      conn.transaction(() -> insert.insertAll(ImmutableList.of(1, 2, 1)));
+      fail("Duplicate key inserted");
+    } catch (UncheckedSqlException e) {
+      // expected
+    }
+
+    conn.transaction(() -> insert.insertAll(ImmutableList.of(1, 2)));
+    assertEquals(ImmutableList.of(2),
+        conn.makeQuery("SELECT COUNT(*) FROM nums",
+            new DbReader<>(rs -> rs.getInt(1)), false).query());
+  }
+
+  /**
+   * Test that writes from other threads wait for an open transaction, rather
+   * than being rolled back with it.
+   *
+   * @throws Exception
+   *           If the inserts could not be made.
+   */
+  @Test
+  public void testWriteDuringTransaction() throws Exception {
+    Insert<Integer> insert =
+        conn.makeInsert("INSERT INTO nums (n) VALUES (?)",
+            new DbWriter<>((ps, n) -> ps.setInt(1, n)));
+    ExecutorService writers = Executors.newFixedThreadPool(2);
+    Future<?>[] writes = new Future<?>[2];
+    try {
+      conn.transaction(() -> {
+        insert.insertAll(ImmutableList.of(1));
+        writes[0] = writers.submit(() -> insert.insertAll(ImmutableList.of(2)));
+        writes[1] =
+            writers.submit(() -> conn.execute("INSERT INTO nums VALUES (3);"));
+        try {
+          // give the other writes time to join if they could
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        throw new IllegalStateException();
+      });
+      fail("Transaction did not fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    for (Future<?> write : writes) {
+      write.get(1, TimeUnit.SECONDS);
+    }
+    writers.shutdown();
+
+    assertEquals(ImmutableList.of(2, 3),
+        conn.makeQuery("SELECT n FROM nums ORDER BY n",
+            new DbReader<>(rs -> rs.getInt(1)), false).query());
+  }
+}
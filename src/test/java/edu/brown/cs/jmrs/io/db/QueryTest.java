@@ -0,0 +1,111 @@
+package edu.brown.cs.jmrs.io.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests reading query results all at once and streaming them, over a
+ * temporary database.
+ *
+ * @author mcisler
+ *
+ */
+public class QueryTest {
+  private static final int NUM_ROWS = 1000;
+
+  private File           dbFile;
+  private DbConn         conn;
+  private Query<Integer> evens;
+
+  /**
+   * Opens a new database of the numbers below NUM_ROWS.
+   *
+   * @throws Exception
+   *           If the database could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dbFile = File.createTempFile("query", ".sqlite3");
+    conn = new DbConn(dbFile.getPath());
+    conn.execute("CREATE TABLE nums(n INTEGER PRIMARY KEY);"
+        + "WITH RECURSIVE seq(n) AS (SELECT 0 UNION ALL"
+        + " SELECT n + 1 FROM seq WHERE n + 1 < " + NUM_ROWS + ")"
+        + " INSERT INTO nums SELECT n FROM seq;");
+
+    // nulls are skipped
+    evens =
+        conn.makeQuery("SELECT n FROM nums WHERE n < ? ORDER BY n",
+            new DbReader<>(rs -> rs.getInt(1) % 2 == 0 ? rs.getInt(1) : null));
+  }
+
+  /**
+   * Removes the database.
+   *
+   * @throws Exception
+   *           If the database could not be closed.
+   */
+  @After
+  public void tearDown() throws Exception {
+    conn.close();
+    dbFile.delete();
+  }
+
+  /**
+   * Test that each way of reading results reads the same ones.
+   */
+  @Test
+  public void testStreaming() {
+    List<Integer> expected = ImmutableList.of(0, 2, 4, 6, 8);
+    assertEquals(expected, evens.query(10));
+
+    List<Integer> each = new ArrayList<>();
+    evens.fetchSize(2).forEach(each::add, 10);
+    assertEquals(expected, each);
+
+    try (Stream<Integer> stream = evens.stream(10)) {
+      assertEquals(expected, stream.collect(Collectors.toList()));
+    }
+  }
+
+  /**
+   * Test that streams are read lazily and can be reused after closing.
+   */
+  @Test
+  public void testStreamLaziness() {
+    try (Stream<Integer> stream = evens.stream(NUM_ROWS)) {
+      assertEquals(ImmutableList.of(0, 2, 4),
+          stream.limit(3).collect(Collectors.toList()));
+    }
+    try (Stream<Integer> stream = evens.stream(NUM_ROWS)) {
+      assertEquals(NUM_ROWS / 2, stream.count());
+    }
+  }
+
+  /**
+   * Test that rows can be read without making objects of them.
+   */
+  @Test
+  public void testForEachRow() {
+    AtomicLong sum = new AtomicLong();
+    evens.forEachRow(rs -> sum.addAndGet(rs.getLong(1)), NUM_ROWS);
+    assertEquals((long) NUM_ROWS * (NUM_ROWS - 1) / 2, sum.get());
+
+    // and without a reader at all
+    sum.set(0);
+    conn.makeQuery("SELECT n FROM nums WHERE n < ?")
+        .forEachRow(rs -> sum.addAndGet(rs.getLong(1)), NUM_ROWS);
+    assertEquals((long) NUM_ROWS * (NUM_ROWS - 1) / 2, sum.get());
+  }
+}
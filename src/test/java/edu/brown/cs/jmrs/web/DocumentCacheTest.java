@@ -0,0 +1,117 @@
+package edu.brown.cs.jmrs.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.CacheLoader;
+
+/**
+ * Tests bounding a cache of pages by their size.
+ *
+ * @author mcisler
+ *
+ */
+public class DocumentCacheTest {
+  private static final int PAGE_CHARS = 10000;
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final CacheLoader<String, Document> loader =
+      new CacheLoader<String, Document>() {
+        @Override
+        public Document load(String url) {
+          loads.incrementAndGet();
+          return Jsoup.parse(
+              "<p class=\"x\">" + Strings.repeat("a", PAGE_CHARS) + "</p>",
+              url);
+        }
+      };
+
+  private static int pageBytes() {
+    return DocumentCache.retainedBytes(
+        Jsoup.parse("<p class=\"x\">" + Strings.repeat("a", PAGE_CHARS)
+            + "</p>"));
+  }
+
+  /**
+   * Test that the estimate grows with the text and nodes of a page.
+   */
+  @Test
+  public void testRetainedBytes() {
+    int empty = DocumentCache.retainedBytes(Jsoup.parse(""));
+    int text = DocumentCache.retainedBytes(Jsoup.parse("<p>aaaa</p>"));
+    int attrs =
+        DocumentCache.retainedBytes(Jsoup.parse("<p id=\"i\">aaaa</p>"));
+    assertTrue(empty > 0);
+    assertEquals(empty + DocumentCache.NODE_BYTES * 2
+        + DocumentCache.CHAR_BYTES * 4, text);
+    assertTrue(attrs > text);
+    assertTrue(pageBytes() > PAGE_CHARS * DocumentCache.CHAR_BYTES);
+  }
+
+  /**
+   * Test that pages are evicted to stay within the budget, and counted.
+   *
+   * @throws Exception
+   *           If a page could not be loaded.
+   */
+  @Test
+  public void testBudget() throws Exception {
+    // room for two pages, but not three
+    DocumentCache docs =
+        new DocumentCache(pageBytes() * 5 / 2, 1, false, loader);
+    docs.cache().get("http://a/");
+    docs.cache().get("http://b/");
+    assertEquals(2 * pageBytes(), docs.usedBytes());
+    docs.cache().get("http://c/");
+    assertEquals(2, docs.cache().size());
+    assertEquals(2 * pageBytes(), docs.usedBytes());
+
+    docs.cache().get("http://c/");
+    Map<String, Object> stats = docs.stats();
+    assertEquals(1L, stats.get("hits"));
+    assertEquals(3L, stats.get("misses"));
+    assertEquals(1L, stats.get("evictions"));
+    assertFalse(stats.containsKey("overflow"));
+
+    docs.cache().invalidateAll();
+    assertEquals(0, docs.usedBytes());
+
+    // weighed too when put rather than loaded
+    docs.cache().put("http://d/", loader.load("http://d/"));
+    assertEquals(pageBytes(), docs.usedBytes());
+  }
+
+  /**
+   * Test that pages evicted for space are taken back from the overflow tier
+   * rather than loaded again.
+   *
+   * @throws Exception
+   *           If a page could not be loaded.
+   */
+  @Test
+  public void testOverflow() throws Exception {
+    DocumentCache docs =
+        new DocumentCache(pageBytes() * 3 / 2, 1, true, loader);
+    Document a = docs.cache().get("http://a/");
+    docs.cache().get("http://b/");
+    assertEquals(2, loads.get());
+
+    // (unless the garbage collector took it)
+    assertSame(a, docs.cache().get("http://a/"));
+    assertEquals(2, loads.get());
+    // and b took its place
+    assertEquals(1L,
+        ((Map<?, ?>) docs.stats().get("overflow")).get("pages"));
+  }
+}
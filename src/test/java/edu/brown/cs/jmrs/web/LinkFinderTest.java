@@ -0,0 +1,85 @@
+package edu.brown.cs.jmrs.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import edu.brown.cs.jmrs.web.wikipedia.FusedWikiFormatter;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPageLinkFinder;
+
+/**
+ * Tests finding the links of many pages at once through the default of
+ * LinkFinder (so without touching Wikipedia).
+ *
+ * @author mcisler
+ *
+ */
+public class LinkFinderTest {
+  private static final WikiPage A       = WikiPage.fromName("A");
+  private static final WikiPage B       = WikiPage.fromName("B");
+  private static final WikiPage MISSING = WikiPage.fromName("Missing");
+
+  /**
+   * Test that pages that cannot be reached are left out without failing the
+   * rest, and that links are not found on the common ForkJoinPool.
+   */
+  @Test
+  public void testLinkedPagesOfMany() {
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    LinkFinder<WikiPage> linkFinder = new LinkFinder<WikiPage>() {
+      @Override
+      public Set<String> links(WikiPage page) throws IOException {
+        threads.add(Thread.currentThread().getName());
+        if (page.equals(MISSING)) {
+          throw new IOException("Could not reach " + page);
+        }
+        return ImmutableSet.of(page.equals(A) ? B.url() : A.url());
+      }
+
+      @Override
+      public Set<WikiPage> linkedPages(WikiPage page) throws IOException {
+        return ImmutableSet.of(new WikiPage(links(page).iterator().next()));
+      }
+    };
+
+    Map<WikiPage, Set<WikiPage>> found =
+        linkFinder.linkedPages(ImmutableList.of(A, MISSING, B, A));
+    assertEquals(2, found.size());
+    assertEquals(ImmutableSet.of(B), found.get(A));
+    assertEquals(ImmutableSet.of(A), found.get(B));
+    assertFalse(found.containsKey(MISSING));
+
+    assertFalse(threads.isEmpty());
+    for (String thread : threads) {
+      assertTrue(thread.startsWith("link-finder-"));
+    }
+  }
+
+  /**
+   * Test that link finders only claim uniform edge values when they say so,
+   * and that wrapping one keeps its claim.
+   */
+  @Test
+  public void testUniformEdgeValues() {
+    LinkFinder<WikiPage> linkFinder = new AllLinkFinder<>(WikiPage::new);
+    assertFalse(linkFinder.hasUniformEdgeValues());
+    assertFalse(new FailSafeLinkFInder<>(linkFinder).hasUniformEdgeValues());
+
+    LinkFinder<WikiPage> wikiLinkFinder =
+        new WikiPageLinkFinder(new FusedWikiFormatter());
+    assertTrue(wikiLinkFinder.hasUniformEdgeValues());
+    assertTrue(
+        new FailSafeLinkFInder<>(wikiLinkFinder).hasUniformEdgeValues());
+  }
+}
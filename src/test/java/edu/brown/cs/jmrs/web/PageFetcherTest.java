@@ -0,0 +1,236 @@
+package edu.brown.cs.jmrs.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsoup.nodes.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests fetching pages, concurrently and through a cache, from a local stub
+ * server (so without touching the network).
+ *
+ * @author mcisler
+ *
+ */
+public class PageFetcherTest {
+  private static final int DELAY   = 200; // ms
+  private static final int TIMEOUT = 5000; // ms
+
+  private HttpServer    server;
+  private AtomicInteger inFlight;
+  private AtomicInteger maxInFlight;
+  private AtomicInteger requests;
+
+  /**
+   * Starts a server answering /slow/* after DELAY ms and /hang after ten
+   * times that, each with a page titled by its path.
+   *
+   * @throws IOException
+   *           If the server could not be started.
+   */
+  @Before
+  public void setUp() throws IOException {
+    inFlight = new AtomicInteger();
+    maxInFlight = new AtomicInteger();
+    requests = new AtomicInteger();
+
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      String path = exchange.getRequestURI().getPath();
+      requests.incrementAndGet();
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        Thread.sleep(path.equals("/hang") ? DELAY * 10 : DELAY);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        inFlight.decrementAndGet();
+      }
+
+      byte[] body =
+          ("<html><head><title>" + path + "</title></head><body></body></html>")
+              .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type",
+          "text/html; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the server.
+   */
+  @After
+  public void tearDown() {
+    server.stop(0);
+  }
+
+  /**
+   * Test that pages are fetched at once, but no more at once from a host than
+   * allowed.
+   *
+   * @throws Exception
+   *           If a page could not be fetched.
+   */
+  @Test
+  public void testPerHostLimit() throws Exception {
+    PageFetcher fetcher = new PageFetcher(8, 3, TIMEOUT);
+    List<CompletableFuture<Document>> pages = new ArrayList<>();
+    for (int i = 0; i < 9; i++) {
+      pages.add(fetcher.fetch(url("/slow/" + i)));
+    }
+    for (int i = 0; i < 9; i++) {
+      assertEquals("/slow/" + i, pages.get(i).get().title());
+    }
+    assertEquals(3, maxInFlight.get());
+  }
+
+  /**
+   * Test that fetches waiting on a busy host don't hold up other hosts.
+   *
+   * @throws Exception
+   *           If a page could not be fetched.
+   */
+  @Test
+  public void testBusyHost() throws Exception {
+    PageFetcher fetcher = new PageFetcher(2, 1, TIMEOUT);
+    List<CompletableFuture<Document>> pages = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      pages.add(fetcher.fetch(url("/slow/" + i)));
+    }
+    // the same server, under another host name
+    String other = url("/slow/other").replace("127.0.0.1", "localhost");
+    assertEquals("/slow/other", fetcher.fetch(other).get().title());
+    assertFalse(pages.get(2).isDone());
+    assertEquals("/slow/2", pages.get(2).get().title());
+  }
+
+  /**
+   * Test that waiting for a page can be interrupted.
+   *
+   * @throws Exception
+   *           If the wrong exception was thrown.
+   */
+  @Test
+  public void testInterrupt() throws Exception {
+    PageFetcher fetcher = new PageFetcher(2, 2, TIMEOUT);
+    Thread.currentThread().interrupt();
+    try {
+      fetcher.load(url("/slow/0"));
+      fail("Page loaded despite being interrupted");
+    } catch (InterruptedIOException e) {
+      assertTrue(Thread.interrupted()); // still set, and now cleared
+    }
+  }
+
+  /**
+   * Test that a cache loads different pages at once, and many at once.
+   *
+   * @throws Exception
+   *           If a page could not be loaded.
+   */
+  @Test
+  public void testConcurrentCacheLoads() throws Exception {
+    LoadingCache<String, Document> cache =
+        CacheBuilder.newBuilder()
+            .build(new Page.Loader(new PageFetcher(8, 8, TIMEOUT)));
+
+    List<CompletableFuture<Document>> loads = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      String url = url("/slow/" + i);
+      loads.add(CompletableFuture.supplyAsync(() -> cache.getUnchecked(url)));
+    }
+    for (CompletableFuture<Document> load : loads) {
+      load.get();
+    }
+    assertTrue(maxInFlight.get() > 1);
+
+    Map<String, Document> all =
+        cache.getAll(ImmutableList.of(url("/slow/0"), url("/slow/4"),
+            url("/slow/5")));
+    assertEquals("/slow/5", all.get(url("/slow/5")).title());
+    assertEquals(6, requests.get());
+
+    cache.refresh(url("/slow/0"));
+    assertEquals("/slow/0", cache.get(url("/slow/0")).title());
+  }
+
+  /**
+   * Test that pages taking too long fail.
+   *
+   * @throws Exception
+   *           If the wrong exception was thrown.
+   */
+  @Test
+  public void testTimeout() throws Exception {
+    PageFetcher fetcher = new PageFetcher(2, 2, DELAY);
+    try {
+      fetcher.load(url("/hang"));
+      fail("Page loaded despite timing out");
+    } catch (IOException e) {
+      // expected
+    }
+    try {
+      fetcher.fetch(url("/hang")).get();
+      fail("Page loaded despite timing out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  /**
+   * Test that a fetch throwing an Error still completes its future, and
+   * doesn't take its place from the host.
+   *
+   * @throws Exception
+   *           If the wrong exception was thrown.
+   */
+  @Test
+  public void testFetchError() throws Exception {
+    PageFetcher fetcher = new PageFetcher(1, 1, TIMEOUT);
+    CompletableFuture<Document> page =
+        fetcher.submit(url("/slow/0"), () -> {
+          throw new StackOverflowError();
+        });
+    try {
+      page.get(TIMEOUT, TimeUnit.MILLISECONDS);
+      fail("Page loaded despite its fetch throwing");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof StackOverflowError);
+    }
+    assertEquals("/slow/1", fetcher.fetch(url("/slow/1"))
+        .get(TIMEOUT, TimeUnit.MILLISECONDS).title());
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+}
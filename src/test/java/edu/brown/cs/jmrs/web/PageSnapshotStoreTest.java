@@ -0,0 +1,246 @@
+package edu.brown.cs.jmrs.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.DbReader;
+import edu.brown.cs.jmrs.web.PageSnapshotStore.Snapshot;
+
+/**
+ * Tests storing snapshots of pages, and loading pages through them, from a
+ * local stub server and a temporary database.
+ *
+ * @author mcisler
+ *
+ */
+public class PageSnapshotStoreTest {
+  private static final long DAY     = 24 * 60 * 60 * 1000; // ms
+  private static final int  TIMEOUT = 5000;                // ms
+  private static final String ETAG = "\"v1\"";
+
+  private File          dbFile;
+  private DbConn        conn;
+  private HttpServer    server;
+  private AtomicInteger fetches;
+  private AtomicInteger unchanged;
+
+  /**
+   * Opens a new database and starts a server answering every path with a page
+   * titled by it, or with 304 Not Modified if asked with its ETag.
+   *
+   * @throws Exception
+   *           If the database or server could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dbFile = File.createTempFile("snapshots", ".sqlite3");
+    conn = new DbConn(dbFile.getPath());
+    fetches = new AtomicInteger();
+    unchanged = new AtomicInteger();
+
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/", exchange -> {
+      fetches.incrementAndGet();
+      exchange.getResponseHeaders().add("ETag", ETAG);
+      if (ETAG.equals(
+          exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        unchanged.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+
+      byte[] body =
+          ("<html><head><title>" + exchange.getRequestURI().getPath()
+              + "</title></head><body><a href=\"next\">next</a></body></html>")
+                  .getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type",
+          "text/html; charset=utf-8");
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    });
+    server.start();
+  }
+
+  /**
+   * Stops the server and removes the database.
+   *
+   * @throws Exception
+   *           If the database could not be closed.
+   */
+  @After
+  public void tearDown() throws Exception {
+    server.stop(0);
+    conn.close();
+    dbFile.delete();
+  }
+
+  private String url(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  /**
+   * Test that snapshots survive being compressed and stored.
+   *
+   * @throws Exception
+   *           If the store could not be opened.
+   */
+  @Test
+  public void testRoundTrip() throws Exception {
+    PageSnapshotStore store = new PageSnapshotStore(conn, DAY, 2 * DAY);
+    assertNull(store.get("http://a/"));
+
+    String html = Strings.repeat("<p>été</p>", 1000);
+    long now = System.currentTimeMillis();
+    store.put("http://a/", new Snapshot("http://b/", html, "e", "m", now));
+    Snapshot snapshot = store.get("http://a/");
+    assertEquals("http://b/", snapshot.location());
+    assertEquals(html, snapshot.html());
+    assertEquals("e", snapshot.etag());
+    assertEquals("m", snapshot.lastModified());
+    assertEquals(now, snapshot.fetched());
+    assertEquals(true, store.isFresh(snapshot));
+    assertEquals(false, store.isFresh(snapshot.checkedAt(now - DAY)));
+
+    // replaced, not duplicated
+    store.put("http://a/", snapshot.checkedAt(now + 1));
+    assertEquals(now + 1, store.get("http://a/").fetched());
+
+    store.touch("http://a/", now + 2);
+    assertEquals(now + 2, store.get("http://a/").fetched());
+    assertEquals(html, store.get("http://a/").html());
+    assertEquals(true, snapshot.checkedAt(now + 2).isRecheckOf(snapshot));
+    assertEquals(false, store.get("http://a/").isRecheckOf(snapshot));
+  }
+
+  private int rows() {
+    return conn.makeQuery("SELECT COUNT(*) FROM page_snapshots",
+        new DbReader<>(rs -> rs.getInt(1)), false).query().get(0);
+  }
+
+  /**
+   * Test that snapshots older than the eviction age are not given, and are
+   * deleted on opening and then periodically as snapshots are stored.
+   *
+   * @throws Exception
+   *           If the store could not be opened.
+   */
+  @Test
+  public void testEviction() throws Exception {
+    PageSnapshotStore store = new PageSnapshotStore(conn, DAY, 2 * DAY);
+    long now = System.currentTimeMillis();
+    store.put("old", new Snapshot("old", "", null, null, now - 3 * DAY));
+    store.put("new", new Snapshot("new", "", null, null, now - DAY));
+    assertNull(store.get("old"));
+    assertEquals(2, rows());
+
+    store = new PageSnapshotStore(conn, DAY, 2 * DAY);
+    assertNull(store.get("old"));
+    assertNotNull(store.get("new"));
+    assertEquals(1, rows());
+
+    // a short eviction age, so eviction is due again on storing soon after
+    store = new PageSnapshotStore(conn, 10, 50);
+    assertEquals(0, rows());
+    store.put("a", new Snapshot("a", "", null, null, now));
+    Thread.sleep(60);
+    store.put("b", new Snapshot("b", "", null, null,
+        System.currentTimeMillis()));
+    assertNull(store.get("a"));
+    assertNotNull(store.get("b"));
+    assertEquals(1, rows());
+  }
+
+  /**
+   * Test that different urls with the same key share one snapshot.
+   *
+   * @throws Exception
+   *           If the store could not be opened.
+   */
+  @Test
+  public void testKey() throws Exception {
+    PageSnapshotStore store = new PageSnapshotStore(conn, DAY, 2 * DAY,
+        url -> url.replaceFirst("^http:", "https:"));
+    long now = System.currentTimeMillis();
+    store.put("http://a/", new Snapshot("http://a/", "<p>a</p>", null, null,
+        now));
+    assertEquals("<p>a</p>", store.get("https://a/").html());
+
+    store.touch("https://a/", now + 1);
+    assertEquals(now + 1, store.get("http://a/").fetched());
+    store.put("https://a/", new Snapshot("https://a/", "<p>b</p>", null, null,
+        now + 2));
+    assertEquals("<p>b</p>", store.get("http://a/").html());
+    assertEquals(1, rows());
+  }
+
+  /**
+   * Test that the loader fetches pages once while fresh, revalidates them once
+   * stale, and falls back on them when the server is gone.
+   *
+   * @throws Exception
+   *           If a page could not be loaded.
+   */
+  @Test
+  public void testLoader() throws Exception {
+    PageSnapshotStore store = new PageSnapshotStore(conn, DAY, 2 * DAY);
+    Page.Loader loader = new Page.Loader(new PageFetcher(2, 2, TIMEOUT));
+    loader.useSnapshots(store);
+
+    assertEquals("/a", loader.load(url("/a")).title());
+    assertEquals(1, fetches.get());
+    assertEquals(ETAG, store.get(url("/a")).etag());
+
+    // fresh, so not fetched, but still parsed against its location
+    assertEquals(url("/next"),
+        loader.load(url("/a")).select("a").first().absUrl("href"));
+    assertEquals(1, fetches.get());
+
+    // stale, so checked, but unchanged
+    Snapshot snapshot = store.get(url("/a"));
+    store.put(url("/a"), snapshot.checkedAt(snapshot.fetched() - DAY));
+    assertEquals("/a", loader.load(url("/a")).title());
+    assertEquals(2, fetches.get());
+    assertEquals(1, unchanged.get());
+    assertEquals(true, store.isFresh(store.get(url("/a"))));
+
+    // a store that fails doesn't fail the load
+    conn.execute("DROP TABLE page_snapshots;");
+    assertEquals("/c", loader.load(url("/c")).title());
+    loader.useSnapshots(store = new PageSnapshotStore(conn, DAY, 2 * DAY));
+    assertEquals("/a", loader.load(url("/a")).title());
+
+    // stale and unreachable, so used anyway
+    server.stop(0);
+    snapshot = store.get(url("/a"));
+    store.put(url("/a"), snapshot.checkedAt(snapshot.fetched() - DAY));
+    assertEquals("/a", loader.load(url("/a")).title());
+    try {
+      loader.load(url("/b"));
+      fail("Loaded a page never stored from a stopped server");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
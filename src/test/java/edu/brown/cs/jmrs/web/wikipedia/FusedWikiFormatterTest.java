@@ -0,0 +1,121 @@
+package edu.brown.cs.jmrs.web.wikipedia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import edu.brown.cs.jmrs.web.ContentFormatter;
+import edu.brown.cs.jmrs.web.ContentFormatterChain;
+
+/**
+ * Tests that the fused formatter formats pages as the chain it fuses does.
+ *
+ * @author mcisler
+ *
+ */
+public class FusedWikiFormatterTest {
+  private static final String BASE = "https://en.wikipedia.org/wiki/Page";
+
+  private static final ContentFormatter<WikiPage> CHAIN =
+      new ContentFormatterChain<>(ImmutableList.of(new WikiBodyFormatter(),
+          new WikiFooterRemover(), new WikiAnnotationRemover()));
+
+  private static final FusedWikiFormatter FUSED = new FusedWikiFormatter();
+
+  private static final String SECTIONS =
+      "<p>Some <b>bold</b> text, <a href=\"/wiki/Kept\">kept</a> and "
+          + "<a href=\"/wiki/Dropped\"><i>dropped</i></a>."
+          + "<sup class=\"reference\"><a href=\"#cite\">1</a></sup></p>\n"
+          + "<h2>History<span class=\"mw-editsection\">"
+          + "<a href=\"/w/index.php?action=edit\">edit</a></span></h2>\n"
+          + "<div class=\"geography\"><a href=\"/wiki/Geo\">g</a></div>\n"
+          + "<span id=\"coordinates\"><a href=\"/wiki/Coords\">c</a></span>\n"
+          + "<table><tr><td><a href=\"/wiki/Cell\">c</a></td></tr></table>\n"
+          + "<div class=\"navbox\"><a href=\"/wiki/Nav\">n</a></div>\n"
+          + "<div class=\"reflist\"><a href=\"/wiki/Ref\">r</a></div>\n"
+          + "<!-- a comment --><script>var x = 1 < 2;</script>\n"
+          + "<h2><span id=\"See_also\">See also</span></h2>\n"
+          + "<ul><li><a href=\"/wiki/Related\">r</a></li></ul>\n"
+          + "<h2><span id=\"External_links\">External links</span></h2>\n"
+          + "<ul><li><a href=\"http://example.com\">e</a></li></ul>\n";
+
+  private static Document page(String body) {
+    return Jsoup.parse("<html><body><h1 id=\"firstHeading\">Page</h1>" + body
+        + "</body></html>", BASE);
+  }
+
+  private static final Document CONTENT_TEXT =
+      page("<div id=\"mw-content-text\">" + SECTIONS + "</div>");
+
+  private static final Document PARSER_OUTPUT =
+      page("<div id=\"mw-content-text\"><div class=\"mw-parser-output\">"
+          + SECTIONS + "</div>\n<p>After</p></div>");
+
+  /**
+   * Test that the fused formatter and its chain are recognized.
+   */
+  @Test
+  public void testFuses() {
+    assertTrue(FusedWikiFormatter.fuses(FUSED));
+    assertTrue(FusedWikiFormatter.fuses(CHAIN));
+    assertFalse(FusedWikiFormatter.fuses(new WikiAnnotationRemover()));
+  }
+
+  /**
+   * Test that formatting matches the chain's, and leaves the page alone.
+   */
+  @Test
+  public void testFormat() {
+    for (Document page : ImmutableList.of(CONTENT_TEXT, PARSER_OUTPUT)) {
+      String before = page.outerHtml();
+      assertEquals(CHAIN.format(page.clone()).outerHtml(),
+          FUSED.format(page).outerHtml());
+      assertEquals(before, page.outerHtml());
+    }
+  }
+
+  /**
+   * Test that replacing links while formatting matches replacing them before.
+   */
+  @Test
+  public void testAllowedLinks() {
+    Set<String> allowed =
+        ImmutableSet.of("https://en.wikipedia.org/wiki/Kept",
+            "https://en.wikipedia.org/wiki/Cell");
+    for (Document page : ImmutableList.of(CONTENT_TEXT, PARSER_OUTPUT)) {
+      Document replaced = page.clone();
+      for (Element link : replaced.select("a[href]")) {
+        if (!allowed.contains(link.attr("abs:href"))) {
+          link.before(link.html());
+          link.remove();
+        }
+      }
+
+      Element fused = FUSED.format(page, allowed);
+      assertEquals(CHAIN.format(replaced).text(), fused.text());
+      assertEquals(2, fused.select("a[href]").size());
+      assertEquals("dropped", fused.select("p > i").text());
+    }
+  }
+
+  /**
+   * Test that the blurb comes out the same from either.
+   */
+  @Test
+  public void testBlurb() {
+    for (Document page : ImmutableList.of(CONTENT_TEXT, PARSER_OUTPUT)) {
+      assertEquals(WikiPage.getBlurbFrom(CHAIN.format(page.clone())),
+          WikiPage.getBlurbFrom(FUSED.format(page, ImmutableSet.of())));
+    }
+  }
+}
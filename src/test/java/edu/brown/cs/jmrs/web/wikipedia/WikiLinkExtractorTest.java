@@ -0,0 +1,105 @@
+package edu.brown.cs.jmrs.web.wikipedia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import edu.brown.cs.jmrs.web.ContentFormatter;
+import edu.brown.cs.jmrs.web.ContentFormatterChain;
+
+/**
+ * Tests that extracting links finds the same ones as formatting pages does.
+ *
+ * @author mcisler
+ *
+ */
+public class WikiLinkExtractorTest {
+  private static final String BASE = "https://en.wikipedia.org/wiki/Page";
+
+  private static final ContentFormatter<WikiPage> FORMATTER =
+      new ContentFormatterChain<>(ImmutableList.of(new WikiBodyFormatter(),
+          new WikiFooterRemover(), new WikiAnnotationRemover()));
+
+  private static final String SECTIONS =
+      "<p><a href=\"/wiki/Kept\">k</a><sup class=\"reference\">"
+          + "<a href=\"#cite\">1</a></sup></p>"
+          + "<h2>History<span class=\"mw-editsection\">"
+          + "<a href=\"/w/index.php?action=edit\">edit</a></span></h2>"
+          + "<div class=\"geography\"><a href=\"/wiki/Geo\">g</a></div>"
+          + "<span id=\"coordinates\"><a href=\"/wiki/Coords\">c</a></span>"
+          + "<ul><li><a href=\"/wiki/Nested\">n</a></li></ul>"
+          + "<div class=\"navbox\"><a href=\"/wiki/Nav\">n</a></div>"
+          + "<div class=\"reflist\"><a href=\"/wiki/Ref\">r</a></div>"
+          + "<p>No <a>target</a></p>"
+          + "<h2><span id=\"See_also\">See also</span></h2>"
+          + "<ul><li><a href=\"/wiki/Related\">r</a></li></ul>"
+          + "<h2><span id=\"External_links\">External links</span></h2>"
+          + "<a href=\"http://example.com\">e</a>";
+
+  private static Set<String> formattedLinks(Document page) {
+    Set<String> urls = new HashSet<>();
+    for (Element link : FORMATTER.format(page.clone())
+        .select("#mw-content-text a[href]")) {
+      urls.add(link.attr("abs:href"));
+    }
+    return urls;
+  }
+
+  private static Document page(String body) {
+    return Jsoup.parse("<html><body><a href=\"/wiki/Header\">h</a>" + body
+        + "<a href=\"/wiki/Footer\">f</a></body></html>", BASE);
+  }
+
+  /**
+   * Test that only the usual chain of formatters is recognized.
+   */
+  @Test
+  public void testExtracts() {
+    assertTrue(WikiLinkExtractor.extracts(FORMATTER));
+    assertFalse(WikiLinkExtractor.extracts(new WikiBodyFormatter()));
+    assertFalse(WikiLinkExtractor.extracts(new ContentFormatterChain<>(
+        ImmutableList.of(new WikiBodyFormatter(), new WikiFooterRemover()))));
+  }
+
+  /**
+   * Test a page with its sections directly in #mw-content-text.
+   */
+  @Test
+  public void testContentText() {
+    Document page =
+        page("<div id=\"mw-content-text\">" + SECTIONS + "</div>");
+    Set<String> links = WikiLinkExtractor.links(page, url -> true);
+    assertEquals(ImmutableSet.of("https://en.wikipedia.org/wiki/Kept",
+        "https://en.wikipedia.org/wiki/Nested"), links);
+    assertEquals(formattedLinks(page), links);
+  }
+
+  /**
+   * Test a page with its sections in a .mw-parser-output.
+   */
+  @Test
+  public void testParserOutput() {
+    Document page =
+        page("<div id=\"mw-content-text\"><div class=\"mw-parser-output\">"
+            + SECTIONS + "</div><a href=\"/wiki/After\">a</a></div>");
+    Set<String> links = WikiLinkExtractor.links(page, url -> true);
+    assertEquals(ImmutableSet.of("https://en.wikipedia.org/wiki/Kept",
+        "https://en.wikipedia.org/wiki/Nested",
+        "https://en.wikipedia.org/wiki/After"), links);
+    assertEquals(formattedLinks(page), links);
+
+    assertEquals(ImmutableSet.of("https://en.wikipedia.org/wiki/Kept"),
+        WikiLinkExtractor.links(page, url -> url.endsWith("Kept")));
+  }
+}
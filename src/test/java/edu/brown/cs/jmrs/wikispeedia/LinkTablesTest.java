@@ -0,0 +1,304 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import edu.brown.cs.jmrs.io.db.AsyncDbConn;
+import edu.brown.cs.jmrs.io.db.DbConn;
+import edu.brown.cs.jmrs.io.db.DbReader;
+import edu.brown.cs.jmrs.web.FailSafeLinkFInder;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.wikipedia.WikiBodyFormatter;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * Tests storing links by page id, and migrating databases that stored them by
+ * url, over a temporary database (so without touching Wikipedia).
+ *
+ * @author mcisler
+ *
+ */
+public class LinkTablesTest {
+  private static final WikiPage A       = WikiPage.fromName("A");
+  private static final WikiPage B       = WikiPage.fromName("B");
+  private static final WikiPage C       = WikiPage.fromName("C");
+  private static final String   FRENCH  = "https://fr.wikipedia.org/wiki/D";
+  private static final String   OLD_SQL =
+      "CREATE TABLE links(start TEXT, end TEXT,"
+          + "index_time DATETIME DEFAULT CURRENT_TIMESTAMP,"
+          + "PRIMARY KEY (start, end));"
+          + "CREATE INDEX start_index ON links (start);"
+          + "CREATE INDEX end_index ON links (end);";
+
+  private File   dbFile;
+  private DbConn conn;
+
+  /**
+   * Opens a new empty database.
+   *
+   * @throws Exception
+   *           If the database could not be created.
+   */
+  @Before
+  public void setUp() throws Exception {
+    dbFile = File.createTempFile("links", ".sqlite3");
+    conn = new DbConn(dbFile.getPath());
+  }
+
+  /**
+   * Removes the database.
+   *
+   * @throws Exception
+   *           If the database could not be closed.
+   */
+  @After
+  public void tearDown() throws Exception {
+    conn.close();
+    dbFile.delete();
+  }
+
+  /**
+   * Test that titles and urls convert both ways.
+   */
+  @Test
+  public void testTitles() {
+    assertEquals("A", LinkTables.title(A.url()));
+    assertEquals(A.url(), LinkTables.url("A"));
+    assertEquals(FRENCH, LinkTables.title(FRENCH));
+    assertEquals(FRENCH, LinkTables.url(FRENCH));
+  }
+
+  /**
+   * Test that links stored by url are migrated.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testMigration() throws Exception {
+    conn.execute(OLD_SQL);
+    conn.execute(String.format(
+        "INSERT INTO links (start, end) VALUES ('%s', '%s'), ('%s', '%s'),"
+            + " ('%s', '%s'), ('%s', '%s');",
+        A.url(), B.url(), A.url(), FRENCH, B.url(), C.url(), C.url(),
+        A.url()));
+
+    try (CachingWikiLinkFinder linkFinder =
+        new CachingWikiLinkFinder(conn, new WikiBodyFormatter())) {
+      assertEquals(ImmutableList.of("src", "dst"), columns("links"));
+      assertEquals(ImmutableSet.of(B.url(), FRENCH), linkFinder.links(A));
+    }
+    assertEquals(ImmutableSet.of(new Link(B, C)),
+        new CachingWikiBacklinkFinder(conn).edges(C));
+
+    InMemoryWikiLinkFinder inMemory = new InMemoryWikiLinkFinder(conn);
+    assertEquals(4, inMemory.graph().numNodes());
+    assertEquals(4, inMemory.graph().numEdges());
+    assertEquals(FRENCH, inMemory.url(inMemory.id(FRENCH)));
+    assertEquals(ImmutableList.of(2, 1), degrees("A"));
+
+    // setting up again changes nothing
+    LinkTables.setup(conn);
+    assertEquals(4, new InMemoryWikiLinkFinder(conn).graph().numEdges());
+  }
+
+  /**
+   * Test that stored links are found by page.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testCacher() throws Exception {
+    LinkTables.Cacher cacher = new LinkTables.Cacher(conn);
+    cacher.insertAll(ImmutableList.of(new Link(A, B), new Link(A, C)));
+    cacher.insertAll(ImmutableList.of(new Link(B, C), new Link(A, B)));
+
+    try (CachingWikiLinkFinder linkFinder =
+        new CachingWikiLinkFinder(conn, new WikiBodyFormatter())) {
+      assertEquals(ImmutableSet.of(B, C), linkFinder.linkedPages(A));
+      assertEquals(ImmutableSet.of(new Link(B, C)), linkFinder.edges(B));
+    }
+    assertEquals(ImmutableSet.of(new Link(A, C), new Link(B, C)),
+        new CachingWikiBacklinkFinder(conn).edges(C));
+    assertEquals(3, new InMemoryWikiLinkFinder(conn).graph().numNodes());
+  }
+
+  /**
+   * Test that the links of many stored pages are found at once.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testBatchedLookup() throws Exception {
+    // more pages than are looked up in one query
+    int numPages = LinkTables.MAX_TITLES * 2 + 1;
+    List<WikiPage> pages = new ArrayList<>();
+    List<Link> links = new ArrayList<>();
+    for (int i = 0; i < numPages; i++) {
+      pages.add(WikiPage.fromName("Page_" + i));
+    }
+    for (int i = 0; i < numPages; i++) {
+      links.add(new Link(pages.get(i), pages.get((i + 1) % numPages)));
+      links.add(new Link(pages.get(i), pages.get((i + 2) % numPages)));
+    }
+    new LinkTables.Cacher(conn).insertAll(links);
+
+    Map<WikiPage, Set<WikiPage>> found;
+    try (CachingWikiLinkFinder linkFinder =
+        new CachingWikiLinkFinder(conn, new WikiBodyFormatter())) {
+      found = linkFinder.linkedPages(pages);
+      assertEquals(numPages, found.size());
+      for (WikiPage page : pages) {
+        assertEquals(linkFinder.linkedPages(page), found.get(page));
+      }
+    }
+
+    InMemoryWikiLinkFinder inMemory = new InMemoryWikiLinkFinder(conn);
+    assertEquals(found, inMemory.linkedPages(pages));
+  }
+
+  /**
+   * Test that links are looked up on the threads of a shared AsyncDbConn, and
+   * that stored links fail to be found once it refuses lookups.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testAsyncLookup() throws Exception {
+    new LinkTables.Cacher(conn)
+        .insertAll(ImmutableList.of(new Link(A, B), new Link(B, C)));
+
+    AsyncDbConn db = new AsyncDbConn(conn, 1, 1, LinkTables.LOOKUP_TIMEOUT);
+    CachingWikiLinkFinder linkFinder =
+        new CachingWikiLinkFinder(db, new WikiBodyFormatter());
+    StoredWikiLinkFinder stored = new StoredWikiLinkFinder(db);
+    assertEquals(ImmutableSet.of(B), linkFinder.linkedPages(A));
+    assertEquals(ImmutableSet.of(C), stored.linkedPages(B));
+    assertEquals(ImmutableSet.of(B, C), linkFinder
+        .linkedPages(ImmutableList.of(A, B)).values().stream()
+        .flatMap(Set::stream).collect(Collectors.toSet()));
+
+    // closing a finder leaves the AsyncDbConn it was given to its owner
+    linkFinder.close();
+    assertEquals(ImmutableSet.of(C), stored.linkedPages(B));
+
+    db.close();
+    try {
+      stored.linkedPages(A);
+      fail("Stored links of a page without looking them up");
+    } catch (UncheckedExecutionException e) {
+      // expected
+    }
+
+    // so searches over them fail rather than give a longer path
+    WikiGame game = new WikiGame(A, C, ImmutableSet.of());
+    try {
+      game.findShortestPath(new FailSafeLinkFInder<>(stored)).get();
+      fail("Found a path without looking up links");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof UncheckedExecutionException);
+    }
+    assertNull(game.getShortestPath());
+  }
+
+  /**
+   * Test that pages with stored links are known, and others are not.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testKnownPages() throws Exception {
+    new LinkTables.Cacher(conn).insertAll(ImmutableList.of(new Link(A, B)));
+
+    KnownPageFilter knownPages = new KnownPageFilter(conn);
+    assertTrue(knownPages.mightContain("A"));
+    assertFalse(knownPages.mightContain("B"));
+
+    knownPages.addAll(ImmutableList.of("B"));
+    assertTrue(knownPages.mightContain("B"));
+    assertTrue(knownPages.expectedFpp() < KnownPageFilter.FALSE_POSITIVE_RATE);
+    assertTrue(knownPages.bytes() > KnownPageFilter.MIN_EXPECTED_PAGES / 8);
+  }
+
+  /**
+   * Test that the numbers of links from and to each page are kept, and
+   * rebuilt.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testDegrees() throws Exception {
+    LinkTables.Cacher cacher = new LinkTables.Cacher(conn);
+    cacher.insertAll(ImmutableList.of(new Link(A, B), new Link(A, C)));
+    // duplicates aren't counted twice
+    cacher.insertAll(ImmutableList.of(new Link(B, C), new Link(A, B)));
+
+    assertEquals(ImmutableList.of(2, 0), degrees("A"));
+    assertEquals(ImmutableList.of(1, 1), degrees("B"));
+    assertEquals(ImmutableList.of(0, 2), degrees("C"));
+
+    conn.execute("UPDATE pages SET out_degree = 0, in_degree = 0;");
+    LinkTables.rebuildDegrees(conn);
+    assertEquals(ImmutableList.of(2, 0), degrees("A"));
+    assertEquals(ImmutableList.of(0, 2), degrees("C"));
+
+    conn.execute("DELETE FROM links;");
+    assertEquals(ImmutableList.of(0, 0), degrees("A"));
+  }
+
+  /**
+   * Test that pages stored without their degrees get them.
+   *
+   * @throws Exception
+   *           If the database could not be setup.
+   */
+  @Test
+  public void testAddDegrees() throws Exception {
+    conn.execute("CREATE TABLE pages(id INTEGER PRIMARY KEY,"
+        + "title TEXT NOT NULL UNIQUE);"
+        + "INSERT INTO pages (id, title) VALUES (1, 'A'), (2, 'B');"
+        + "CREATE TABLE links(src INTEGER NOT NULL, dst INTEGER NOT NULL,"
+        + "PRIMARY KEY (src, dst)) WITHOUT ROWID;"
+        + "INSERT INTO links VALUES (1, 2);");
+
+    LinkTables.setup(conn);
+    assertEquals(ImmutableList.of(1, 0), degrees("A"));
+    assertEquals(ImmutableList.of(0, 1), degrees("B"));
+  }
+
+  private ImmutableList<Integer> degrees(String title) {
+    return ImmutableList.copyOf(conn.makeQuery(LinkTables.SELECT_DEGREES,
+        new DbReader<>(rs -> ImmutableList.of(rs.getInt(1), rs.getInt(2))),
+        false).query(title).get(0));
+  }
+
+  private ImmutableList<String> columns(String table) {
+    return ImmutableList.copyOf(conn.makeQuery(
+        "PRAGMA table_info(" + table + ")",
+        new DbReader<>(rs -> rs.getString("name")), false).query());
+  }
+}
@@ -0,0 +1,101 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * Tests the buffer of links waiting to be cached.
+ *
+ * @author mcisler
+ *
+ */
+public class LinkWriteBufferTest {
+  private static final WikiPage A = WikiPage.fromName("A");
+  private static final WikiPage B = WikiPage.fromName("B");
+  private static final WikiPage C = WikiPage.fromName("C");
+  private static final WikiPage D = WikiPage.fromName("D");
+
+  /**
+   * Test that links found again are only held once.
+   */
+  @Test
+  public void testDeduplication() {
+    LinkWriteBuffer buffer = new LinkWriteBuffer(10);
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, B), new Link(A, C))));
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, B), new Link(A, C))));
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, D))));
+    assertEquals(1, buffer.pendingPages());
+    assertEquals(3, buffer.pendingLinks());
+
+    assertEquals(
+        ImmutableList.of(
+            ImmutableSet.of(new Link(A, B), new Link(A, C), new Link(A, D))),
+        buffer.drain(1));
+    assertEquals(0, buffer.pendingLinks());
+  }
+
+  /**
+   * Test that whole pages are drained, oldest first.
+   */
+  @Test
+  public void testDrain() {
+    LinkWriteBuffer buffer = new LinkWriteBuffer(10);
+    buffer.offer(ImmutableList.of(new Link(A, B), new Link(A, C),
+        new Link(B, C), new Link(C, D)));
+    assertEquals(3, buffer.pendingPages());
+
+    assertEquals(ImmutableList.of(ImmutableSet.of(new Link(A, B),
+        new Link(A, C))), buffer.drain(1));
+    assertEquals(ImmutableList.of(ImmutableSet.of(new Link(B, C)),
+        ImmutableSet.of(new Link(C, D))), buffer.drain(5));
+    assertEquals(ImmutableList.of(), buffer.drain(5));
+  }
+
+  /**
+   * Test that the links of new pages are dropped once full.
+   */
+  @Test
+  public void testDropWhenFull() {
+    LinkWriteBuffer buffer = new LinkWriteBuffer(2);
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, B), new Link(A, C))));
+    assertFalse(buffer.offer(ImmutableList.of(new Link(B, C))));
+    assertEquals(1, buffer.droppedPages());
+    assertEquals(2, buffer.pendingLinks());
+
+    buffer.drain(1);
+    assertTrue(buffer.offer(ImmutableList.of(new Link(B, C))));
+    assertEquals(1, buffer.pendingLinks());
+  }
+
+  /**
+   * Test that links merged into a page already held are dropped once full, but
+   * those found again still are not.
+   */
+  @Test
+  public void testDropMergeWhenFull() {
+    LinkWriteBuffer buffer = new LinkWriteBuffer(2);
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, B))));
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, B), new Link(A, C))));
+    assertEquals(2, buffer.pendingLinks());
+
+    for (int i = 0; i < 3; i++) {
+      assertFalse(buffer.offer(ImmutableList.of(new Link(A, B),
+          new Link(A, C), new Link(A, D))));
+    }
+    assertTrue(buffer.offer(ImmutableList.of(new Link(A, B), new Link(A, C))));
+    assertEquals(3, buffer.droppedPages());
+    assertEquals(2, buffer.pendingLinks());
+    assertEquals(
+        ImmutableList.of(ImmutableSet.of(new Link(A, B), new Link(A, C))),
+        buffer.drain(1));
+  }
+}
@@ -0,0 +1,214 @@
+package edu.brown.cs.jmrs.wikispeedia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import edu.brown.cs.jmrs.collect.graph.CancellableEdgeFinder;
+import edu.brown.cs.jmrs.collect.graph.EdgeFinder;
+import edu.brown.cs.jmrs.web.Link;
+import edu.brown.cs.jmrs.web.Page;
+import edu.brown.cs.jmrs.web.wikipedia.WikiPage;
+
+/**
+ * Tests the background shortest path search of WikiGame, over a fixed set of
+ * links (so without touching Wikipedia).
+ *
+ * @author mcisler
+ *
+ */
+public class WikiGameTest {
+  private static final WikiPage A = WikiPage.fromName("A");
+  private static final WikiPage B = WikiPage.fromName("B");
+  private static final WikiPage C = WikiPage.fromName("C");
+  private static final WikiPage D = WikiPage.fromName("D");
+
+  private static final Map<Page, Set<Page>> LINKS =
+      ImmutableMap.of(A, ImmutableSet.of(B, D), B, ImmutableSet.of(C), D,
+          ImmutableSet.of(B));
+
+  /**
+   * Test that the path is found in the background, and those waiting on it are
+   * told once it is.
+   *
+   * @throws Exception
+   *           If the search fails.
+   */
+  @Test
+  public void testFindShortestPath() throws Exception {
+    WikiGame game = new WikiGame(A, C, ImmutableSet.of());
+    assertNull(game.getShortestPath());
+    assertEquals(-1, game.getShortestPathLength());
+
+    CountDownLatch found = new CountDownLatch(1);
+    ListenableFuture<List<WikiPage>> future =
+        game.findShortestPath(new FixedLinks());
+    future.addListener(() -> {
+      // done by the time listeners run
+      if (game.getShortestPath() != null) {
+        found.countDown();
+      }
+    }, MoreExecutors.directExecutor());
+    assertTrue(found.await(1, TimeUnit.MINUTES));
+    assertEquals(ImmutableList.of(A, B, C), future.get(1, TimeUnit.MINUTES));
+    assertEquals(ImmutableList.of(A, B, C), game.getShortestPath());
+    assertEquals(2, game.getShortestPathLength());
+
+    // only searched once
+    assertTrue(future == game.findShortestPath(new FixedLinks()));
+  }
+
+  /**
+   * Test that no path gives an empty path.
+   *
+   * @throws Exception
+   *           If the search fails.
+   */
+  @Test
+  public void testNoPath() throws Exception {
+    WikiGame game = new WikiGame(C, A, ImmutableSet.of());
+    assertEquals(ImmutableList.of(),
+        game.findShortestPath(new FixedLinks()).get(1, TimeUnit.MINUTES));
+    assertNull(game.getShortestPath());
+  }
+
+  /**
+   * Test that a known path is used immediately.
+   */
+  @Test
+  public void testKnownPath() {
+    WikiGame game =
+        new WikiGame(A, C, ImmutableSet.of(), ImmutableList.of(A, D, B, C));
+    assertTrue(game.findShortestPath(new FixedLinks()).isDone());
+    assertEquals(3, game.getShortestPathLength());
+  }
+
+  /**
+   * Test that a search can be cancelled while running.
+   *
+   * @throws Exception
+   *           If interrupted.
+   */
+  @Test
+  public void testCancel() throws Exception {
+    CountDownLatch searching = new CountDownLatch(1);
+    EdgeFinder<Page, Link> blocking = new FixedLinks() {
+      @Override
+      public Set<Link> edges(Page node) {
+        searching.countDown();
+        try {
+          Thread.sleep(Long.MAX_VALUE);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.edges(node);
+      }
+    };
+
+    WikiGame game = new WikiGame(A, C, ImmutableSet.of());
+    Future<List<WikiPage>> future = game.findShortestPath(blocking);
+    searching.await();
+    game.cancelShortestPath();
+    assertTrue(future.isCancelled());
+    assertNull(game.getShortestPath());
+  }
+
+  /**
+   * Test that edges are no longer found after the deadline.
+   *
+   * @throws InterruptedException
+   *           If interrupted.
+   */
+  @Test
+  public void testDeadline() throws InterruptedException {
+    EdgeFinder<Page, Link> edgeFinder =
+        new CancellableEdgeFinder<>(new FixedLinks(), 1, TimeUnit.MILLISECONDS);
+    assertEquals(2, edgeFinder.edges(A).size());
+    assertTrue(edgeFinder.hasUniformEdgeValues());
+
+    Thread.sleep(10);
+    try {
+      edgeFinder.edges(A);
+      throw new AssertionError("Edges found after deadline");
+    } catch (CancellationException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Test that a timed out search fails rather than giving a path.
+   *
+   * @throws InterruptedException
+   *           If interrupted.
+   */
+  @Test
+  public void testTimeoutFails() throws InterruptedException {
+    EdgeFinder<Page, Link> expired =
+        new CancellableEdgeFinder<>(new FixedLinks(), 0, TimeUnit.SECONDS);
+    WikiGame game = new WikiGame(A, C, ImmutableSet.of());
+    try {
+      game.findShortestPath(expired).get();
+      throw new AssertionError("Search did not time out");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof CancellationException);
+    }
+    assertNull(game.getShortestPath());
+  }
+
+  /**
+   * Test that other shortest path work runs on the shortest path threads,
+   * rather than the calling one.
+   *
+   * @throws Exception
+   *           If the work failed.
+   */
+  @Test
+  public void testInBackground() throws Exception {
+    Thread caller = Thread.currentThread();
+    ListenableFuture<Thread> ranOn =
+        WikiGame.inBackground(() -> Thread.currentThread());
+    assertTrue(ranOn.get(1, TimeUnit.SECONDS) != caller);
+    assertTrue(ranOn.get().getName().startsWith("shortest-path-"));
+  }
+
+  /**
+   * Links between the test pages.
+   */
+  private static class FixedLinks implements EdgeFinder<Page, Link> {
+    @Override
+    public Set<Link> edges(Page node) {
+      ImmutableSet.Builder<Link> edges = ImmutableSet.builder();
+      for (Page dest : LINKS.getOrDefault(node, ImmutableSet.of())) {
+        edges.add(new Link(node, dest));
+      }
+      return edges.build();
+    }
+
+    @Override
+    public Number edgeValue(Link edge) {
+      return 1;
+    }
+
+    @Override
+    public boolean hasUniformEdgeValues() {
+      return true;
+    }
+  }
+}